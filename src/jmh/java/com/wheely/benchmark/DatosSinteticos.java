@@ -0,0 +1,46 @@
+package com.wheely.benchmark;
+
+import com.wheely.model.Reporte;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generador de datos sintéticos para los benchmarks
+ * Usa una semilla fija para que cada ejecución mida exactamente los mismos datos
+ */
+public class DatosSinteticos {
+    private static final long SEMILLA = 42L;
+
+    // Fecha base fija: los reportes se reparten en los 60 días anteriores
+    public static final LocalDateTime FECHA_BASE = LocalDateTime.of(2025, 6, 1, 12, 0);
+
+    private static final String[] TITULOS = {
+            "Unidad con retraso", "Parada sin señalización", "Conductor amable",
+            "Cobro excesivo", "Ruta desviada", "Unidad en mal estado"
+    };
+
+    /**
+     * Genera una lista de reportes con tipos, rutas, usuarios y fechas variados
+     * @param cantidad Número de reportes a generar
+     * @return Lista de reportes ordenados de más reciente a más antiguo
+     */
+    public static List<Reporte> reportes(int cantidad) {
+        SplittableRandom random = new SplittableRandom(SEMILLA);
+        List<Reporte> reportes = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            String titulo = TITULOS[random.nextInt(TITULOS.length)];
+            reportes.add(new Reporte(
+                    cantidad - i,
+                    1 + random.nextInt(40),
+                    1 + random.nextInt(3),
+                    1 + random.nextInt(5000),
+                    titulo,
+                    titulo + " en la ruta, reportado por un usuario frecuente del sistema",
+                    FECHA_BASE.minusMinutes((long) i * 60L * 24 * 60 / Math.max(1, cantidad))));
+        }
+        return reportes;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.wheely.repository;
+
+import com.wheely.benchmark.DatosSinteticos;
+import com.wheely.model.Reporte;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapeo de filas de ResultSet a Reporte sobre un ResultSet en memoria
+ * El resultado se expresa por recorrido completo; dividir entre el número de filas
+ * para obtener el costo por fila
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class RowMappingBenchmark {
+
+    @Param({"1000", "100000"})
+    public int filas;
+
+    private StubResultSet stub;
+
+    @Setup
+    public void setup() {
+        stub = new StubResultSet(DatosSinteticos.reportes(filas));
+    }
+
+    /**
+     * Mapeo anterior: por etiqueta de columna y con conversión a través de java.sql.Timestamp
+     */
+    @Benchmark
+    public List<Reporte> porEtiqueta() throws SQLException {
+        ResultSet rs = stub.reiniciar();
+        List<Reporte> reportes = new ArrayList<>();
+        while (rs.next()) {
+            Reporte reporte = new Reporte();
+            reporte.setIdReporte(rs.getInt("idReporte_Estado_Ruta"));
+            reporte.setIdRuta(rs.getInt("idRuta"));
+            reporte.setIdTipoReporte(rs.getInt("idTipo_Reporte"));
+            reporte.setIdUsuario(rs.getInt("idUsuario"));
+            reporte.setTitulo(rs.getString("titulo"));
+            reporte.setDescripcion(rs.getString("descripcion"));
+
+            Timestamp timestamp = rs.getTimestamp("fecha_reporte");
+            if (timestamp != null) {
+                reporte.setFechaReporte(timestamp.toLocalDateTime());
+            }
+            reportes.add(reporte);
+        }
+        return reportes;
+    }
+
+    /**
+     * Mapeo actual de ReporteRepository: índices fijos y LocalDateTime directo
+     */
+    @Benchmark
+    public List<Reporte> porIndice() throws SQLException {
+        return ReporteMapper.mapAll(stub.reiniciar());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,102 @@
+package com.wheely.repository;
+
+import com.wheely.model.Reporte;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * ResultSet en memoria con las columnas de reporte_estado_ruta
+ * Reproduce el costo que tiene el driver al buscar por etiqueta: un mapa de nombres de
+ * columna sin distinguir mayúsculas. Todas las llamadas pasan por un Proxy, por lo que
+ * su costo fijo se suma por igual a todas las variantes medidas
+ */
+public class StubResultSet implements InvocationHandler {
+    private static final String[] COLUMNAS = {
+            "idReporte_Estado_Ruta", "idRuta", "idTipo_Reporte", "idUsuario",
+            "titulo", "descripcion", "fecha_reporte"
+    };
+
+    private final Object[][] filas;
+    private final Map<String, Integer> indicePorEtiqueta = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final ResultSet resultSet;
+    private int filaActual = -1;
+    private boolean ultimoNulo;
+
+    /**
+     * @param reportes Reportes que se devolverán como filas
+     */
+    public StubResultSet(List<Reporte> reportes) {
+        for (int i = 0; i < COLUMNAS.length; i++) {
+            indicePorEtiqueta.put(COLUMNAS[i], i + 1);
+        }
+        filas = new Object[reportes.size()][];
+        for (int i = 0; i < filas.length; i++) {
+            Reporte r = reportes.get(i);
+            filas[i] = new Object[]{r.getIdReporte(), r.getIdRuta(), r.getIdTipoReporte(), r.getIdUsuario(),
+                    r.getTitulo(), r.getDescripcion(), r.getFechaReporte()};
+        }
+        resultSet = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, this);
+    }
+
+    /**
+     * @return ResultSet posicionado antes de la primera fila
+     */
+    public ResultSet reiniciar() {
+        filaActual = -1;
+        return resultSet;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "next":
+                return ++filaActual < filas.length;
+            case "close":
+                return null;
+            case "wasNull":
+                return ultimoNulo;
+            case "findColumn":
+                return columna(args[0]);
+            case "getInt": {
+                Object valor = valor(args[0]);
+                return valor == null ? 0 : valor;
+            }
+            case "getString":
+                return valor(args[0]);
+            case "getTimestamp": {
+                LocalDateTime fecha = (LocalDateTime) valor(args[0]);
+                return fecha == null ? null : Timestamp.valueOf(fecha);
+            }
+            case "getObject":
+                return valor(args[0]);
+            default:
+                throw new UnsupportedOperationException(method.getName());
+        }
+    }
+
+    private int columna(Object columna) {
+        if (columna instanceof Integer) {
+            return (Integer) columna;
+        }
+        Integer indice = indicePorEtiqueta.get((String) columna);
+        if (indice == null) {
+            throw new IllegalArgumentException("Columna no encontrada: " + columna);
+        }
+        return indice;
+    }
+
+    private Object valor(Object columna) {
+        Object valor = filas[filaActual][columna(columna) - 1];
+        ultimoNulo = valor == null;
+        return valor;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,38 @@
+package com.wheely.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Validación de emails de UsuarioService
+ * isValidEmail usa String.matches, que compila la expresión regular en cada llamada;
+ * la variante precompilada sirve como referencia de lo que cuesta solo la coincidencia
+ * El validador es estático: no se crea UsuarioService, así que cada fork no arranca su pool de hilos
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class EmailValidationBenchmark {
+    private static final Pattern EMAIL = Pattern.compile("^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}$");
+
+    @Param({"maria.lopez@correo.com", "sin-arroba.correo.com"})
+    public String email;
+
+    @Benchmark
+    public boolean isValidEmail() {
+        return UsuarioService.isValidEmail(email);
+    }
+
+    @Benchmark
+    public boolean patronPrecompilado() {
+        return EMAIL.matcher(email).matches();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,93 @@
+package com.wheely.service;
+
+import com.wheely.benchmark.DatosSinteticos;
+import com.wheely.model.Reporte;
+import com.wheely.model.ReporteStats;
+import com.wheely.repository.ReporteRepository;
+import com.wheely.repository.UsuarioRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estadísticas de reportes sobre listas sintéticas
+ * Compara el cálculo original (cuatro recorridos con streams sobre todos los reportes)
+ * con ReporteService.getReporteStats respaldado por los contadores en memoria
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ReporteStatsBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int reportes;
+
+    private List<Reporte> datos;
+    private ReporteService service;
+
+    @Setup
+    public void setup() {
+        datos = DatosSinteticos.reportes(reportes);
+
+        // Repositorio sin base de datos: las estadísticas se sirven desde los contadores
+        ReporteRepository repositorio = new ReporteRepository();
+        ReporteCounters counters = new ReporteCounters();
+        counters.reconciliar(counters.instantanea(), statsDesdeLista(datos), conteoPorHora(datos));
+        service = new ReporteService(repositorio, new UsuarioRepository(), counters, null);
+    }
+
+    /**
+     * Cálculo original: count() más cuatro filtros con stream sobre la lista completa
+     */
+    @Benchmark
+    public ReporteStats recorridosConStreams() {
+        List<Reporte> todosReportes = datos;
+        int totalReportes = todosReportes.size();
+        long incidencias = todosReportes.stream().filter(r -> r.getIdTipoReporte() == 1).count();
+        long sugerencias = todosReportes.stream().filter(r -> r.getIdTipoReporte() == 2).count();
+        long quejas = todosReportes.stream().filter(r -> r.getIdTipoReporte() == 3).count();
+        LocalDateTime unMesAtras = LocalDateTime.now().minusMonths(1);
+        long reportesUltimoMes = todosReportes.stream()
+                .filter(r -> r.getFechaReporte() != null && r.getFechaReporte().isAfter(unMesAtras))
+                .count();
+        return new ReporteStats(totalReportes, (int) incidencias, (int) sugerencias, (int) quejas,
+                (int) reportesUltimoMes);
+    }
+
+    /**
+     * Ruta actual del servicio con los contadores ya inicializados
+     */
+    @Benchmark
+    public ReporteStats contadoresEnMemoria() throws SQLException {
+        return service.getReporteStats().getValor();
+    }
+
+    private static ReporteStats statsDesdeLista(List<Reporte> reportes) {
+        int[] porTipo = new int[4];
+        for (Reporte reporte : reportes) {
+            porTipo[reporte.getIdTipoReporte()]++;
+        }
+        return new ReporteStats(reportes.size(), porTipo[1], porTipo[2], porTipo[3], 0);
+    }
+
+    private static Map<LocalDateTime, Integer> conteoPorHora(List<Reporte> reportes) {
+        Map<LocalDateTime, Integer> conteo = new HashMap<>();
+        for (Reporte reporte : reportes) {
+            conteo.merge(reporte.getFechaReporte().truncatedTo(ChronoUnit.HOURS), 1, Integer::sum);
+        }
+        return conteo;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,57 @@
+package com.wheely.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wheely.benchmark.DatosSinteticos;
+import com.wheely.model.Reporte;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialización con Jackson de ApiResponse envolviendo listas de reportes
+ * Usa el mismo ObjectMapper que Javalin (JsonUtil)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ApiResponseSerializationBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int reportes;
+
+    private ObjectMapper mapper;
+    private ApiResponse response;
+
+    @Setup
+    public void setup() {
+        mapper = JsonUtil.getMapper();
+        List<Reporte> datos = DatosSinteticos.reportes(reportes);
+        response = ApiResponse.success("Reportes obtenidos exitosamente", datos);
+    }
+
+    /**
+     * Serializa a un arreglo de bytes completo, como hace ctx.json()
+     */
+    @Benchmark
+    public byte[] aBytes() throws IOException {
+        return mapper.writeValueAsBytes(response);
+    }
+
+    /**
+     * Serializa directamente a un flujo de salida sin materializar el resultado
+     */
+    @Benchmark
+    public void aFlujo() throws IOException {
+        mapper.writeValue(OutputStream.nullOutputStream(), response);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,49 @@
+package com.wheely.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hash y verificación de contraseñas con BCrypt a distintos factores de costo
+ * Cada unidad de costo duplica el tiempo; el valor usado por la aplicación es 10
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PasswordUtilBenchmark {
+    private static final String PASSWORD = "contraseña-segura-123";
+
+    @Param({"4", "8", "10", "12"})
+    public int costo;
+
+    private String hash;
+
+    @Setup
+    public void setup() {
+        hash = PasswordUtil.hashPassword(PASSWORD, costo);
+    }
+
+    @Benchmark
+    public String hashPassword() {
+        return PasswordUtil.hashPassword(PASSWORD, costo);
+    }
+
+    @Benchmark
+    public boolean verifyPassword() {
+        return PasswordUtil.verifyPassword(PASSWORD, hash);
+    }
+}
\ No newline at end of file
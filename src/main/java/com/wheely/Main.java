@@ -1,36 +1,66 @@
 package com.wheely;
 
 import io.javalin.Javalin;
+import io.javalin.json.JavalinJackson;
 import io.github.cdimascio.dotenv.Dotenv;
+import com.wheely.admission.ControlAdmision;
+import com.wheely.config.AppConfig;
+import com.wheely.config.DatabaseConfig;
 import com.wheely.di.AppModule;
+import com.wheely.metrics.JvmMetrics;
+import com.wheely.metrics.MetricsRegistry;
 import com.wheely.routes.UsuarioRoutes;
 import com.wheely.routes.ReporteRoutes;
 import com.wheely.util.ApiResponse;
+import com.wheely.util.JsonUtil;
+import com.wheely.util.LecturaPropia;
+import com.wheely.util.RespuestaCache;
 
 /**
  * Clase principal de la aplicación Wheely API
  * Configura y levanta el servidor Javalin con todos los endpoints
  */
 public class Main {
-
     public static void main(String[] args) {
         // Cargar variables de entorno
         Dotenv dotenv = Dotenv.load();
         int port = Integer.parseInt(dotenv.get("SERVER_PORT", "7000"));
 
-        // Crear aplicación Javalin básica
-        Javalin app = Javalin.create();
+        // Modo de ejecución: "platform" (pool de hilos de Jetty) o "virtual" (un hilo virtual por petición)
+        boolean hilosVirtuales = dotenv.get("EXECUTION_MODE", "platform").equalsIgnoreCase("virtual");
+        // Javalin vuelve en silencio a los hilos de plataforma si la JVM no tiene hilos virtuales;
+        // se detiene el arranque para que una medición de "virtual" no sea en realidad de "platform"
+        if (hilosVirtuales && Runtime.version().feature() < 21) {
+            throw new IllegalStateException("EXECUTION_MODE=virtual requiere Java 21 o superior; la JVM actual es "
+                    + Runtime.version() + ". Usa EXECUTION_MODE=platform o ejecuta con Java 21");
+        }
+
+        // Crear aplicación Javalin usando el ObjectMapper compartido
+        Javalin app = Javalin.create(config -> {
+            config.jsonMapper(new JavalinJackson(JsonUtil.getMapper(), false));
+            config.useVirtualThreads = hilosVirtuales;
+        });
+
+        // Configurar métricas antes que el resto de manejadores para medir toda la petición
+        configurarMetricas(app);
 
         // Configurar CORS manualmente antes de cualquier ruta
         app.before(ctx -> {
             ctx.header("Access-Control-Allow-Origin", "*");
             ctx.header("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
-            ctx.header("Access-Control-Allow-Headers", "Content-Type, Authorization");
+            ctx.header("Access-Control-Allow-Headers", "Content-Type, Authorization, If-None-Match, Last-Event-ID");
+            ctx.header("Access-Control-Expose-Headers", "ETag");
         });
 
         // Manejar OPTIONS requests para CORS
         app.options("/*", ctx -> ctx.status(200));
 
+        // Dirigir al primario las lecturas de quien acaba de escribir
+        LecturaPropia.install(app);
+
+        // Limitar la concurrencia por grupo de endpoints y rechazar el exceso con 503
+        configurarAdmision(app);
+
         // Configurar rutas base
         configurarRutasBase(app);
 
@@ -48,34 +78,53 @@ public class Main {
         System.out.println("Wheely API iniciada correctamente");
         System.out.println("Servidor ejecutandose en: http://localhost:" + port);
         System.out.println("Base de datos: " + dotenv.get("DB_SCHEMA"));
+        System.out.println("Modo de ejecución: " + (hilosVirtuales ? "hilos virtuales" : "hilos de plataforma"));
         System.out.println("=================================================");
     }
 
+    /**
+     * Configura la medición de latencia por ruta y el endpoint /metrics (formato Prometheus)
+     */
+    private static void configurarMetricas(Javalin app) {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.register(new JvmMetrics());
+        metrics.install(app);
+    }
+
+    /**
+     * Configura el control de admisión por grupo de endpoints (ver ControlAdmision)
+     */
+    private static void configurarAdmision(Javalin app) {
+        if (AppConfig.getBoolean("ADMISION_ENABLED", true)) {
+            ControlAdmision admision = new ControlAdmision();
+            admision.install(app);
+            MetricsRegistry.getInstance().register(admision);
+        }
+    }
+
     /**
      * Configura las rutas base de la API
      */
     private static void configurarRutasBase(Javalin app) {
+        // Rutas con contenido fijo: se serializan y comprimen una sola vez al primer uso
+        RespuestaCache estado = new RespuestaCache(() -> ApiResponse.success("Wheely API funcionando correctamente",
+                "Sistema de transporte público de Tuxtla Gutiérrez"));
+        RespuestaCache informacion = new RespuestaCache(() -> ApiResponse.success("Información de la API",
+                new ApiInfo()));
+
         // Ruta de verificación de estado
-        app.get("/", ctx -> {
-            ApiResponse response = ApiResponse.success("Wheely API funcionando correctamente",
-                    "Sistema de transporte público de Tuxtla Gutiérrez");
-            ctx.json(response);
-        });
+        app.get("/", estado::servir);
 
         // Ruta de información de la API
-        app.get("/info", ctx -> {
-            ApiInfo info = new ApiInfo();
-            ApiResponse response = ApiResponse.success("Información de la API", info);
-            ctx.json(response);
-        });
+        app.get("/info", informacion::servir);
 
         // Ruta de verificación de salud
         app.get("/health", ctx -> {
             try {
-                // Verificar conexión a base de datos
-                com.wheely.config.DatabaseConfig.getDataSource().getConnection().close();
+                // Verificar la base de datos sin esperar una conexión cuando el pool está agotado
+                String estadoBd = DatabaseConfig.verificarPrimario();
 
-                HealthStatus health = new HealthStatus("OK", "Base de datos conectada", System.currentTimeMillis());
+                HealthStatus health = new HealthStatus("OK", estadoBd, System.currentTimeMillis());
                 ApiResponse response = ApiResponse.success("Sistema saludable", health);
                 ctx.json(response);
             } catch (Exception e) {
@@ -133,17 +182,27 @@ public class Main {
         public String version = "1.0.0";
         public String descripcion = "API REST para el sistema de transporte público de Tuxtla Gutiérrez";
         public String[] endpoints = {
+                "GET /metrics - Métricas en formato Prometheus",
                 "GET /usuarios - Obtener usuarios",
                 "POST /usuarios - Crear usuario",
                 "PUT /usuarios/{id} - Actualizar usuario",
                 "DELETE /usuarios/{id} - Eliminar usuario",
                 "POST /usuarios/login - Login de usuario",
-                "GET /reportes - Obtener reportes",
+                "GET /reportes?limit=&cursor= - Obtener reportes paginados",
+                "GET /reportes?stream=true - Obtener todos los reportes en streaming",
+                "GET /reportes/search?q=&limit= - Buscar reportes por texto",
+                "GET /reportes/recientes?limit= - Reportes más recientes de todas las rutas",
+                "GET /reportes/stream?ruta= - Eventos de reportes en tiempo real (Server-Sent Events)",
+                "GET /reportes/trending?tipo=&ventana=&limit= - Rutas con más reportes (15m, 1h, 24h)",
+                "GET /reportes/rollups?ruta=&desde=&hasta=&granularidad= - Reportes por hora o día",
+                "GET /rutas/{idRuta}/reportes?limit= - Reportes más recientes de una ruta",
                 "POST /reportes - Crear reporte",
+                "POST /reportes/batch - Crear varios reportes en una transacción",
                 "PUT /reportes/{id} - Actualizar reporte",
                 "DELETE /reportes/{id} - Eliminar reporte"
         };
         public String documentacion = "Usar Insomnia para probar los endpoints";
+        // Momento en que se generó la información (la respuesta se guarda en caché desde entonces)
         public long timestamp = System.currentTimeMillis();
     }
 
@@ -0,0 +1,204 @@
+package com.wheely.admission;
+
+import com.wheely.config.AppConfig;
+import com.wheely.metrics.MetricsCollector;
+import com.wheely.metrics.PrometheusWriter;
+import com.wheely.util.ApiResponse;
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+import io.javalin.http.HandlerType;
+import io.javalin.http.Header;
+import io.javalin.http.HttpStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Control de admisión por grupo de endpoints (bulkheads)
+ *
+ * Cada grupo tiene su propio límite de concurrencia adaptativo (LimiteAimd). Una petición
+ * que no cabe en el límite de su grupo recibe 503 con Retry-After sin llegar al controlador,
+ * así que cuando MySQL se vuelve lento solo unas cuantas peticiones por grupo esperan una
+ * conexión y el resto de los hilos de Jetty sigue libre para /health, /metrics y los
+ * endpoints que se responden desde memoria. Un grupo saturado tampoco afecta a los demás:
+ * un pico de logins (BCrypt) no deja sin lugar a las lecturas de reportes
+ *
+ * Grupos:
+ * - auth: creación de usuarios, login y cambios de usuario o contraseña (BCrypt)
+ * - escrituras: POST/PUT/DELETE de reportes y eliminación de usuarios
+ * - stats: agregados (estadísticas, caché, tendencias y resúmenes)
+ * - lecturas: el resto de los GET de reportes, rutas y usuarios
+ * - streaming: GET /reportes?stream=true. Cada respuesta dura lo que tarda en recorrer la tabla
+ *   y ocupa una conexión todo ese tiempo, así que tiene un límite fijo (ADMISION_STREAMING_MAX)
+ *   que no se ajusta con su latencia ni afecta al de lecturas
+ *
+ * No se limitan /, /info, /health, /metrics, /reportes/tipos ni /reportes/stream (que tiene
+ * su propio límite de suscriptores)
+ */
+public class ControlAdmision implements MetricsCollector {
+    private static final String ATRIBUTO_PERMISO = "admision.permiso";
+    private static final String RETRY_AFTER_SEGUNDOS = "1";
+
+    private final LimiteAimd auth;
+    private final LimiteAimd escrituras;
+    private final LimiteAimd stats;
+    private final LimiteAimd lecturas;
+    private final LimiteAimd streaming;
+    private final List<LimiteAimd> grupos = new ArrayList<>();
+
+    /**
+     * Crea los grupos con los límites configurados en .env
+     * (ADMISION_&lt;GRUPO&gt;_MIN, _INICIAL, _MAX y _LATENCIA_MS)
+     */
+    public ControlAdmision() {
+        this.auth = registrar(crear("auth", 2, 16, 64, 1500));
+        this.escrituras = registrar(crear("escrituras", 2, 20, 100, 1000));
+        this.stats = registrar(crear("stats", 1, 4, 16, 1000));
+        this.lecturas = registrar(crear("lecturas", 4, 50, 200, 500));
+        this.streaming = registrar(LimiteAimd.fijo("streaming", AppConfig.getInt("ADMISION_STREAMING_MAX", 4)));
+    }
+
+    /**
+     * Instala el control antes de los controladores
+     * Debe llamarse después de instalar las métricas y CORS, para que los rechazos se midan y
+     * lleven las cabeceras de CORS
+     * @param app Aplicación Javalin
+     */
+    public void install(Javalin app) {
+        app.before(this::admitir);
+        app.after(this::liberar);
+        // El rechazo se lanza como excepción para cortar la petición sin saltarse los manejadores
+        // after (métricas, limpieza de la petición)
+        app.exception(Rechazada.class, (e, ctx) -> {
+            ApiResponse response = ApiResponse.error("Servidor ocupado, intente de nuevo en unos segundos");
+            ctx.header(Header.RETRY_AFTER, RETRY_AFTER_SEGUNDOS);
+            ctx.status(HttpStatus.SERVICE_UNAVAILABLE).json(response);
+        });
+    }
+
+    private void admitir(Context ctx) {
+        LimiteAimd grupo = esStreaming(ctx) ? streaming : grupo(ctx.method(), ctx.path());
+        if (grupo == null) {
+            return;
+        }
+        if (grupo.intentarAdquirir()) {
+            ctx.attribute(ATRIBUTO_PERMISO, new Permiso(grupo, System.nanoTime()));
+            return;
+        }
+        throw new Rechazada();
+    }
+
+    private void liberar(Context ctx) {
+        Permiso permiso = ctx.attribute(ATRIBUTO_PERMISO);
+        if (permiso == null) {
+            return;
+        }
+        // Se quita el atributo para no liberar dos veces si el manejador after se repite
+        ctx.attribute(ATRIBUTO_PERMISO, null);
+        permiso.grupo.liberar(System.nanoTime() - permiso.inicio, esSobrecarga(ctx.statusCode()));
+    }
+
+    /**
+     * Indica si el estado de la respuesta señala que el servidor o la base de datos no dan abasto
+     * Los 503 no cuentan: los emiten los propios rechazos y los servicios que aún no están listos
+     * (por ejemplo, un backfill en curso), y reducir el límite por ellos lo hundiría sin motivo;
+     * la lentitud real ya la mide la latencia
+     */
+    private static boolean esSobrecarga(int estado) {
+        return estado == HttpStatus.INTERNAL_SERVER_ERROR.getCode()
+                || estado == HttpStatus.BAD_GATEWAY.getCode()
+                || estado == HttpStatus.GATEWAY_TIMEOUT.getCode();
+    }
+
+    /**
+     * Indica si la petición es el listado completo de reportes en streaming (GET /reportes?stream=true)
+     */
+    private static boolean esStreaming(Context ctx) {
+        return ctx.method() == HandlerType.GET && ctx.path().equals("/reportes")
+                && "true".equalsIgnoreCase(ctx.queryParam("stream"));
+    }
+
+    /**
+     * Obtiene el grupo de una petición según su método y ruta
+     * @return Grupo que la limita, o null si no se limita
+     */
+    LimiteAimd grupo(HandlerType metodo, String ruta) {
+        boolean reportes = ruta.startsWith("/reportes");
+        boolean usuarios = ruta.startsWith("/usuarios");
+
+        if (metodo == HandlerType.GET) {
+            if (ruta.equals("/reportes/stream") || ruta.equals("/reportes/tipos")) {
+                return null;
+            }
+            if (ruta.equals("/reportes/stats") || ruta.startsWith("/reportes/cache")
+                    || ruta.equals("/reportes/trending") || ruta.equals("/reportes/rollups")) {
+                return stats;
+            }
+            return reportes || usuarios || ruta.startsWith("/rutas/") ? lecturas : null;
+        }
+        if (usuarios) {
+            // POST /usuarios, POST /usuarios/login, PUT /usuarios/{id} y PUT /usuarios/{id}/password usan BCrypt
+            return metodo == HandlerType.DELETE ? escrituras
+                    : metodo == HandlerType.POST || metodo == HandlerType.PUT ? auth : null;
+        }
+        if (reportes && (metodo == HandlerType.POST || metodo == HandlerType.PUT || metodo == HandlerType.DELETE)) {
+            return escrituras;
+        }
+        return null;
+    }
+
+    @Override
+    public void collect(PrometheusWriter out) {
+        out.declare("wheely_admission_limit", "gauge", "Límite de concurrencia actual por grupo de endpoints");
+        out.declare("wheely_admission_inflight", "gauge", "Peticiones admitidas en curso por grupo");
+        out.declare("wheely_admission_accepted_total", "counter", "Peticiones admitidas por grupo");
+        out.declare("wheely_admission_rejected_total", "counter", "Peticiones rechazadas con 503 por grupo");
+        for (LimiteAimd grupo : grupos) {
+            String[] labels = {"group", grupo.getNombre()};
+            out.sample("wheely_admission_limit", labels, grupo.getLimite());
+            out.sample("wheely_admission_inflight", labels, grupo.getEnCurso());
+            out.sample("wheely_admission_accepted_total", labels, grupo.getAdmitidas());
+            out.sample("wheely_admission_rejected_total", labels, grupo.getRechazadas());
+        }
+    }
+
+    private LimiteAimd registrar(LimiteAimd grupo) {
+        grupos.add(grupo);
+        return grupo;
+    }
+
+    private static LimiteAimd crear(String nombre, int minimo, int inicial, int maximo, long latenciaMs) {
+        String prefijo = "ADMISION_" + nombre.toUpperCase(Locale.ROOT) + "_";
+        return new LimiteAimd(nombre,
+                AppConfig.getInt(prefijo + "MIN", minimo),
+                AppConfig.getInt(prefijo + "INICIAL", inicial),
+                AppConfig.getInt(prefijo + "MAX", maximo),
+                AppConfig.getLong(prefijo + "LATENCIA_MS", latenciaMs));
+    }
+
+    /**
+     * Petición rechazada por falta de lugar en su grupo
+     * Sin traza de pila: se lanza en cada rechazo y nunca se registra en el log
+     */
+    private static class Rechazada extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Rechazada() {
+            super("Límite de concurrencia alcanzado", null, false, false);
+        }
+    }
+
+    /**
+     * Lugar ocupado por una petición admitida
+     */
+    private static class Permiso {
+        private final LimiteAimd grupo;
+        private final long inicio;
+
+        Permiso(LimiteAimd grupo, long inicio) {
+            this.grupo = grupo;
+            this.inicio = inicio;
+        }
+    }
+}
\ No newline at end of file
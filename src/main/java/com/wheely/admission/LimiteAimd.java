@@ -0,0 +1,123 @@
+package com.wheely.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Límite de concurrencia adaptativo con aumento aditivo y reducción multiplicativa (AIMD)
+ *
+ * Cada petición admitida ocupa un lugar hasta que termina. Si termina a tiempo y el límite
+ * se está usando, el límite sube en 1/límite (aproximadamente +1 por cada ronda completa de
+ * peticiones); si tarda más que la latencia objetivo o falla con 500, 502 o 504, el límite se multiplica
+ * por el factor de reducción. Las reducciones se espacian al menos una latencia objetivo para
+ * que una ráfaga de respuestas lentas que ya estaban en curso cuente como una sola señal
+ *
+ * Cuando no hay lugar la petición se rechaza de inmediato: no hay cola
+ */
+public class LimiteAimd {
+    private static final double FACTOR_REDUCCION = 0.9;
+
+    private final String nombre;
+    private final int minimo;
+    private final int maximo;
+    private final long latenciaObjetivoNanos;
+
+    private double limite;
+    private int enCurso = 0;
+    private long ultimaReduccionNanos;
+
+    private final LongAdder admitidas = new LongAdder();
+    private final LongAdder rechazadas = new LongAdder();
+
+    /**
+     * @param nombre Nombre del grupo (etiqueta de las métricas)
+     * @param minimo Límite mínimo; nunca baja de aquí aunque todas las respuestas sean lentas
+     * @param inicial Límite al iniciar
+     * @param maximo Límite máximo
+     * @param latenciaObjetivoMs Latencia a partir de la cual una respuesta cuenta como sobrecarga
+     */
+    public LimiteAimd(String nombre, int minimo, int inicial, int maximo, long latenciaObjetivoMs) {
+        if (minimo < 1 || maximo < minimo) {
+            throw new IllegalArgumentException("Límites no válidos para " + nombre + ": " + minimo + ".." + maximo);
+        }
+        this.nombre = nombre;
+        this.minimo = minimo;
+        this.maximo = maximo;
+        this.limite = Math.max(minimo, Math.min(maximo, inicial));
+        this.latenciaObjetivoNanos = TimeUnit.MILLISECONDS.toNanos(latenciaObjetivoMs);
+        this.ultimaReduccionNanos = System.nanoTime() - latenciaObjetivoNanos;
+    }
+
+    /**
+     * Crea un límite fijo, que no se ajusta con la latencia ni con los errores
+     * Para peticiones largas por naturaleza (respuestas en streaming), cuya duración no indica sobrecarga
+     * @param nombre Nombre del grupo (etiqueta de las métricas)
+     * @param limite Número máximo de peticiones simultáneas
+     */
+    public static LimiteAimd fijo(String nombre, int limite) {
+        return new LimiteAimd(nombre, limite, limite, limite, 0);
+    }
+
+    /**
+     * Intenta ocupar un lugar
+     * @return true si la petición fue admitida (debe llamarse a liberar al terminar)
+     */
+    public boolean intentarAdquirir() {
+        synchronized (this) {
+            if (enCurso < (int) limite) {
+                enCurso++;
+                admitidas.increment();
+                return true;
+            }
+        }
+        rechazadas.increment();
+        return false;
+    }
+
+    /**
+     * Libera el lugar de una petición admitida y ajusta el límite
+     * @param latenciaNanos Duración de la petición
+     * @param fallo true si la petición terminó con un error que indica sobrecarga (500, 502 o 504)
+     */
+    public synchronized void liberar(long latenciaNanos, boolean fallo) {
+        int ocupados = enCurso;
+        enCurso--;
+
+        long ahora = System.nanoTime();
+        if (fallo || latenciaNanos > latenciaObjetivoNanos) {
+            if (ahora - ultimaReduccionNanos >= latenciaObjetivoNanos) {
+                limite = Math.max(minimo, limite * FACTOR_REDUCCION);
+                ultimaReduccionNanos = ahora;
+            }
+        } else if (ocupados * 2 >= (int) limite) {
+            // Solo crece si se está usando al menos la mitad; con poca carga no hay evidencia de capacidad extra
+            limite = Math.min(maximo, limite + 1.0 / limite);
+        }
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    /**
+     * @return Límite actual (entero)
+     */
+    public synchronized int getLimite() {
+        return (int) limite;
+    }
+
+    /**
+     * @return Peticiones admitidas que todavía no terminan
+     */
+    public synchronized int getEnCurso() {
+        return enCurso;
+    }
+
+    public long getAdmitidas() {
+        return admitidas.sum();
+    }
+
+    public long getRechazadas() {
+        return rechazadas.sum();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,60 @@
+package com.wheely.config;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+/**
+ * Acceso centralizado a la configuración de la aplicación
+ * Lee los valores del archivo .env una sola vez y ofrece valores por defecto
+ */
+public class AppConfig {
+
+    /**
+     * Carga perezosa y segura entre hilos del archivo .env
+     */
+    private static class Holder {
+        private static final Dotenv DOTENV = Dotenv.load();
+    }
+
+    /**
+     * Obtiene un valor de configuración
+     * @param key Nombre de la variable
+     * @param defaultValue Valor a usar si la variable no existe o está vacía
+     * @return Valor configurado o el valor por defecto
+     */
+    public static String get(String key, String defaultValue) {
+        String value = Holder.DOTENV.get(key, defaultValue);
+        return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+    }
+
+    /**
+     * Obtiene un valor entero de configuración
+     * @throws IllegalStateException Si el valor configurado no es numérico
+     */
+    public static int getInt(String key, int defaultValue) {
+        return (int) getLong(key, defaultValue);
+    }
+
+    /**
+     * Obtiene un valor entero largo de configuración
+     * @throws IllegalStateException Si el valor configurado no es numérico
+     */
+    public static long getLong(String key, long defaultValue) {
+        String value = get(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Valor no numérico para " + key + ": " + value);
+        }
+    }
+
+    /**
+     * Obtiene un valor booleano de configuración ("true" o "false")
+     */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = get(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+}
\ No newline at end of file
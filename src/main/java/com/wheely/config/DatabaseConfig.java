@@ -1,57 +1,407 @@
 package com.wheely.config;
 
+import com.wheely.metrics.HikariMetrics;
+import com.wheely.metrics.MetricsRegistry;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
-import io.github.cdimascio.dotenv.Dotenv;
+import com.zaxxer.hikari.HikariPoolMXBean;
 
 import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Configuración de la conexión a la base de datos MySQL
+ *
+ * Hay un pool para el servidor primario (DB_HOST), que recibe todas las escrituras, y un
+ * pool por cada réplica de DB_REPLICA_HOSTS (lista separada por comas, con puerto opcional:
+ * "localhost:3307,localhost:3308"). Las lecturas que toleran un pequeño retraso usan
+ * getReadConnection, que reparte entre las réplicas y regresa al primario si no hay ninguna
+ * disponible o si el hilo está dentro de su ventana de lectura de sus propias escrituras
  */
 public class DatabaseConfig {
-    private static HikariDataSource dataSource;
+    private static final int POOL_SIZE = AppConfig.getInt("DB_POOL_SIZE", 20);
+    private static final int REPLICA_POOL_SIZE = AppConfig.getInt("DB_REPLICA_POOL_SIZE", POOL_SIZE);
+    // Espera máxima por una conexión: corta, para que una petición admitida con el pool agotado
+    // falle pronto (y reduzca el límite de admisión) en lugar de ocupar su hilo medio minuto
+    private static final long CONNECTION_TIMEOUT_MS = AppConfig.getLong("DB_CONNECTION_TIMEOUT_MS", 2000);
+    // Tiempo máximo que /health espera la validación de una conexión
+    private static final int VERIFICACION_SEGUNDOS = 2;
+    private static final int PUERTO_DEFAULT = 3306;
+
+    // Tiempo durante el cual las lecturas de quien acaba de escribir van al primario; debe
+    // ser mayor que el retraso normal de replicación
+    private static final long VENTANA_ESCRITURA_MS = AppConfig.getLong("DB_READ_YOUR_WRITES_MS", 2000);
+    // Una réplica que falla al entregar una conexión se deja de usar durante este tiempo
+    private static final long PAUSA_REPLICA_MS = AppConfig.getLong("DB_REPLICA_PAUSA_MS", 5000);
+    private static final boolean REPLICAS = !AppConfig.get("DB_REPLICA_HOSTS", "").isBlank();
+
+    /**
+     * fetchSize que hace que MySQL Connector/J entregue el resultado fila por fila en lugar de
+     * cargarlo completo en memoria; solo afecta a la sentencia que lo usa. La conexión no admite
+     * otras consultas hasta cerrar el ResultSet
+     */
+    public static final int FETCH_STREAMING = Integer.MIN_VALUE;
+
+    // En modo de hilos virtuales miles de peticiones pueden llegar a la vez al repositorio.
+    // Un semáforo justo del tamaño de cada pool las forma en orden (FIFO) antes de pedir conexión,
+    // en lugar de que todas compitan dentro de Hikari hasta agotar su connectionTimeout
+    private static final boolean HILOS_VIRTUALES = AppConfig.get("EXECUTION_MODE", "platform").equalsIgnoreCase("virtual");
+
+    // Fin de la ventana de lectura del primario del hilo actual (petición en curso)
+    private static final ThreadLocal<Ventana> VENTANA = new ThreadLocal<>();
+    private static final AtomicInteger siguienteReplica = new AtomicInteger();
+
+    // Pools creados al primer uso; si la creación falla (por ejemplo, el primario no responde)
+    // queda en null y la siguiente llamada lo vuelve a intentar
+    private static volatile Pools pools;
 
     /**
-     * Obtiene la fuente de datos configurada
-     * Implementa patrón Singleton para reutilizar la conexión
+     * Obtiene la fuente de datos del servidor primario
      * @return DataSource configurado con las credenciales del archivo .env
      */
     public static DataSource getDataSource() {
-        if (dataSource == null) {
-            // Cargar variables de entorno desde archivo .env
-            Dotenv dotenv = Dotenv.load();
+        return pools().primario.dataSource;
+    }
 
-            // Obtener configuración de base de datos
-            String host = dotenv.get("DB_HOST");
-            String dbName = dotenv.get("DB_SCHEMA");
-            String jdbcUrl = String.format("jdbc:mysql://%s:3306/%s", host, dbName);
+    /**
+     * Verifica el primario para /health sin esperar turno en el pool
+     * Si hay una conexión libre se valida contra el servidor; si todas están en uso, que haya
+     * conexiones activas basta para saber que el primario responde y se contesta con el estado del
+     * pool en lugar de esperar una conexión
+     * @return Descripción del estado del primario
+     * @throws SQLException Si no hay conexiones con el primario o la conexión no es válida
+     */
+    public static String verificarPrimario() throws SQLException {
+        HikariDataSource dataSource = pools().primario.dataSource;
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        if (pool == null) {
+            throw new SQLTransientConnectionException("El pool de conexiones no está iniciado");
+        }
+        if (pool.getIdleConnections() > 0) {
+            // Si otro hilo toma la conexión libre antes, la espera la acota CONNECTION_TIMEOUT_MS
+            try (Connection conn = dataSource.getConnection()) {
+                if (!conn.isValid(VERIFICACION_SEGUNDOS)) {
+                    throw new SQLTransientConnectionException("La conexión con la base de datos no es válida");
+                }
+            }
+            return "Base de datos conectada";
+        }
+        if (pool.getActiveConnections() > 0) {
+            return "Base de datos conectada; todas las conexiones en uso (" +
+                    pool.getThreadsAwaitingConnection() + " peticiones en espera)";
+        }
+        throw new SQLTransientConnectionException("Sin conexiones con la base de datos");
+    }
+
+    /**
+     * Obtiene una conexión del primario, para escrituras y para lecturas que deben ver
+     * el último dato confirmado (validaciones antes de escribir, cargas al iniciar)
+     * Si el control de concurrencia está activo, espera un permiso del semáforo antes de
+     * pedir la conexión y lo devuelve al cerrarla. Dentro de una UnidadDeTrabajo devuelve
+     * siempre la conexión de la unidad
+     * @return Conexión lista para usar (debe cerrarse con try-with-resources)
+     * @throws SQLException Error al obtener la conexión o tiempo de espera agotado
+     */
+    public static Connection getConnection() throws SQLException {
+        Connection unidad = UnidadDeTrabajo.conexionActual();
+        return unidad != null ? unidad : obtenerDelPrimario();
+    }
+
+    /**
+     * Pide una conexión al pool del primario, sin considerar la unidad de trabajo
+     */
+    static Connection obtenerDelPrimario() throws SQLException {
+        return pools().primario.obtener();
+    }
+
+    /**
+     * Obtiene una conexión de solo lectura de una réplica (por turnos)
+     * Usa el primario si no hay réplicas configuradas o disponibles, si el hilo actual
+     * escribió recientemente (lectura de las propias escrituras) o si tiene una unidad de trabajo abierta
+     * @return Conexión lista para usar (debe cerrarse con try-with-resources)
+     * @throws SQLException Error al obtener la conexión o tiempo de espera agotado
+     */
+    public static Connection getReadConnection() throws SQLException {
+        Connection unidad = UnidadDeTrabajo.conexionActual();
+        if (unidad != null) {
+            return unidad;
+        }
+        List<Pool> replicas = pools().replicas;
+        if (replicas.isEmpty() || leerDelPrimario()) {
+            return obtenerDelPrimario();
+        }
 
-            // Configurar HikariCP (pool de conexiones)
-            HikariConfig config = new HikariConfig();
-            config.setJdbcUrl(jdbcUrl);
-            config.setUsername(dotenv.get("DB_USER"));
-            config.setPassword(dotenv.get("DB_PASS"));
-            config.setDriverClassName("com.mysql.cj.jdbc.Driver");
+        long ahora = System.currentTimeMillis();
+        int inicio = Math.floorMod(siguienteReplica.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Pool replica = replicas.get((inicio + i) % replicas.size());
+            if (replica.pausadaHasta > ahora) {
+                continue;
+            }
+            try {
+                return replica.obtener();
+            } catch (SQLException e) {
+                replica.pausadaHasta = System.currentTimeMillis() + PAUSA_REPLICA_MS;
+                System.err.println("Réplica " + replica.nombre + " no disponible, se usará otra fuente: " + e.getMessage());
+            }
+        }
+        return obtenerDelPrimario();
+    }
 
-            // Configuraciones adicionales para optimizar el pool
-            config.setMaximumPoolSize(20);
-            config.setMinimumIdle(5);
-            config.setConnectionTimeout(30000);
-            config.setIdleTimeout(600000);
-            config.setMaxLifetime(1800000);
+    /**
+     * Marca que el hilo actual escribió en el primario: sus lecturas siguientes, y las de la
+     * misma petición, se hacen en el primario durante la ventana de lectura de sus escrituras
+     */
+    public static void registrarEscritura() {
+        Ventana ventana = ventanaActual();
+        ventana.escrituraHasta = System.currentTimeMillis() + VENTANA_ESCRITURA_MS;
+    }
 
-            dataSource = new HikariDataSource(config);
+    /**
+     * Inicia una petición cuyo cliente escribió hace poco (por ejemplo, según una cookie)
+     * @param hasta Fin de la ventana en milisegundos desde epoch; se ignora si excede la ventana configurada
+     */
+    public static void leerDelPrimarioHasta(long hasta) {
+        long ahora = System.currentTimeMillis();
+        if (hasta > ahora && hasta <= ahora + VENTANA_ESCRITURA_MS) {
+            ventanaActual().heredadaHasta = hasta;
         }
-        return dataSource;
     }
 
     /**
-     * Cierra el pool de conexiones
+     * Termina la petición del hilo actual y limpia su ventana
+     * @return Fin de la ventana abierta por una escritura de esta petición, o 0 si no escribió
+     */
+    public static long terminarPeticion() {
+        Ventana ventana = VENTANA.get();
+        VENTANA.remove();
+        return ventana != null ? ventana.escrituraHasta : 0;
+    }
+
+    /**
+     * @return true si DB_REPLICA_HOSTS define al menos una réplica para las lecturas
+     */
+    public static boolean tieneReplicas() {
+        return REPLICAS;
+    }
+
+    /**
+     * @return Duración en milisegundos de la ventana de lectura de las propias escrituras
+     */
+    public static long getVentanaEscrituraMs() {
+        return VENTANA_ESCRITURA_MS;
+    }
+
+    /**
+     * Cierra los pools de conexiones
      */
     public static void closeDataSource() {
-        if (dataSource != null && !dataSource.isClosed()) {
-            dataSource.close();
+        Pools actuales = pools;
+        if (actuales == null) {
+            return;
+        }
+        actuales.primario.cerrar();
+        for (Pool replica : actuales.replicas) {
+            replica.cerrar();
+        }
+    }
+
+    /**
+     * Obtiene los pools, creándolos una sola vez aunque varios hilos lleguen a la vez
+     */
+    private static Pools pools() {
+        Pools actuales = pools;
+        if (actuales == null) {
+            synchronized (DatabaseConfig.class) {
+                actuales = pools;
+                if (actuales == null) {
+                    actuales = new Pools(crearPrimario(), crearReplicas());
+                    pools = actuales;
+                }
+            }
+        }
+        return actuales;
+    }
+
+    /**
+     * @return true si las lecturas del hilo actual deben hacerse en el primario por estar dentro
+     * de la ventana de lectura de sus escrituras
+     */
+    public static boolean leerDelPrimario() {
+        Ventana ventana = VENTANA.get();
+        if (ventana == null) {
+            return false;
+        }
+        long ahora = System.currentTimeMillis();
+        return ventana.escrituraHasta > ahora || ventana.heredadaHasta > ahora;
+    }
+
+    private static Ventana ventanaActual() {
+        Ventana ventana = VENTANA.get();
+        if (ventana == null) {
+            ventana = new Ventana();
+            VENTANA.set(ventana);
+        }
+        return ventana;
+    }
+
+    private static Pool crearPrimario() {
+        return crearPool("wheely-primario", AppConfig.get("DB_HOST", "localhost"),
+                AppConfig.get("DB_USER", ""), AppConfig.get("DB_PASS", ""), POOL_SIZE, false);
+    }
+
+    private static List<Pool> crearReplicas() {
+        List<Pool> replicas = new ArrayList<>();
+        String hosts = AppConfig.get("DB_REPLICA_HOSTS", "");
+        String usuario = AppConfig.get("DB_REPLICA_USER", AppConfig.get("DB_USER", ""));
+        String password = AppConfig.get("DB_REPLICA_PASS", AppConfig.get("DB_PASS", ""));
+        for (String host : hosts.split(",")) {
+            if (!host.trim().isEmpty()) {
+                replicas.add(crearPool("wheely-replica-" + (replicas.size() + 1), host.trim(),
+                        usuario, password, REPLICA_POOL_SIZE, true));
+            }
+        }
+        return replicas;
+    }
+
+    /**
+     * Crea un pool de HikariCP para un servidor
+     * @param host Host con puerto opcional (host o host:puerto)
+     * @param soloLectura true para las réplicas: la conexión rechaza cualquier escritura
+     */
+    private static Pool crearPool(String nombre, String host, String usuario, String password,
+                                  int poolSize, boolean soloLectura) {
+        String servidor = host.contains(":") ? host : host + ":" + PUERTO_DEFAULT;
+        // rewriteBatchedStatements convierte los lotes de INSERT en un solo INSERT multi-fila
+        // No se usa useCursorFetch: afectaría a todas las consultas con fetchSize del pool; las
+        // consultas de streaming lo piden por sentencia con FETCH_STREAMING
+        String jdbcUrl = String.format("jdbc:mysql://%s/%s?rewriteBatchedStatements=true",
+                servidor, AppConfig.get("DB_SCHEMA", ""));
+
+        // Configurar HikariCP (pool de conexiones)
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(nombre);
+        config.setJdbcUrl(jdbcUrl);
+        config.setUsername(usuario);
+        config.setPassword(password);
+        config.setDriverClassName("com.mysql.cj.jdbc.Driver");
+        config.setReadOnly(soloLectura);
+        if (soloLectura) {
+            // Una réplica caída al iniciar no debe impedir que arranque la aplicación
+            config.setInitializationFailTimeout(-1);
+        }
+
+        // Configuraciones adicionales para optimizar el pool
+        config.setMaximumPoolSize(poolSize);
+        config.setMinimumIdle(Math.min(5, poolSize));
+        config.setConnectionTimeout(CONNECTION_TIMEOUT_MS);
+        config.setIdleTimeout(600000);
+        config.setMaxLifetime(1800000);
+
+        // Exponer conexiones activas/inactivas/en espera y tiempo de adquisición en /metrics
+        HikariMetrics metrics = new HikariMetrics();
+        config.setMetricsTrackerFactory(metrics);
+        MetricsRegistry.getInstance().register(metrics);
+
+        return new Pool(nombre, new HikariDataSource(config),
+                HILOS_VIRTUALES ? new Semaphore(poolSize, true) : null);
+    }
+
+    /**
+     * Pools del primario y de las réplicas
+     */
+    private static class Pools {
+        private final Pool primario;
+        private final List<Pool> replicas;
+
+        Pools(Pool primario, List<Pool> replicas) {
+            this.primario = primario;
+            this.replicas = replicas;
         }
     }
+
+    /**
+     * Pool de conexiones de un servidor con su semáforo de entrada
+     */
+    private static class Pool {
+        private final String nombre;
+        private final HikariDataSource dataSource;
+        private final Semaphore gate;
+        private volatile long pausadaHasta = 0;
+
+        Pool(String nombre, HikariDataSource dataSource, Semaphore gate) {
+            this.nombre = nombre;
+            this.dataSource = dataSource;
+            this.gate = gate;
+        }
+
+        Connection obtener() throws SQLException {
+            if (gate == null) {
+                return dataSource.getConnection();
+            }
+
+            try {
+                if (!gate.tryAcquire(CONNECTION_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    throw new SQLTimeoutException("Tiempo de espera agotado para obtener una conexión");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrumpido mientras se esperaba una conexión", e);
+            }
+
+            try {
+                return releaseOnClose(dataSource.getConnection(), gate);
+            } catch (SQLException | RuntimeException e) {
+                gate.release();
+                throw e;
+            }
+        }
+
+        void cerrar() {
+            if (!dataSource.isClosed()) {
+                dataSource.close();
+            }
+        }
+    }
+
+    /**
+     * Ventanas de lectura del primario del hilo actual
+     */
+    private static class Ventana {
+        // Abierta por una escritura de esta petición
+        private long escrituraHasta = 0;
+        // Recibida del cliente por una escritura en una petición anterior
+        private long heredadaHasta = 0;
+    }
+
+    /**
+     * Envuelve una conexión para liberar el permiso del semáforo cuando se cierra
+     */
+    private static Connection releaseOnClose(Connection conn, Semaphore gate) {
+        AtomicBoolean liberado = new AtomicBoolean(false);
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    try {
+                        return method.invoke(conn, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        if ("close".equals(method.getName()) && liberado.compareAndSet(false, true)) {
+                            gate.release();
+                        }
+                    }
+                });
+    }
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+package com.wheely.config;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Unidad de trabajo de una operación del servicio
+ * Mientras está abierta, todas las llamadas a DatabaseConfig del mismo hilo reciben la misma
+ * conexión del primario: se pide al pool la primera vez que se usa y se devuelve al cerrar la
+ * unidad, así que una operación con varias consultas ocupa una sola conexión. Los
+ * repositorios no cambian: su try-with-resources cierra una vista de la conexión que no la
+ * devuelve al pool
+ *
+ * No abre una transacción; cada repositorio sigue decidiendo si usa una
+ *
+ * Uso:
+ * <pre>
+ * UnidadDeTrabajo unidad = UnidadDeTrabajo.iniciar();
+ * try {
+ *     ReporteRepository.Modificacion modificacion = reporteRepository.update(reporte);
+ * } finally {
+ *     unidad.close();
+ * }
+ * </pre>
+ */
+public class UnidadDeTrabajo implements AutoCloseable {
+    private static final ThreadLocal<UnidadDeTrabajo> ACTUAL = new ThreadLocal<>();
+    // Unidad devuelta cuando ya hay una abierta en el hilo: cerrarla no hace nada
+    private static final UnidadDeTrabajo ANIDADA = new UnidadDeTrabajo();
+
+    private Connection conexion;
+    private Connection vista;
+
+    private UnidadDeTrabajo() {
+    }
+
+    /**
+     * Abre una unidad de trabajo en el hilo actual (o se une a la que ya está abierta)
+     * @return Unidad que debe cerrarse con close() en un bloque finally
+     */
+    public static UnidadDeTrabajo iniciar() {
+        if (ACTUAL.get() != null) {
+            return ANIDADA;
+        }
+        UnidadDeTrabajo unidad = new UnidadDeTrabajo();
+        ACTUAL.set(unidad);
+        return unidad;
+    }
+
+    /**
+     * @return Conexión de la unidad abierta en el hilo actual, o null si no hay ninguna
+     * @throws SQLException Error al obtener la conexión del pool
+     */
+    static Connection conexionActual() throws SQLException {
+        UnidadDeTrabajo unidad = ACTUAL.get();
+        if (unidad == null) {
+            return null;
+        }
+        if (unidad.conexion == null) {
+            unidad.conexion = DatabaseConfig.obtenerDelPrimario();
+            unidad.vista = sinCerrar(unidad.conexion);
+        }
+        return unidad.vista;
+    }
+
+    /**
+     * Devuelve la conexión al pool
+     * @throws SQLException Error al cerrar la conexión
+     */
+    @Override
+    public void close() throws SQLException {
+        if (this == ANIDADA) {
+            return;
+        }
+        ACTUAL.remove();
+        if (conexion != null) {
+            try {
+                // Un repositorio que falló a medio camino no debe dejar una transacción abierta
+                if (!conexion.getAutoCommit()) {
+                    conexion.rollback();
+                    conexion.setAutoCommit(true);
+                }
+            } finally {
+                conexion.close();
+            }
+        }
+    }
+
+    /**
+     * Envuelve la conexión para que close() no la devuelva al pool antes de que termine la unidad
+     */
+    private static Connection sinCerrar(Connection conn) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName())) {
+                        return null;
+                    }
+                    try {
+                        return method.invoke(conn, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
\ No newline at end of file
@@ -1,33 +1,98 @@
 package com.wheely.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import io.javalin.http.Context;
+import io.javalin.http.Header;
 import io.javalin.http.HttpStatus;
+import io.javalin.http.sse.SseHandler;
+import com.wheely.model.CacheInfo;
+import com.wheely.model.Pagina;
 import com.wheely.model.Reporte;
+import com.wheely.model.ReporteStats;
+import com.wheely.model.ResultadoBusqueda;
+import com.wheely.model.ResultadoLote;
+import com.wheely.model.Rollup;
+import com.wheely.model.TendenciaRuta;
+import com.wheely.repository.ReporteRepository;
 import com.wheely.service.ReporteService;
+import com.wheely.sse.ReporteHub;
 import com.wheely.util.ApiResponse;
+import com.wheely.util.CacheSwr;
+import com.wheely.util.ETagUtil;
+import com.wheely.util.JsonUtil;
+import com.wheely.util.RespuestaCache;
 
+import java.io.IOException;
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Controlador REST para gestión de reportes
  * Maneja todos los endpoints HTTP para operaciones CRUD de reportes
  */
 public class ReporteController {
+    // Respuesta de /reportes/tipos serializada una sola vez
+    private final RespuestaCache tiposReporte = new RespuestaCache(() -> ApiResponse.success(
+            "Tipos de reporte obtenidos correctamente", List.of(
+                    new TipoReporte(1, "Incidencia", "Problemas relacionados con el servicio de transporte"),
+                    new TipoReporte(2, "Sugerencia", "Propuestas de mejora para el sistema de transporte"),
+                    new TipoReporte(3, "Queja", "Inconformidades sobre el servicio o comportamiento"))));
+
+    // Número de rutas devuelto por /reportes/trending si no se indica 'limit'
+    private static final int TENDENCIAS_DEFAULT = 10;
+
     private final ReporteService reporteService;
+    private final ReporteHub reporteHub;
 
     public ReporteController(ReporteService reporteService) {
+        this(reporteService, null);
+    }
+
+    /**
+     * @param reporteHub Distribuidor de eventos para /reportes/stream, o null si está deshabilitado
+     */
+    public ReporteController(ReporteService reporteService, ReporteHub reporteHub) {
         this.reporteService = reporteService;
+        this.reporteHub = reporteHub;
     }
 
     /**
-     * GET /reportes - Obtiene todos los reportes
+     * GET /reportes - Obtiene los reportes paginados por cursor
+     * Parámetros query opcionales: 'limit' (tamaño de página) y 'cursor' (valor 'next' de la respuesta anterior)
+     * Con 'stream=true' devuelve todos los reportes escribiéndolos directamente desde la base de datos
+     * Responde 304 si el ETag enviado en If-None-Match corresponde a la versión actual
+     * La primera página puede salir de la caché aunque esté obsoleta: lleva entonces Warning 110
+     * y el ETag de la versión con la que se calculó
      */
     public void getAll(Context ctx) {
+        String etag = etag("reportes", reporteService.getVersion());
+        if (ETagUtil.responderSiNoModificado(ctx, etag)) {
+            return;
+        }
+
+        if ("true".equalsIgnoreCase(ctx.queryParam("stream"))) {
+            ETagUtil.asignar(ctx, etag);
+            streamAll(ctx);
+            return;
+        }
+
         try {
-            List<Reporte> reportes = reporteService.getAllReportes();
-            ApiResponse response = ApiResponse.success("Reportes obtenidos correctamente", reportes);
-            ctx.status(HttpStatus.OK).json(response);
+            CacheSwr.Resultado<Pagina<Reporte>> resultado =
+                    reporteService.getReportesPage(ctx.queryParam("cursor"), parseLimite(ctx));
+            Pagina<Reporte> pagina = resultado.getValor();
+            ApiResponse response = ApiResponse.success("Reportes obtenidos correctamente",
+                    pagina.getItems(), pagina.getSiguienteCursor());
+            marcarObsoleto(ctx, resultado);
+            ETagUtil.asignar(ctx, etag("reportes", resultado.getVersion()))
+                    .status(HttpStatus.OK).json(response);
+        } catch (IllegalArgumentException e) {
+            ApiResponse response = ApiResponse.error("Error de validación: " + e.getMessage());
+            ctx.status(HttpStatus.BAD_REQUEST).json(response);
         } catch (SQLException e) {
             ApiResponse response = ApiResponse.error("Error al obtener reportes: " + e.getMessage());
             ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).json(response);
@@ -37,17 +102,105 @@ public class ReporteController {
         }
     }
 
+    /**
+     * GET /reportes?stream=true - Escribe todos los reportes en streaming
+     * La memoria usada es constante: cada fila se serializa en cuanto llega del cursor de MySQL
+     */
+    private void streamAll(Context ctx) {
+        ReporteStreamWriter writer = new ReporteStreamWriter(ctx, "Reportes obtenidos correctamente");
+        try {
+            reporteService.streamAllReportes(writer);
+            writer.finish();
+        } catch (SQLException e) {
+            if (writer.isStarted()) {
+                // Ya se enviaron datos: solo se puede cortar la respuesta
+                System.err.println("Streaming de reportes interrumpido: " + e.getMessage());
+                writer.abort();
+            } else {
+                ApiResponse response = ApiResponse.error("Error al obtener reportes: " + e.getMessage());
+                ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).json(response);
+            }
+        } catch (IOException e) {
+            // El cliente cerró la conexión durante el streaming
+            writer.abort();
+        } catch (Exception e) {
+            if (writer.isStarted()) {
+                writer.abort();
+            } else {
+                ApiResponse response = ApiResponse.error("Error interno del servidor");
+                ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).json(response);
+            }
+        }
+    }
+
+    /**
+     * GET /reportes/stream - Canal Server-Sent Events con los reportes creados, actualizados y eliminados
+     * Parámetro query opcional: 'ruta' (solo eventos de esa ruta). Requiere Accept: text/event-stream
+     * Al reconectar, el navegador envía Last-Event-ID y se reenvían los eventos perdidos
+     */
+    public void stream(Context ctx) {
+        try {
+            if (reporteHub == null) {
+                ApiResponse response = ApiResponse.error("El canal de eventos no está habilitado");
+                ctx.status(HttpStatus.SERVICE_UNAVAILABLE).json(response);
+                return;
+            }
+            if (!"text/event-stream".equals(ctx.header(Header.ACCEPT))) {
+                ApiResponse response = ApiResponse.error("Se requiere la cabecera Accept: text/event-stream");
+                ctx.status(HttpStatus.NOT_ACCEPTABLE).json(response);
+                return;
+            }
+
+            String rutaParam = ctx.queryParam("ruta");
+            Integer idRuta = rutaParam == null || rutaParam.trim().isEmpty() ? null : Integer.parseInt(rutaParam.trim());
+            if (idRuta != null && idRuta <= 0) {
+                throw new NumberFormatException();
+            }
+            if (!reporteHub.reservarLugar()) {
+                ApiResponse response = ApiResponse.error("Se alcanzó el máximo de conexiones de eventos");
+                ctx.header(Header.RETRY_AFTER, "30").status(HttpStatus.SERVICE_UNAVAILABLE).json(response);
+                return;
+            }
+
+            // EventSource no permite cabeceras propias en la primera conexión, por eso también se acepta por query
+            String ultimoEvento = ctx.header("Last-Event-ID");
+            if (ultimoEvento == null) {
+                ultimoEvento = ctx.queryParam("lastEventId");
+            }
+            String reanudarDesde = ultimoEvento;
+            try {
+                new SseHandler(cliente -> reporteHub.suscribir(cliente, idRuta, reanudarDesde)).handle(ctx);
+            } catch (Exception e) {
+                // La conexión no llegó a suscribirse
+                reporteHub.liberarLugar();
+                throw e;
+            }
+        } catch (NumberFormatException e) {
+            ApiResponse response = ApiResponse.error("ID de ruta no válido");
+            ctx.status(HttpStatus.BAD_REQUEST).json(response);
+        } catch (Exception e) {
+            ApiResponse response = ApiResponse.error("Error interno del servidor");
+            ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).json(response);
+        }
+    }
+
     /**
      * GET /reportes/{id} - Obtiene un reporte por ID
+     * Responde 304 si el ETag enviado en If-None-Match corresponde a la versión actual
      */
     public void getById(Context ctx) {
         try {
             int id = Integer.parseInt(ctx.pathParam("id"));
+            String etag = etag("reporte", id, reporteService.getVersion());
+            if (ETagUtil.responderSiNoModificado(ctx, etag)) {
+                return;
+            }
+
             Reporte reporte = reporteService.getReporteById(id);
 
             if (reporte != null) {
                 ApiResponse response = ApiResponse.success("Reporte encontrado", reporte);
-                ctx.status(HttpStatus.OK).json(response);
+                ETagUtil.asignar(ctx, etag).status(HttpStatus.OK).json(response);
             } else {
                 ApiResponse response = ApiResponse.error("Reporte no encontrado");
                 ctx.status(HttpStatus.NOT_FOUND).json(response);
@@ -89,6 +242,36 @@ public class ReporteController {
         }
     }
 
+    /**
+     * POST /reportes/batch - Crea varios reportes en una sola transacción
+     * Recibe un arreglo de reportes y devuelve, en el mismo orden, el ID creado o el error de cada uno
+     */
+    public void createBatch(Context ctx) {
+        try {
+            Reporte[] reportes = ctx.bodyAsClass(Reporte[].class);
+            List<ResultadoLote> resultados = reporteService.createReportesBatch(Arrays.asList(reportes));
+
+            long creados = resultados.stream().filter(ResultadoLote::isExitoso).count();
+            if (creados > 0) {
+                ApiResponse response = ApiResponse.success(
+                        creados + " de " + resultados.size() + " reportes creados", resultados);
+                ctx.status(HttpStatus.CREATED).json(response);
+            } else {
+                ApiResponse response = ApiResponse.error("Ningún reporte pasó la validación", resultados);
+                ctx.status(HttpStatus.BAD_REQUEST).json(response);
+            }
+        } catch (IllegalArgumentException e) {
+            ApiResponse response = ApiResponse.error("Error de validación: " + e.getMessage());
+            ctx.status(HttpStatus.BAD_REQUEST).json(response);
+        } catch (SQLException e) {
+            ApiResponse response = ApiResponse.error("Error al crear reportes: " + e.getMessage());
+            ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).json(response);
+        } catch (Exception e) {
+            ApiResponse response = ApiResponse.error("Error interno del servidor");
+            ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).json(response);
+        }
+    }
+
     /**
      * PUT /reportes/{id} - Actualiza un reporte existente
      */
@@ -98,17 +281,9 @@ public class ReporteController {
             Reporte reporte = ctx.bodyAsClass(Reporte.class);
             reporte.setIdReporte(id);
 
-            boolean actualizado = reporteService.updateReporte(reporte);
-
-            if (actualizado) {
-                // Obtener el reporte actualizado
-                Reporte reporteActualizado = reporteService.getReporteById(id);
-                ApiResponse response = ApiResponse.success("Reporte actualizado correctamente", reporteActualizado);
-                ctx.status(HttpStatus.OK).json(response);
-            } else {
-                ApiResponse response = ApiResponse.error("No se pudo actualizar el reporte");
-                ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).json(response);
-            }
+            Reporte reporteActualizado = reporteService.updateReporte(reporte);
+            ApiResponse response = ApiResponse.success("Reporte actualizado correctamente", reporteActualizado);
+            ctx.status(HttpStatus.OK).json(response);
         } catch (NumberFormatException e) {
             ApiResponse response = ApiResponse.error("ID de reporte no válido");
             ctx.status(HttpStatus.BAD_REQUEST).json(response);
@@ -166,15 +341,23 @@ public class ReporteController {
     }
 
     /**
-     * GET /reportes/usuario/{usuarioId} - Obtiene reportes de un usuario específico
+     * GET /reportes/usuario/{usuarioId} - Obtiene reportes de un usuario específico paginados por cursor
+     * Parámetros query opcionales: 'limit' (tamaño de página) y 'cursor' (valor 'next' de la respuesta anterior)
      */
     public void getByUsuario(Context ctx) {
         try {
             int usuarioId = Integer.parseInt(ctx.pathParam("usuarioId"));
-            List<Reporte> reportes = reporteService.getReportesByUsuario(usuarioId);
+            String etag = etag("reportes-usuario", usuarioId, reporteService.getVersion());
+            if (ETagUtil.responderSiNoModificado(ctx, etag)) {
+                return;
+            }
 
-            ApiResponse response = ApiResponse.success("Reportes del usuario obtenidos correctamente", reportes);
-            ctx.status(HttpStatus.OK).json(response);
+            Pagina<Reporte> pagina = reporteService.getReportesByUsuarioPage(usuarioId,
+                    ctx.queryParam("cursor"), parseLimite(ctx));
+
+            ApiResponse response = ApiResponse.success("Reportes del usuario obtenidos correctamente",
+                    pagina.getItems(), pagina.getSiguienteCursor());
+            ETagUtil.asignar(ctx, etag).status(HttpStatus.OK).json(response);
         } catch (NumberFormatException e) {
             ApiResponse response = ApiResponse.error("ID de usuario no válido");
             ctx.status(HttpStatus.BAD_REQUEST).json(response);
@@ -190,14 +373,168 @@ public class ReporteController {
         }
     }
 
+    /**
+     * GET /reportes/recientes - Obtiene los reportes más recientes de todas las rutas
+     * Parámetro query opcional: 'limit' (número de reportes). Se responde desde memoria
+     */
+    public void getRecientes(Context ctx) {
+        try {
+            String etag = etag("reportes-recientes", reporteService.getVersion());
+            if (ETagUtil.responderSiNoModificado(ctx, etag)) {
+                return;
+            }
+
+            List<Reporte> reportes = reporteService.getReportesRecientes(parseLimite(ctx));
+            ApiResponse response = ApiResponse.success("Reportes recientes obtenidos correctamente", reportes);
+            ETagUtil.asignar(ctx, etag).status(HttpStatus.OK).json(response);
+        } catch (IllegalArgumentException e) {
+            ApiResponse response = ApiResponse.error("Error de validación: " + e.getMessage());
+            ctx.status(HttpStatus.BAD_REQUEST).json(response);
+        } catch (IllegalStateException e) {
+            ApiResponse response = ApiResponse.error(e.getMessage());
+            ctx.status(HttpStatus.SERVICE_UNAVAILABLE).json(response);
+        } catch (Exception e) {
+            ApiResponse response = ApiResponse.error("Error interno del servidor");
+            ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).json(response);
+        }
+    }
+
+    /**
+     * GET /rutas/{idRuta}/reportes - Obtiene los reportes más recientes de una ruta
+     * Parámetro query opcional: 'limit' (número de reportes). Se responde desde memoria
+     */
+    public void getByRuta(Context ctx) {
+        try {
+            int idRuta = Integer.parseInt(ctx.pathParam("idRuta"));
+            String etag = etag("reportes-ruta", idRuta, reporteService.getVersion());
+            if (ETagUtil.responderSiNoModificado(ctx, etag)) {
+                return;
+            }
+
+            List<Reporte> reportes = reporteService.getReportesByRuta(idRuta, parseLimite(ctx));
+            ApiResponse response = ApiResponse.success("Reportes de la ruta obtenidos correctamente", reportes);
+            ETagUtil.asignar(ctx, etag).status(HttpStatus.OK).json(response);
+        } catch (NumberFormatException e) {
+            ApiResponse response = ApiResponse.error("ID de ruta no válido");
+            ctx.status(HttpStatus.BAD_REQUEST).json(response);
+        } catch (IllegalArgumentException e) {
+            ApiResponse response = ApiResponse.error("Error de validación: " + e.getMessage());
+            ctx.status(HttpStatus.BAD_REQUEST).json(response);
+        } catch (IllegalStateException e) {
+            ApiResponse response = ApiResponse.error(e.getMessage());
+            ctx.status(HttpStatus.SERVICE_UNAVAILABLE).json(response);
+        } catch (Exception e) {
+            ApiResponse response = ApiResponse.error("Error interno del servidor");
+            ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).json(response);
+        }
+    }
+
+    /**
+     * GET /reportes/trending - Rutas con más reportes recientes
+     * Parámetros query opcionales: 'tipo' (1=Incidencia por defecto, 2=Sugerencia, 3=Queja),
+     * 'ventana' (15m, 1h por defecto o 24h) y 'limit' (número de rutas, 10 por defecto)
+     */
+    public void getTrending(Context ctx) {
+        try {
+            String tipoParam = ctx.queryParam("tipo");
+            int tipo = tipoParam == null || tipoParam.trim().isEmpty() ? 1 : Integer.parseInt(tipoParam.trim());
+            String ventana = ctx.queryParam("ventana") != null ? ctx.queryParam("ventana") : "1h";
+            int limite = ctx.queryParam("limit") != null ? parseLimite(ctx) : TENDENCIAS_DEFAULT;
+
+            List<TendenciaRuta> rutas = reporteService.getTendencias(tipo, ventana, limite);
+            ApiResponse response = ApiResponse.success("Rutas con más reportes en la ventana " + ventana, rutas);
+            ctx.status(HttpStatus.OK).json(response);
+        } catch (NumberFormatException e) {
+            ApiResponse response = ApiResponse.error("Tipo de reporte no válido");
+            ctx.status(HttpStatus.BAD_REQUEST).json(response);
+        } catch (IllegalArgumentException e) {
+            ApiResponse response = ApiResponse.error("Error de validación: " + e.getMessage());
+            ctx.status(HttpStatus.BAD_REQUEST).json(response);
+        } catch (IllegalStateException e) {
+            ApiResponse response = ApiResponse.error(e.getMessage());
+            ctx.status(HttpStatus.SERVICE_UNAVAILABLE).json(response);
+        } catch (Exception e) {
+            ApiResponse response = ApiResponse.error("Error interno del servidor");
+            ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).json(response);
+        }
+    }
+
+    /**
+     * GET /reportes/rollups - Número de reportes por periodo y tipo
+     * Parámetros query: 'desde' y 'hasta' (fecha ISO, por ejemplo 2025-06-01 o 2025-06-01T08:00),
+     * 'granularidad' (hora o dia, por defecto dia) y 'ruta' opcional (sin ella se suman todas las rutas)
+     */
+    public void getRollups(Context ctx) {
+        try {
+            String rutaParam = ctx.queryParam("ruta");
+            Integer idRuta = rutaParam == null || rutaParam.trim().isEmpty() ? null : Integer.parseInt(rutaParam.trim());
+            String granularidad = ctx.queryParam("granularidad") != null ? ctx.queryParam("granularidad") : "dia";
+
+            List<Rollup> rollups = reporteService.getRollups(idRuta, parseFecha(ctx.queryParam("desde")),
+                    parseFecha(ctx.queryParam("hasta")), granularidad);
+            ApiResponse response = ApiResponse.success("Resúmenes de reportes obtenidos correctamente", rollups);
+            ctx.status(HttpStatus.OK).json(response);
+        } catch (NumberFormatException e) {
+            ApiResponse response = ApiResponse.error("ID de ruta no válido");
+            ctx.status(HttpStatus.BAD_REQUEST).json(response);
+        } catch (IllegalArgumentException e) {
+            ApiResponse response = ApiResponse.error("Error de validación: " + e.getMessage());
+            ctx.status(HttpStatus.BAD_REQUEST).json(response);
+        } catch (IllegalStateException e) {
+            ApiResponse response = ApiResponse.error(e.getMessage());
+            ctx.status(HttpStatus.SERVICE_UNAVAILABLE).json(response);
+        } catch (SQLException e) {
+            ApiResponse response = ApiResponse.error("Error al obtener resúmenes: " + e.getMessage());
+            ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).json(response);
+        } catch (Exception e) {
+            ApiResponse response = ApiResponse.error("Error interno del servidor");
+            ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).json(response);
+        }
+    }
+
+    /**
+     * GET /reportes/search - Busca reportes por texto en su título y descripción
+     * Parámetros query: 'q' (texto a buscar) y 'limit' opcional (número de resultados)
+     * Los resultados se ordenan por relevancia usando el índice en memoria
+     */
+    public void search(Context ctx) {
+        try {
+            List<ResultadoBusqueda> resultados = reporteService.buscarReportes(ctx.queryParam("q"), parseLimite(ctx));
+            ApiResponse response = ApiResponse.success("Búsqueda realizada correctamente", resultados);
+            ctx.status(HttpStatus.OK).json(response);
+        } catch (IllegalArgumentException e) {
+            ApiResponse response = ApiResponse.error("Error de validación: " + e.getMessage());
+            ctx.status(HttpStatus.BAD_REQUEST).json(response);
+        } catch (IllegalStateException e) {
+            ApiResponse response = ApiResponse.error(e.getMessage());
+            ctx.status(HttpStatus.SERVICE_UNAVAILABLE).json(response);
+        } catch (SQLException e) {
+            ApiResponse response = ApiResponse.error("Error al buscar reportes: " + e.getMessage());
+            ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).json(response);
+        } catch (Exception e) {
+            ApiResponse response = ApiResponse.error("Error interno del servidor");
+            ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).json(response);
+        }
+    }
+
     /**
      * GET /reportes/stats - Obtiene estadísticas de reportes
+     * El ETag incluye la hora actual porque el conteo del último mes cambia con el tiempo
+     * aunque no haya escrituras. Un resultado obsoleto de la caché lleva Warning 110
      */
     public void getStats(Context ctx) {
         try {
-            ReporteService.ReporteStats stats = reporteService.getReporteStats();
-            ApiResponse response = ApiResponse.success("Estadísticas obtenidas correctamente", stats);
-            ctx.status(HttpStatus.OK).json(response);
+            long hora = TimeUnit.MILLISECONDS.toHours(System.currentTimeMillis());
+            String etag = etag("stats", reporteService.getVersion(), hora);
+            if (ETagUtil.responderSiNoModificado(ctx, etag)) {
+                return;
+            }
+
+            CacheSwr.Resultado<ReporteStats> resultado = reporteService.getReporteStats();
+            ApiResponse response = ApiResponse.success("Estadísticas obtenidas correctamente", resultado.getValor());
+            marcarObsoleto(ctx, resultado);
+            ETagUtil.asignar(ctx, etag("stats", resultado.getVersion(), hora))
+                    .status(HttpStatus.OK).json(response);
         } catch (SQLException e) {
             ApiResponse response = ApiResponse.error("Error al obtener estadísticas: " + e.getMessage());
             ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).json(response);
@@ -207,26 +544,147 @@ public class ReporteController {
         }
     }
 
+    /**
+     * GET /reportes/cache/stats - Obtiene estadísticas de la caché de reportes
+     */
+    public void getCacheStats(Context ctx) {
+        try {
+            CacheInfo info = reporteService.getCacheInfo();
+            ApiResponse response = ApiResponse.success("Estadísticas de caché obtenidas correctamente", info);
+            ctx.status(HttpStatus.OK).json(response);
+        } catch (Exception e) {
+            ApiResponse response = ApiResponse.error("Error interno del servidor");
+            ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).json(response);
+        }
+    }
+
     /**
      * GET /reportes/tipos - Obtiene los tipos de reportes disponibles
+     * Los tipos son fijos, por lo que la respuesta se sirve ya serializada y comprimida
      */
     public void getTiposReporte(Context ctx) {
         try {
-            // Retornar los tipos de reporte disponibles
-            var tipos = List.of(
-                    new TipoReporte(1, "Incidencia", "Problemas relacionados con el servicio de transporte"),
-                    new TipoReporte(2, "Sugerencia", "Propuestas de mejora para el sistema de transporte"),
-                    new TipoReporte(3, "Queja", "Inconformidades sobre el servicio o comportamiento")
-            );
-
-            ApiResponse response = ApiResponse.success("Tipos de reporte obtenidos correctamente", tipos);
-            ctx.status(HttpStatus.OK).json(response);
+            tiposReporte.servir(ctx);
         } catch (Exception e) {
             ApiResponse response = ApiResponse.error("Error interno del servidor");
             ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).json(response);
         }
     }
 
+    /**
+     * Lee el parámetro query 'limit' o usa el tamaño de página por defecto
+     * @throws IllegalArgumentException Si el parámetro no es numérico
+     */
+    private int parseLimite(Context ctx) {
+        String limite = ctx.queryParam("limit");
+        if (limite == null || limite.trim().isEmpty()) {
+            return ReporteService.LIMITE_DEFAULT;
+        }
+        try {
+            return Integer.parseInt(limite.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("El límite debe ser un número");
+        }
+    }
+
+    /**
+     * Construye el ETag de una representación de reportes
+     * @return ETag, o null si una réplica podría no tener aún la última escritura (la respuesta
+     *         se envía entonces sin ETag y no se responde 304)
+     */
+    private String etag(String recurso, long... partes) {
+        return reporteService.isVersionConfiable() ? ETagUtil.crear(recurso, partes) : null;
+    }
+
+    /**
+     * Indica con Warning y Age que la respuesta sale de un valor obsoleto de la caché:
+     * 110 si se está recalculando en segundo plano, 111 si la base de datos no respondió
+     */
+    private void marcarObsoleto(Context ctx, CacheSwr.Resultado<?> resultado) {
+        if (resultado.isObsoleto()) {
+            ctx.header(Header.WARNING, resultado.isRespaldo()
+                    ? "111 - \"Revalidation Failed\""
+                    : "110 - \"Response is Stale\"");
+            ctx.header(Header.AGE, Long.toString(TimeUnit.MILLISECONDS.toSeconds(resultado.getEdadMs())));
+        }
+    }
+
+    /**
+     * Convierte una fecha ISO (solo día o día y hora) a LocalDateTime
+     * @return Fecha leída, o null si el parámetro no se envió
+     * @throws IllegalArgumentException Si la fecha no tiene formato ISO
+     */
+    private LocalDateTime parseFecha(String valor) {
+        if (valor == null || valor.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            String fecha = valor.trim();
+            return fecha.length() <= 10 ? LocalDate.parse(fecha).atStartOfDay() : LocalDateTime.parse(fecha);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Fecha no válida: " + valor);
+        }
+    }
+
+    /**
+     * Escribe el envoltorio {success, message, data} de ApiResponse directamente en la respuesta
+     * El envoltorio se abre con el primer reporte, de modo que un error antes de recibir datos
+     * todavía puede responderse con un 500 normal
+     */
+    private static class ReporteStreamWriter implements ReporteRepository.ReporteHandler {
+        private final Context ctx;
+        private final String message;
+        private JsonGenerator generator;
+
+        ReporteStreamWriter(Context ctx, String message) {
+            this.ctx = ctx;
+            this.message = message;
+        }
+
+        @Override
+        public void handle(Reporte reporte) throws IOException {
+            start();
+            generator.writeObject(reporte);
+        }
+
+        boolean isStarted() {
+            return generator != null;
+        }
+
+        void finish() throws IOException {
+            start();
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.close();
+        }
+
+        void abort() {
+            try {
+                if (generator != null) {
+                    generator.close();
+                }
+            } catch (IOException ignored) {
+                // La conexión ya no está disponible
+            }
+        }
+
+        private void start() throws IOException {
+            if (generator != null) {
+                return;
+            }
+            ctx.status(HttpStatus.OK).contentType("application/json");
+            generator = JsonUtil.getMapper().createGenerator(ctx.outputStream());
+            // Javalin se encarga de cerrar el output stream de la respuesta, y una respuesta
+            // interrumpida no debe cerrarse como JSON válido para que el cliente detecte el corte
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            generator.writeStartObject();
+            generator.writeBooleanField("success", true);
+            generator.writeStringField("message", message);
+            generator.writeArrayFieldStart("data");
+        }
+    }
+
     /**
      * Clase para representar tipos de reporte
      */
@@ -5,13 +5,19 @@ import io.javalin.http.HttpStatus;
 import com.wheely.model.Usuario;
 import com.wheely.service.UsuarioService;
 import com.wheely.util.ApiResponse;
+import com.wheely.util.ETagUtil;
+import com.wheely.util.LecturaPropia;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Controlador REST para gestión de usuarios
  * Maneja todos los endpoints HTTP para operaciones CRUD de usuarios
+ * Los endpoints que usan BCrypt responden de forma asíncrona con ctx.future
  */
 public class UsuarioController {
     private final UsuarioService usuarioService;
@@ -22,12 +28,18 @@ public class UsuarioController {
 
     /**
      * GET /usuarios - Obtiene todos los usuarios
+     * Responde 304 si el ETag enviado en If-None-Match corresponde a la versión actual
      */
     public void getAll(Context ctx) {
         try {
+            String etag = etag("usuarios", usuarioService.getVersion());
+            if (ETagUtil.responderSiNoModificado(ctx, etag)) {
+                return;
+            }
+
             List<Usuario> usuarios = usuarioService.getAllUsuarios();
             ApiResponse response = ApiResponse.success("Usuarios obtenidos correctamente", usuarios);
-            ctx.status(HttpStatus.OK).json(response);
+            ETagUtil.asignar(ctx, etag).status(HttpStatus.OK).json(response);
         } catch (SQLException e) {
             ApiResponse response = ApiResponse.error("Error al obtener usuarios: " + e.getMessage());
             ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).json(response);
@@ -39,15 +51,21 @@ public class UsuarioController {
 
     /**
      * GET /usuarios/{id} - Obtiene un usuario por ID
+     * Responde 304 si el ETag enviado en If-None-Match corresponde a la versión actual
      */
     public void getById(Context ctx) {
         try {
             int id = Integer.parseInt(ctx.pathParam("id"));
+            String etag = etag("usuario", id, usuarioService.getVersion());
+            if (ETagUtil.responderSiNoModificado(ctx, etag)) {
+                return;
+            }
+
             Usuario usuario = usuarioService.getUsuarioById(id);
 
             if (usuario != null) {
                 ApiResponse response = ApiResponse.success("Usuario encontrado", usuario);
-                ctx.status(HttpStatus.OK).json(response);
+                ETagUtil.asignar(ctx, etag).status(HttpStatus.OK).json(response);
             } else {
                 ApiResponse response = ApiResponse.error("Usuario no encontrado");
                 ctx.status(HttpStatus.NOT_FOUND).json(response);
@@ -70,14 +88,18 @@ public class UsuarioController {
     public void create(Context ctx) {
         try {
             Usuario usuario = ctx.bodyAsClass(Usuario.class);
-            int idCreado = usuarioService.createUsuario(usuario);
+            CompletableFuture<Void> resultado = usuarioService.createUsuario(usuario).thenAccept(idCreado -> {
+                // Retornar el usuario creado sin contraseña
+                usuario.setIdUser(idCreado);
+                usuario.setPassword("");
+                LecturaPropia.registrarEscritura(ctx);
 
-            // Retornar el usuario creado sin contraseña
-            usuario.setIdUser(idCreado);
-            usuario.setPassword("");
-
-            ApiResponse response = ApiResponse.success("Usuario creado correctamente", usuario);
-            ctx.status(HttpStatus.CREATED).json(response);
+                ApiResponse response = ApiResponse.success("Usuario creado correctamente", usuario);
+                ctx.status(HttpStatus.CREATED).json(response);
+            });
+            responderAsync(ctx, resultado, "Error al crear usuario: ");
+        } catch (RejectedExecutionException e) {
+            responderServicioSaturado(ctx);
         } catch (IllegalArgumentException e) {
             ApiResponse response = ApiResponse.error("Error de validación: " + e.getMessage());
             ctx.status(HttpStatus.BAD_REQUEST).json(response);
@@ -99,17 +121,14 @@ public class UsuarioController {
             Usuario usuario = ctx.bodyAsClass(Usuario.class);
             usuario.setIdUser(id);
 
-            boolean actualizado = usuarioService.updateUsuario(usuario);
-
-            if (actualizado) {
-                // Obtener el usuario actualizado sin contraseña
-                Usuario usuarioActualizado = usuarioService.getUsuarioById(id);
+            CompletableFuture<Void> resultado = usuarioService.updateUsuario(usuario).thenAccept(usuarioActualizado -> {
+                LecturaPropia.registrarEscritura(ctx);
                 ApiResponse response = ApiResponse.success("Usuario actualizado correctamente", usuarioActualizado);
                 ctx.status(HttpStatus.OK).json(response);
-            } else {
-                ApiResponse response = ApiResponse.error("No se pudo actualizar el usuario");
-                ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).json(response);
-            }
+            });
+            responderAsync(ctx, resultado, "Error al actualizar usuario: ");
+        } catch (RejectedExecutionException e) {
+            responderServicioSaturado(ctx);
         } catch (NumberFormatException e) {
             ApiResponse response = ApiResponse.error("ID de usuario no válido");
             ctx.status(HttpStatus.BAD_REQUEST).json(response);
@@ -163,15 +182,20 @@ public class UsuarioController {
             // Obtener credenciales del body JSON
             var credentials = ctx.bodyAsClass(LoginRequest.class);
 
-            Usuario usuario = usuarioService.authenticateUsuario(credentials.email, credentials.password);
-
-            if (usuario != null) {
-                ApiResponse response = ApiResponse.success("Login exitoso", usuario);
-                ctx.status(HttpStatus.OK).json(response);
-            } else {
-                ApiResponse response = ApiResponse.error("Credenciales incorrectas");
-                ctx.status(HttpStatus.UNAUTHORIZED).json(response);
-            }
+            CompletableFuture<Void> resultado = usuarioService
+                    .authenticateUsuario(credentials.email, credentials.password)
+                    .thenAccept(usuario -> {
+                        if (usuario != null) {
+                            ApiResponse response = ApiResponse.success("Login exitoso", usuario);
+                            ctx.status(HttpStatus.OK).json(response);
+                        } else {
+                            ApiResponse response = ApiResponse.error("Credenciales incorrectas");
+                            ctx.status(HttpStatus.UNAUTHORIZED).json(response);
+                        }
+                    });
+            responderAsync(ctx, resultado, "Error en el login: ");
+        } catch (RejectedExecutionException e) {
+            responderServicioSaturado(ctx);
         } catch (IllegalArgumentException e) {
             ApiResponse response = ApiResponse.error("Error de validación: " + e.getMessage());
             ctx.status(HttpStatus.BAD_REQUEST).json(response);
@@ -192,15 +216,21 @@ public class UsuarioController {
             int id = Integer.parseInt(ctx.pathParam("id"));
             var passwordRequest = ctx.bodyAsClass(ChangePasswordRequest.class);
 
-            boolean cambiado = usuarioService.changePassword(id, passwordRequest.currentPassword, passwordRequest.newPassword);
-
-            if (cambiado) {
-                ApiResponse response = ApiResponse.success("Contraseña cambiada correctamente");
-                ctx.status(HttpStatus.OK).json(response);
-            } else {
-                ApiResponse response = ApiResponse.error("No se pudo cambiar la contraseña");
-                ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).json(response);
-            }
+            CompletableFuture<Void> resultado = usuarioService
+                    .changePassword(id, passwordRequest.currentPassword, passwordRequest.newPassword)
+                    .thenAccept(cambiado -> {
+                        if (cambiado) {
+                            LecturaPropia.registrarEscritura(ctx);
+                            ApiResponse response = ApiResponse.success("Contraseña cambiada correctamente");
+                            ctx.status(HttpStatus.OK).json(response);
+                        } else {
+                            ApiResponse response = ApiResponse.error("No se pudo cambiar la contraseña");
+                            ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).json(response);
+                        }
+                    });
+            responderAsync(ctx, resultado, "Error al cambiar contraseña: ");
+        } catch (RejectedExecutionException e) {
+            responderServicioSaturado(ctx);
         } catch (NumberFormatException e) {
             ApiResponse response = ApiResponse.error("ID de usuario no válido");
             ctx.status(HttpStatus.BAD_REQUEST).json(response);
@@ -216,6 +246,50 @@ public class UsuarioController {
         }
     }
 
+    /**
+     * Construye el ETag de una representación de usuarios
+     * @return ETag, o null si una réplica podría no tener aún la última escritura
+     */
+    private String etag(String recurso, long... partes) {
+        return usuarioService.isVersionConfiable() ? ETagUtil.crear(recurso, partes) : null;
+    }
+
+    /**
+     * Entrega a Javalin un resultado asíncrono y traduce sus errores a respuestas HTTP
+     * @param ctx Contexto de la petición
+     * @param resultado Futuro que escribe la respuesta al completarse
+     * @param mensajeErrorBd Prefijo del mensaje para errores de base de datos
+     */
+    private void responderAsync(Context ctx, CompletableFuture<Void> resultado, String mensajeErrorBd) {
+        ctx.future(() -> resultado.exceptionally(throwable -> {
+            Throwable e = throwable instanceof CompletionException && throwable.getCause() != null
+                    ? throwable.getCause() : throwable;
+
+            if (e instanceof RejectedExecutionException) {
+                responderServicioSaturado(ctx);
+            } else if (e instanceof IllegalArgumentException) {
+                ApiResponse response = ApiResponse.error("Error de validación: " + e.getMessage());
+                ctx.status(HttpStatus.BAD_REQUEST).json(response);
+            } else if (e instanceof SQLException) {
+                ApiResponse response = ApiResponse.error(mensajeErrorBd + e.getMessage());
+                ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).json(response);
+            } else {
+                ApiResponse response = ApiResponse.error("Error interno del servidor");
+                ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).json(response);
+            }
+            return null;
+        }));
+    }
+
+    /**
+     * Responde 503 cuando el pool de BCrypt no puede aceptar más trabajo
+     */
+    private void responderServicioSaturado(Context ctx) {
+        ApiResponse response = ApiResponse.error("Servidor ocupado, intente de nuevo en unos segundos");
+        ctx.header("Retry-After", "1");
+        ctx.status(HttpStatus.SERVICE_UNAVAILABLE).json(response);
+    }
+
     /**
      * Clase para recibir credenciales de login
      */
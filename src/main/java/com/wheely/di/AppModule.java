@@ -1,13 +1,27 @@
 package com.wheely.di;
 
+import com.wheely.config.AppConfig;
+import com.wheely.config.DatabaseConfig;
 import com.wheely.controller.UsuarioController;
 import com.wheely.controller.ReporteController;
+import com.wheely.metrics.MetricsRegistry;
+import com.wheely.repository.UsuarioIndex;
 import com.wheely.repository.UsuarioRepository;
+import com.wheely.repository.ReporteGroupWriter;
 import com.wheely.repository.ReporteRepository;
+import com.wheely.repository.RollupRepository;
 import com.wheely.routes.UsuarioRoutes;
 import com.wheely.routes.ReporteRoutes;
+import com.wheely.search.IndiceBusqueda;
 import com.wheely.service.UsuarioService;
+import com.wheely.service.LineasDeTiempo;
+import com.wheely.service.ReporteCounters;
 import com.wheely.service.ReporteService;
+import com.wheely.service.TendenciasRutas;
+import com.wheely.sse.ReporteHub;
+
+import java.io.IOException;
+import java.nio.file.Paths;
 
 /**
  * Módulo de configuración de dependencias de la aplicación
@@ -15,6 +29,25 @@ import com.wheely.service.ReporteService;
  * Crea e inicializa todas las capas de la aplicación
  */
 public class AppModule {
+    // Repositorio de usuarios compartido por ambos módulos para que su índice de existencia sea único
+    private static UsuarioRepository usuarioRepository;
+
+    /**
+     * Obtiene el repositorio de usuarios compartido, cargando su índice de existencia la primera vez
+     * @return Instancia única de UsuarioRepository
+     */
+    private static synchronized UsuarioRepository getUsuarioRepository() {
+        if (usuarioRepository == null) {
+            usuarioRepository = new UsuarioRepository(new UsuarioIndex());
+            try {
+                usuarioRepository.cargarIndice();
+            } catch (Exception e) {
+                // Sin índice cargado las validaciones consultan la base de datos y lo van llenando
+                System.err.println("No se pudo cargar el índice de usuarios: " + e.getMessage());
+            }
+        }
+        return usuarioRepository;
+    }
 
     /**
      * Inicializa y configura todo el módulo de usuarios
@@ -23,7 +56,7 @@ public class AppModule {
      */
     public static UsuarioRoutes initUsuarios() {
         // Capa de acceso a datos
-        UsuarioRepository usuarioRepository = new UsuarioRepository();
+        UsuarioRepository usuarioRepository = getUsuarioRepository();
 
         // Capa de lógica de negocio
         UsuarioService usuarioService = new UsuarioService(usuarioRepository);
@@ -42,16 +75,120 @@ public class AppModule {
      */
     public static ReporteRoutes initReportes() {
         // Capa de acceso a datos
-        UsuarioRepository usuarioRepository = new UsuarioRepository();
-        ReporteRepository reporteRepository = new ReporteRepository();
+        UsuarioRepository usuarioRepository = getUsuarioRepository();
+        // Con réplicas la caché por ID puede cargar una fila atrasada: se le da vigencia para que se corrija sola
+        long cacheTtlMs = DatabaseConfig.tieneReplicas() ? AppConfig.getLong("REPORTE_CACHE_TTL_MS", 60_000) : 0;
+        ReporteRepository reporteRepository = new ReporteRepository(AppConfig.getLong("REPORTE_CACHE_MAX", 10_000), cacheTtlMs);
 
         // Capa de lógica de negocio (ReporteService necesita UsuarioRepository para validaciones)
-        ReporteService reporteService = new ReporteService(reporteRepository, usuarioRepository);
+        // Los contadores en memoria responden /reportes/stats sin consultar la base de datos
+        ReporteCounters counters = AppConfig.getBoolean("STATS_COUNTERS_ENABLED", true) ? new ReporteCounters() : null;
+        ReporteGroupWriter groupWriter = createGroupWriter(reporteRepository);
+        ReporteService reporteService = new ReporteService(reporteRepository, usuarioRepository, counters,
+                groupWriter);
+        reporteService.iniciarReconciliacion(AppConfig.getLong("STATS_RECONCILE_SECONDS", 300));
+        reporteService.getConsultasCombinadas().forEach(MetricsRegistry.getInstance()::register);
+
+        // Caché stale-while-revalidate: la primera página y las estadísticas calculadas en la base
+        // de datos se responden desde memoria y se recalculan en segundo plano
+        if (AppConfig.getBoolean("CACHE_SWR_ENABLED", true)) {
+            reporteService.habilitarCacheSwr(AppConfig.getLong("CACHE_SWR_FRESCO_MS", 2000),
+                    AppConfig.getLong("CACHE_SWR_OBSOLETO_MS", 60_000));
+            reporteService.getCachesSwr().forEach(MetricsRegistry.getInstance()::register);
+        }
+
+        // Resúmenes por hora y día mantenidos en la misma transacción que cada escritura
+        if (AppConfig.getBoolean("ROLLUP_ENABLED", true)) {
+            RollupRepository rollupRepository = new RollupRepository();
+            try {
+                rollupRepository.crearTabla();
+                // El cálculo inicial continúa desde el último día guardado si no terminó antes
+                boolean reiniciar = AppConfig.getBoolean("ROLLUP_BACKFILL", false);
+                boolean completos = !reiniciar && rollupRepository.isBackfillCompleto();
+                reporteRepository.habilitarRollups();
+                reporteService.habilitarRollups(rollupRepository, completos);
+                if (!completos) {
+                    reporteService.iniciarBackfillRollups(reiniciar);
+                }
+            } catch (Exception e) {
+                // Sin la tabla las escrituras no la mantienen y /reportes/rollups responde 503
+                System.err.println("No se pudo preparar la tabla de resúmenes: " + e.getMessage());
+            }
+        }
+
+        // El log de escritura se reinserta con los resúmenes ya habilitados (para que las
+        // inserciones recuperadas los ajusten) y antes de cargar las líneas de tiempo, tendencias
+        // y búsqueda desde la base de datos (para que las incluyan)
+        if (groupWriter != null) {
+            try {
+                groupWriter.iniciar();
+            } catch (IOException e) {
+                throw new IllegalStateException("No se pudo abrir el log de escritura de reportes", e);
+            }
+        }
+
+        // Líneas de tiempo en memoria para los reportes recientes por ruta y globales
+        LineasDeTiempo lineasDeTiempo = new LineasDeTiempo(AppConfig.getInt("TIMELINE_POR_RUTA", 100),
+                AppConfig.getInt("TIMELINE_GLOBAL", 500));
+        try {
+            lineasDeTiempo.cargar(reporteRepository);
+            reporteService.habilitarLineasDeTiempo(lineasDeTiempo);
+        } catch (Exception e) {
+            // Sin líneas de tiempo los endpoints de reportes recientes responden 503
+            System.err.println("No se pudieron cargar los reportes recientes: " + e.getMessage());
+        }
+
+        // Rutas con más reportes recientes, con memoria fija sin importar el número de rutas
+        if (AppConfig.getBoolean("TRENDING_ENABLED", true)) {
+            TendenciasRutas tendencias = new TendenciasRutas(AppConfig.getInt("TRENDING_TOP_K", 100));
+            try {
+                tendencias.cargar(reporteRepository);
+            } catch (Exception e) {
+                // Las ventanas se llenan con los reportes nuevos
+                System.err.println("No se pudieron cargar las tendencias de rutas: " + e.getMessage());
+            }
+            reporteService.habilitarTendencias(tendencias);
+        }
+
+        // Índice de texto en memoria para /reportes/search, construido en segundo plano
+        if (AppConfig.getBoolean("BUSQUEDA_ENABLED", true)) {
+            IndiceBusqueda indiceBusqueda = new IndiceBusqueda();
+            reporteService.habilitarBusqueda(indiceBusqueda);
+            indiceBusqueda.iniciarCarga(reporteRepository);
+        }
+
+        // Canal de eventos en tiempo real para /reportes/stream
+        ReporteHub reporteHub = null;
+        if (AppConfig.getBoolean("SSE_ENABLED", true)) {
+            reporteHub = new ReporteHub(AppConfig.getInt("SSE_COLA", 256),
+                    AppConfig.getInt("SSE_HISTORIAL", 1024),
+                    AppConfig.getInt("SSE_MAX_SUSCRIPTORES", 50_000),
+                    AppConfig.getInt("SSE_HILOS", 4),
+                    AppConfig.getLong("SSE_LATIDO_SEGUNDOS", 15));
+            reporteService.agregarListener(reporteHub);
+            MetricsRegistry.getInstance().register(reporteHub);
+        }
 
         // Capa de controladores
-        ReporteController reporteController = new ReporteController(reporteService);
+        ReporteController reporteController = new ReporteController(reporteService, reporteHub);
 
         // Capa de rutas
         return new ReporteRoutes(reporteController);
     }
+
+    /**
+     * Crea el escritor agrupado de reportes si INGESTA_MODO=grupo
+     * Se inicia (recuperación del log incluida) después de configurar el resto del módulo
+     * @return Escritor configurado, o null para insertar cada reporte directamente
+     */
+    private static ReporteGroupWriter createGroupWriter(ReporteRepository reporteRepository) {
+        if (!AppConfig.get("INGESTA_MODO", "directo").equalsIgnoreCase("grupo")) {
+            return null;
+        }
+        return new ReporteGroupWriter(reporteRepository,
+                Paths.get(AppConfig.get("INGESTA_WAL_PATH", "data/reportes.wal")),
+                AppConfig.getInt("INGESTA_COLA_MAX", 10_000),
+                AppConfig.getInt("INGESTA_LOTE_MAX", 200),
+                AppConfig.getLong("INGESTA_ESPERA_MS", 5));
+    }
 }
\ No newline at end of file
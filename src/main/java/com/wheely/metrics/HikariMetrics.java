@@ -0,0 +1,71 @@
+package com.wheely.metrics;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.HdrHistogram.ConcurrentHistogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas del pool de conexiones HikariCP
+ * Hikari llama al tracker en cada préstamo de conexión; aquí se guarda el tiempo de espera
+ * para obtenerla y los tiempos agotados, y en cada consulta de /metrics se leen las
+ * conexiones activas, inactivas y los hilos en espera
+ */
+public class HikariMetrics implements MetricsTrackerFactory, MetricsCollector {
+    private static final double MICROS_A_SEGUNDOS = 1e-6;
+
+    private final ConcurrentHistogram adquisicion = new ConcurrentHistogram(3);
+    private final LongAdder sumaAdquisicionMicros = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private volatile String poolName;
+    private volatile PoolStats poolStats;
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        this.poolName = poolName;
+        this.poolStats = poolStats;
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                long micros = TimeUnit.NANOSECONDS.toMicros(elapsedAcquiredNanos);
+                adquisicion.recordValue(micros);
+                sumaAdquisicionMicros.add(micros);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+
+    @Override
+    public void collect(PrometheusWriter out) {
+        PoolStats stats = poolStats;
+        if (stats == null) {
+            // El pool todavía no se ha creado
+            return;
+        }
+        String[] labels = {"pool", poolName};
+
+        out.declare("hikari_connections_active", "gauge", "Conexiones prestadas en uso");
+        out.sample("hikari_connections_active", labels, stats.getActiveConnections());
+        out.declare("hikari_connections_idle", "gauge", "Conexiones inactivas disponibles");
+        out.sample("hikari_connections_idle", labels, stats.getIdleConnections());
+        out.declare("hikari_connections_pending", "gauge", "Hilos esperando una conexión");
+        out.sample("hikari_connections_pending", labels, stats.getPendingThreads());
+        out.declare("hikari_connections_total", "gauge", "Conexiones abiertas en el pool");
+        out.sample("hikari_connections_total", labels, stats.getTotalConnections());
+        out.declare("hikari_connections_max", "gauge", "Tamaño máximo del pool");
+        out.sample("hikari_connections_max", labels, stats.getMaxConnections());
+
+        out.declare("hikari_connections_acquire_seconds", "summary", "Tiempo de espera para obtener una conexión");
+        out.summary("hikari_connections_acquire_seconds", labels, adquisicion.copy(), MICROS_A_SEGUNDOS,
+                sumaAdquisicionMicros.sum() * MICROS_A_SEGUNDOS);
+        out.declare("hikari_connections_timeout_total", "counter", "Peticiones de conexión con tiempo agotado");
+        out.sample("hikari_connections_timeout_total", labels, timeouts.sum());
+    }
+}
\ No newline at end of file
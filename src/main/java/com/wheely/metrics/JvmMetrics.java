@@ -0,0 +1,47 @@
+package com.wheely.metrics;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+/**
+ * Métricas de la JVM: memoria heap y no heap, recolecciones de basura e hilos
+ */
+public class JvmMetrics implements MetricsCollector {
+
+    @Override
+    public void collect(PrometheusWriter out) {
+        MemoryMXBean memoria = ManagementFactory.getMemoryMXBean();
+        MemoryUsage heap = memoria.getHeapMemoryUsage();
+        MemoryUsage noHeap = memoria.getNonHeapMemoryUsage();
+
+        out.declare("jvm_memory_used_bytes", "gauge", "Memoria usada por área");
+        out.sample("jvm_memory_used_bytes", new String[]{"area", "heap"}, heap.getUsed());
+        out.sample("jvm_memory_used_bytes", new String[]{"area", "nonheap"}, noHeap.getUsed());
+        out.declare("jvm_memory_committed_bytes", "gauge", "Memoria reservada por área");
+        out.sample("jvm_memory_committed_bytes", new String[]{"area", "heap"}, heap.getCommitted());
+        out.sample("jvm_memory_committed_bytes", new String[]{"area", "nonheap"}, noHeap.getCommitted());
+        out.declare("jvm_memory_max_bytes", "gauge", "Memoria máxima por área (-1 si no está definida)");
+        out.sample("jvm_memory_max_bytes", new String[]{"area", "heap"}, heap.getMax());
+
+        // Prometheus exige que las muestras de cada métrica vayan juntas, por eso dos recorridos
+        List<GarbageCollectorMXBean> colectores = ManagementFactory.getGarbageCollectorMXBeans();
+        out.declare("jvm_gc_collections_total", "counter", "Número de recolecciones por colector");
+        for (GarbageCollectorMXBean gc : colectores) {
+            out.sample("jvm_gc_collections_total", new String[]{"gc", gc.getName()},
+                    Math.max(0, gc.getCollectionCount()));
+        }
+        out.declare("jvm_gc_collection_seconds_total", "counter", "Tiempo acumulado en recolecciones por colector");
+        for (GarbageCollectorMXBean gc : colectores) {
+            out.sample("jvm_gc_collection_seconds_total", new String[]{"gc", gc.getName()},
+                    Math.max(0, gc.getCollectionTime()) / 1000.0);
+        }
+
+        ThreadMXBean hilos = ManagementFactory.getThreadMXBean();
+        out.declare("jvm_threads_live", "gauge", "Hilos de plataforma vivos");
+        out.sample("jvm_threads_live", hilos.getThreadCount());
+    }
+}
\ No newline at end of file
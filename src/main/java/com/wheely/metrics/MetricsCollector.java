@@ -0,0 +1,16 @@
+package com.wheely.metrics;
+
+/**
+ * Fuente de métricas que se exporta en formato de texto de Prometheus
+ * Cada componente que quiera publicar métricas implementa esta interfaz
+ * y se registra en MetricsRegistry
+ */
+@FunctionalInterface
+public interface MetricsCollector {
+
+    /**
+     * Escribe las métricas del componente
+     * @param out Salida en formato de texto de Prometheus
+     */
+    void collect(PrometheusWriter out);
+}
\ No newline at end of file
@@ -0,0 +1,128 @@
+package com.wheely.metrics;
+
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registro central de métricas de la aplicación
+ * Mide la latencia de cada petición HTTP por método, plantilla de ruta (por ejemplo
+ * /reportes/{id}) y código de estado usando histogramas HdrHistogram, y agrupa los
+ * demás colectores (pool de conexiones, JVM) para exportarlos en /metrics
+ */
+public class MetricsRegistry {
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    private static final String ATRIBUTO_INICIO = "metrics.inicio";
+    // Etiqueta usada cuando la petición no coincidió con ninguna ruta, para no crear
+    // una serie por cada URL desconocida
+    private static final String RUTA_DESCONOCIDA = "sin_ruta";
+    private static final double MICROS_A_SEGUNDOS = 1e-6;
+
+    private final Map<String, LatenciaRuta> latencias = new ConcurrentHashMap<>();
+    private final List<MetricsCollector> collectors = new CopyOnWriteArrayList<>();
+
+    private MetricsRegistry() {
+        collectors.add(this::collectHttp);
+    }
+
+    /**
+     * @return Instancia única del registro
+     */
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registra un colector adicional que se incluirá en /metrics
+     * @param collector Colector de métricas
+     */
+    public void register(MetricsCollector collector) {
+        collectors.add(collector);
+    }
+
+    /**
+     * Instala los manejadores before/after que miden cada petición y el endpoint /metrics
+     * @param app Aplicación Javalin
+     */
+    public void install(Javalin app) {
+        app.before(ctx -> ctx.attribute(ATRIBUTO_INICIO, System.nanoTime()));
+        app.after(this::registrarPeticion);
+        app.get("/metrics", ctx -> ctx.contentType("text/plain; version=0.0.4; charset=utf-8").result(scrape()));
+    }
+
+    /**
+     * Genera la salida completa en formato de texto de Prometheus
+     * @return Texto con todas las métricas registradas
+     */
+    public String scrape() {
+        PrometheusWriter out = new PrometheusWriter();
+        for (MetricsCollector collector : collectors) {
+            collector.collect(out);
+        }
+        return out.toString();
+    }
+
+    private void registrarPeticion(Context ctx) {
+        Long inicio = ctx.attribute(ATRIBUTO_INICIO);
+        if (inicio == null) {
+            return;
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - inicio);
+        String metodo = ctx.method().name();
+        String ruta = plantillaRuta(ctx);
+        int status = ctx.statusCode();
+
+        latencias.computeIfAbsent(metodo + ' ' + ruta + ' ' + status,
+                k -> new LatenciaRuta(metodo, ruta, Integer.toString(status))).registrar(micros);
+    }
+
+    private static String plantillaRuta(Context ctx) {
+        try {
+            String ruta = ctx.endpointHandlerPath();
+            if (ruta != null && !ruta.isEmpty() && ctx.statusCode() != 404) {
+                return ruta;
+            }
+        } catch (RuntimeException e) {
+            // Sin endpoint asociado (por ejemplo, la petición falló antes de enrutar)
+        }
+        return RUTA_DESCONOCIDA;
+    }
+
+    private void collectHttp(PrometheusWriter out) {
+        out.declare("http_server_requests_seconds", "summary",
+                "Latencia de las peticiones HTTP por método, ruta y código de estado");
+        for (LatenciaRuta latencia : latencias.values()) {
+            Histogram copia = latencia.histograma.copy();
+            out.summary("http_server_requests_seconds", latencia.labels, copia, MICROS_A_SEGUNDOS,
+                    latencia.sumaMicros.sum() * MICROS_A_SEGUNDOS);
+        }
+    }
+
+    /**
+     * Histograma de latencia de una combinación método/ruta/estado
+     */
+    private static class LatenciaRuta {
+        private final String[] labels;
+        // Registra microsegundos con 3 dígitos significativos; se redimensiona solo si hace falta
+        private final ConcurrentHistogram histograma = new ConcurrentHistogram(3);
+        private final LongAdder sumaMicros = new LongAdder();
+
+        LatenciaRuta(String metodo, String ruta, String status) {
+            this.labels = new String[]{"method", metodo, "route", ruta, "status", status};
+        }
+
+        void registrar(long micros) {
+            histograma.recordValue(micros);
+            sumaMicros.add(micros);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,97 @@
+package com.wheely.metrics;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Escritor del formato de texto de exposición de Prometheus (versión 0.0.4)
+ */
+public class PrometheusWriter {
+    // Cuantiles publicados para cada histograma
+    private static final double[] CUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final StringBuilder out = new StringBuilder(8192);
+    private final Set<String> declaradas = new HashSet<>();
+
+    /**
+     * Escribe las líneas HELP y TYPE de una métrica (solo la primera vez)
+     * @param nombre Nombre de la métrica
+     * @param tipo Tipo de Prometheus: counter, gauge o summary
+     * @param ayuda Descripción de la métrica
+     */
+    public PrometheusWriter declare(String nombre, String tipo, String ayuda) {
+        if (declaradas.add(nombre)) {
+            out.append("# HELP ").append(nombre).append(' ').append(ayuda).append('\n');
+            out.append("# TYPE ").append(nombre).append(' ').append(tipo).append('\n');
+        }
+        return this;
+    }
+
+    /**
+     * Escribe una muestra
+     * @param nombre Nombre de la métrica
+     * @param labels Pares nombre/valor de las etiquetas (puede estar vacío)
+     * @param valor Valor de la muestra
+     */
+    public PrometheusWriter sample(String nombre, String[] labels, double valor) {
+        out.append(nombre);
+        if (labels.length > 0) {
+            out.append('{');
+            for (int i = 0; i < labels.length; i += 2) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+            }
+            out.append('}');
+        }
+        out.append(' ').append(format(valor)).append('\n');
+        return this;
+    }
+
+    /**
+     * Escribe una muestra sin etiquetas
+     */
+    public PrometheusWriter sample(String nombre, double valor) {
+        return sample(nombre, new String[0], valor);
+    }
+
+    /**
+     * Escribe un histograma como summary de Prometheus (cuantiles, _count y _sum)
+     * @param nombre Nombre de la métrica
+     * @param labels Etiquetas del histograma
+     * @param histograma Histograma con valores registrados en la unidad indicada
+     * @param escala Factor para convertir los valores del histograma a segundos
+     * @param suma Suma de todos los valores registrados, ya en segundos
+     */
+    public PrometheusWriter summary(String nombre, String[] labels, Histogram histograma, double escala, double suma) {
+        String[] conCuantil = new String[labels.length + 2];
+        System.arraycopy(labels, 0, conCuantil, 0, labels.length);
+        conCuantil[labels.length] = "quantile";
+        for (double cuantil : CUANTILES) {
+            conCuantil[labels.length + 1] = Double.toString(cuantil);
+            sample(nombre, conCuantil, histograma.getValueAtPercentile(cuantil * 100) * escala);
+        }
+        sample(nombre + "_count", labels, histograma.getTotalCount());
+        sample(nombre + "_sum", labels, suma);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    private static String format(double valor) {
+        if (valor == (long) valor) {
+            return Long.toString((long) valor);
+        }
+        return Double.toString(valor);
+    }
+
+    private static String escape(String valor) {
+        return valor.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,30 @@
+package com.wheely.model;
+
+/**
+ * Modelo con las estadísticas de uso de una caché en memoria
+ */
+public class CacheInfo {
+    private long tamanoEstimado;
+    private long tamanoMaximo;
+    private long hits;
+    private long misses;
+    private double hitRate;
+    private long evictions;
+
+    public CacheInfo(long tamanoEstimado, long tamanoMaximo, long hits, long misses, double hitRate, long evictions) {
+        this.tamanoEstimado = tamanoEstimado;
+        this.tamanoMaximo = tamanoMaximo;
+        this.hits = hits;
+        this.misses = misses;
+        this.hitRate = hitRate;
+        this.evictions = evictions;
+    }
+
+    // Getters
+    public long getTamanoEstimado() { return tamanoEstimado; }
+    public long getTamanoMaximo() { return tamanoMaximo; }
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+    public double getHitRate() { return hitRate; }
+    public long getEvictions() { return evictions; }
+}
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.wheely.model;
+
+import java.util.List;
+
+/**
+ * Resultado de una consulta paginada por cursor
+ * Contiene los elementos de la página y el cursor para obtener la siguiente
+ */
+public class Pagina<T> {
+    private final List<T> items;
+    private final String siguienteCursor;
+
+    public Pagina(List<T> items, String siguienteCursor) {
+        this.items = items;
+        this.siguienteCursor = siguienteCursor;
+    }
+
+    // Getters
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return Cursor de la siguiente página, o null si no hay más resultados
+     */
+    public String getSiguienteCursor() {
+        return siguienteCursor;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.wheely.model;
+
+/**
+ * Modelo de estadísticas agregadas de la tabla reporte_estado_ruta
+ * Contiene el total de reportes, el conteo por tipo y los reportes recientes
+ */
+public class ReporteStats {
+    private int totalReportes;
+    private int incidencias;
+    private int sugerencias;
+    private int quejas;
+    private int reportesUltimoMes;
+
+    public ReporteStats(int totalReportes, int incidencias, int sugerencias, int quejas, int reportesUltimoMes) {
+        this.totalReportes = totalReportes;
+        this.incidencias = incidencias;
+        this.sugerencias = sugerencias;
+        this.quejas = quejas;
+        this.reportesUltimoMes = reportesUltimoMes;
+    }
+
+    // Getters
+    public int getTotalReportes() { return totalReportes; }
+    public int getIncidencias() { return incidencias; }
+    public int getSugerencias() { return sugerencias; }
+    public int getQuejas() { return quejas; }
+    public int getReportesUltimoMes() { return reportesUltimoMes; }
+}
\ No newline at end of file
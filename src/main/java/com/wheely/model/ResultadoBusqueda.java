@@ -0,0 +1,19 @@
+package com.wheely.model;
+
+/**
+ * Resultado de una búsqueda de texto sobre reportes
+ * Contiene el reporte encontrado y su puntaje de relevancia (BM25, mayor es más relevante)
+ */
+public class ResultadoBusqueda {
+    private Reporte reporte;
+    private double puntaje;
+
+    public ResultadoBusqueda(Reporte reporte, double puntaje) {
+        this.reporte = reporte;
+        this.puntaje = puntaje;
+    }
+
+    // Getters
+    public Reporte getReporte() { return reporte; }
+    public double getPuntaje() { return puntaje; }
+}
\ No newline at end of file
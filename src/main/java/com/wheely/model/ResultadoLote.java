@@ -0,0 +1,35 @@
+package com.wheely.model;
+
+/**
+ * Resultado de un elemento dentro de una operación por lotes
+ * Indica la posición del elemento en la petición y su ID generado o el error de validación
+ */
+public class ResultadoLote {
+    private int indice;
+    private Integer id;
+    private String error;
+
+    public ResultadoLote(int indice, Integer id, String error) {
+        this.indice = indice;
+        this.id = id;
+        this.error = error;
+    }
+
+    // Métodos estáticos para crear resultados comunes
+    public static ResultadoLote creado(int indice, int id) {
+        return new ResultadoLote(indice, id, null);
+    }
+
+    public static ResultadoLote error(int indice, String error) {
+        return new ResultadoLote(indice, null, error);
+    }
+
+    // Getters
+    public int getIndice() { return indice; }
+    public Integer getId() { return id; }
+    public String getError() { return error; }
+
+    public boolean isExitoso() {
+        return error == null;
+    }
+}
\ No newline at end of file
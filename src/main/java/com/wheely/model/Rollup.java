@@ -0,0 +1,27 @@
+package com.wheely.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Número de reportes de un tipo en un periodo (hora o día)
+ * idRuta es null cuando el resumen suma todas las rutas
+ */
+public class Rollup {
+    private Integer idRuta;
+    private int idTipoReporte;
+    private LocalDateTime periodo;
+    private long total;
+
+    public Rollup(Integer idRuta, int idTipoReporte, LocalDateTime periodo, long total) {
+        this.idRuta = idRuta;
+        this.idTipoReporte = idTipoReporte;
+        this.periodo = periodo;
+        this.total = total;
+    }
+
+    // Getters
+    public Integer getIdRuta() { return idRuta; }
+    public int getIdTipoReporte() { return idTipoReporte; }
+    public LocalDateTime getPeriodo() { return periodo; }
+    public long getTotal() { return total; }
+}
\ No newline at end of file
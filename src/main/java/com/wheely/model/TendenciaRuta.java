@@ -0,0 +1,19 @@
+package com.wheely.model;
+
+/**
+ * Ruta con su número estimado de reportes dentro de una ventana de tiempo
+ * La estimación puede exceder el valor real en un margen pequeño, nunca quedar por debajo
+ */
+public class TendenciaRuta {
+    private int idRuta;
+    private long reportes;
+
+    public TendenciaRuta(int idRuta, long reportes) {
+        this.idRuta = idRuta;
+        this.reportes = reportes;
+    }
+
+    // Getters
+    public int getIdRuta() { return idRuta; }
+    public long getReportes() { return reportes; }
+}
\ No newline at end of file
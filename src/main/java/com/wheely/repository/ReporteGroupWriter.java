@@ -0,0 +1,402 @@
+package com.wheely.repository;
+
+import com.wheely.config.DatabaseConfig;
+import com.wheely.model.Reporte;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+/**
+ * Escritura agrupada (group commit) de reportes nuevos
+ * Las peticiones dejan su reporte en una cola acotada y un único hilo escritor la vacía
+ * en lotes de hasta maxLote reportes o cada maxEsperaMs milisegundos. Cada lote se escribe
+ * primero en un archivo local de solo-agregado (write-ahead log) y luego se inserta en MySQL
+ * en una sola transacción, de modo que el costo del commit se reparte entre todo el lote.
+ *
+ * El llamador recibe el ID solo después del commit en MySQL. Si su lote no empieza a
+ * procesarse a tiempo, el reporte se retira de la cola y el llamador recibe un error sin que
+ * se inserte; una vez que el hilo escritor lo tomó, el llamador espera el resultado del lote
+ * aunque tarde más, para no responder error sobre un reporte que sí se insertará.
+ *
+ * Si el proceso termina entre la
+ * escritura en el log y el commit, los reportes pendientes se reinsertan al iniciar.
+ * Esto es entrega "al menos una vez": si la caída ocurre justo después del commit y antes
+ * de marcar el lote como resuelto, esos reportes se insertan de nuevo
+ */
+public class ReporteGroupWriter {
+    // TIPO_REPORTE_UTF es el formato anterior (textos con writeUTF); solo se lee al recuperar
+    private static final byte TIPO_REPORTE_UTF = 1;
+    private static final byte TIPO_RESUELTO = 2;
+    private static final byte TIPO_REPORTE = 3;
+
+    // Longitud que marca un texto nulo
+    private static final int TEXTO_NULO = -1;
+
+    // Tiempo máximo que un llamador espera lugar en la cola o a que el hilo escritor tome su reporte
+    private static final long ESPERA_COLA_MS = 1000;
+    private static final long ESPERA_CONFIRMACION_MS = 30000;
+
+    private final ReporteRepository reporteRepository;
+    private final BlockingQueue<Pendiente> cola;
+    private final int maxLote;
+    private final long maxEsperaNanos;
+    private final Path walPath;
+    // Se abre en iniciar(), antes de arrancar el hilo escritor que lo usa
+    private FileChannel wal;
+    private long secuencia = 0;
+
+    /**
+     * Crea el escritor; no acepta reportes hasta llamar a iniciar()
+     * @param reporteRepository Repositorio usado para insertar los lotes
+     * @param walPath Ruta del archivo de write-ahead log
+     * @param capacidadCola Número máximo de reportes esperando en memoria
+     * @param maxLote Número máximo de reportes por transacción
+     * @param maxEsperaMs Milisegundos máximos que un reporte espera a que se complete su lote
+     */
+    public ReporteGroupWriter(ReporteRepository reporteRepository, Path walPath, int capacidadCola,
+                              int maxLote, long maxEsperaMs) {
+        this.reporteRepository = reporteRepository;
+        this.cola = new ArrayBlockingQueue<>(capacidadCola);
+        this.maxLote = maxLote;
+        this.maxEsperaNanos = TimeUnit.MILLISECONDS.toNanos(maxEsperaMs);
+        this.walPath = walPath;
+    }
+
+    /**
+     * Reinserta los reportes pendientes del log e inicia el hilo escritor
+     * Debe llamarse una sola vez, después de configurar el repositorio (por ejemplo, con
+     * habilitarRollups), para que los reportes recuperados se inserten igual que los nuevos
+     * @throws IOException Error al leer o abrir el archivo de log
+     */
+    public void iniciar() throws IOException {
+        if (walPath.getParent() != null) {
+            Files.createDirectories(walPath.getParent());
+        }
+        recuperar();
+        this.wal = FileChannel.open(walPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+
+        Thread writer = new Thread(this::ejecutar, "reporte-group-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Encola un reporte y espera a que su lote se confirme en la base de datos
+     * @param reporte Reporte ya validado
+     * @return ID generado del reporte
+     * @throws SQLException Error al insertar, cola llena o tiempo de espera agotado
+     */
+    public int submit(Reporte reporte) throws SQLException {
+        Pendiente pendiente = new Pendiente(reporte);
+        try {
+            if (!cola.offer(pendiente, ESPERA_COLA_MS, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientException("Cola de escritura de reportes llena");
+            }
+            int id;
+            try {
+                id = pendiente.resultado.get(ESPERA_CONFIRMACION_MS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (pendiente.cancelar()) {
+                    cola.remove(pendiente);
+                    throw new SQLTransientException("Tiempo de espera agotado al confirmar el reporte");
+                }
+                // El hilo escritor ya lo tomó: se insertará, así que se espera el resultado del lote
+                id = pendiente.resultado.get();
+            }
+            // El hilo escritor es otro: la petición que esperaba abre aquí su ventana de lectura del primario
+            DatabaseConfig.registrarEscritura();
+            return id;
+        } catch (InterruptedException e) {
+            if (pendiente.cancelar()) {
+                cola.remove(pendiente);
+            }
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido mientras se esperaba la confirmación del reporte", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Error al guardar el reporte", e.getCause());
+        }
+    }
+
+    /**
+     * Ciclo del hilo escritor: arma lotes por tamaño o por tiempo y los procesa
+     */
+    private void ejecutar() {
+        List<Pendiente> lote = new ArrayList<>(maxLote);
+        while (true) {
+            try {
+                Pendiente primero = cola.take();
+                if (!primero.tomar()) {
+                    // Su llamador dejó de esperar antes de que se tomara
+                    continue;
+                }
+                lote.add(primero);
+                long limite = System.nanoTime() + maxEsperaNanos;
+                while (lote.size() < maxLote) {
+                    long restante = limite - System.nanoTime();
+                    if (restante <= 0) {
+                        break;
+                    }
+                    Pendiente siguiente = cola.poll(restante, TimeUnit.NANOSECONDS);
+                    if (siguiente == null) {
+                        break;
+                    }
+                    if (siguiente.tomar()) {
+                        lote.add(siguiente);
+                    }
+                }
+                procesar(lote);
+            } catch (InterruptedException e) {
+                // Los reportes ya tomados no se escribieron: sus llamadores no deben seguir esperando
+                SQLException error = new SQLException("El escritor de reportes se detuvo", e);
+                for (Pendiente pendiente : lote) {
+                    pendiente.resultado.completeExceptionally(error);
+                }
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                for (Pendiente pendiente : lote) {
+                    pendiente.resultado.completeExceptionally(e);
+                }
+            } finally {
+                lote.clear();
+                // saveAll abre la ventana de lectura en este hilo; las peticiones la abren al recibir su ID
+                DatabaseConfig.terminarPeticion();
+            }
+        }
+    }
+
+    /**
+     * Escribe el lote en el log, lo inserta en una transacción y notifica a los llamadores
+     */
+    private void procesar(List<Pendiente> lote) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        List<Reporte> reportes = new ArrayList<>(lote.size());
+        for (Pendiente pendiente : lote) {
+            escribirRegistro(buffer, registroReporte(++secuencia, pendiente.reporte));
+            reportes.add(pendiente.reporte);
+        }
+        escribir(buffer, true);
+
+        try {
+            int[] ids = reporteRepository.saveAll(reportes);
+            for (int i = 0; i < ids.length; i++) {
+                lote.get(i).resultado.complete(ids[i]);
+            }
+        } catch (SQLIntegrityConstraintViolationException | SQLDataException e) {
+            // Un dato inválido hace fallar todo el lote: se reintenta cada reporte por separado
+            // para que solo falle el que causó el error
+            for (Pendiente pendiente : lote) {
+                try {
+                    pendiente.resultado.complete(reporteRepository.save(pendiente.reporte));
+                } catch (SQLException individual) {
+                    pendiente.resultado.completeExceptionally(individual);
+                }
+            }
+        } catch (SQLException e) {
+            for (Pendiente pendiente : lote) {
+                pendiente.resultado.completeExceptionally(e);
+            }
+        }
+
+        // Todos los reportes hasta esta secuencia ya tienen respuesta; se marcan como resueltos
+        ByteArrayOutputStream marca = new ByteArrayOutputStream();
+        escribirRegistro(marca, registroResuelto(secuencia));
+        escribir(marca, false);
+
+        // Sin reportes en espera el log completo está resuelto y se puede vaciar
+        if (cola.isEmpty()) {
+            wal.truncate(0);
+        }
+    }
+
+    /**
+     * Reinserta los reportes del log que no alcanzaron a marcarse como resueltos
+     */
+    private void recuperar() throws IOException {
+        if (!Files.exists(walPath) || Files.size(walPath) == 0) {
+            return;
+        }
+
+        List<Reporte> pendientes = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(walPath))) {
+            while (true) {
+                byte[] registro = leerRegistro(in);
+                if (registro == null) {
+                    break;
+                }
+                DataInputStream datos = new DataInputStream(new ByteArrayInputStream(registro));
+                byte tipo = datos.readByte();
+                datos.readLong();
+                if (tipo == TIPO_RESUELTO) {
+                    pendientes.clear();
+                } else if (tipo == TIPO_REPORTE) {
+                    pendientes.add(new Reporte(datos.readInt(), datos.readInt(), datos.readInt(),
+                            leerTexto(datos), leerTexto(datos)));
+                } else if (tipo == TIPO_REPORTE_UTF) {
+                    pendientes.add(new Reporte(datos.readInt(), datos.readInt(), datos.readInt(),
+                            datos.readUTF(), datos.readUTF()));
+                }
+            }
+        }
+
+        try {
+            if (!pendientes.isEmpty()) {
+                reporteRepository.saveAll(pendientes);
+                System.out.println("Reportes recuperados del log de escritura: " + pendientes.size());
+            }
+            Files.delete(walPath);
+        } catch (SQLException e) {
+            // Se conserva el log aparte para no perder los reportes ni mezclarlos con los nuevos
+            Path respaldo = walPath.resolveSibling(walPath.getFileName() + ".pendiente-" + System.currentTimeMillis());
+            Files.move(walPath, respaldo, StandardCopyOption.ATOMIC_MOVE);
+            System.err.println("No se pudieron recuperar los reportes pendientes, se conservan en " +
+                    respaldo + ": " + e.getMessage());
+        }
+    }
+
+    private void escribir(ByteArrayOutputStream buffer, boolean sincronizar) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+        while (bytes.hasRemaining()) {
+            wal.write(bytes);
+        }
+        if (sincronizar) {
+            wal.force(false);
+        }
+    }
+
+    private static byte[] registroReporte(long secuencia, Reporte reporte) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(TIPO_REPORTE);
+        out.writeLong(secuencia);
+        out.writeInt(reporte.getIdRuta());
+        out.writeInt(reporte.getIdTipoReporte());
+        out.writeInt(reporte.getIdUsuario());
+        escribirTexto(out, reporte.getTitulo());
+        escribirTexto(out, reporte.getDescripcion());
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Escribe un texto como [longitud][bytes UTF-8], con longitud TEXTO_NULO para null
+     * (writeUTF no acepta null ni textos de más de 64 KB)
+     */
+    private static void escribirTexto(DataOutputStream out, String texto) throws IOException {
+        if (texto == null) {
+            out.writeInt(TEXTO_NULO);
+            return;
+        }
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String leerTexto(DataInputStream in) throws IOException {
+        int longitud = in.readInt();
+        if (longitud == TEXTO_NULO) {
+            return null;
+        }
+        byte[] bytes = new byte[longitud];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] registroResuelto(long secuencia) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(TIPO_RESUELTO);
+        out.writeLong(secuencia);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Cada registro se guarda como [longitud][crc32][datos] para detectar escrituras incompletas
+     */
+    private static void escribirRegistro(ByteArrayOutputStream buffer, byte[] datos) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(datos);
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(datos.length);
+        out.writeInt((int) crc.getValue());
+        out.write(datos);
+    }
+
+    /**
+     * Lee el siguiente registro válido
+     * @return Datos del registro, o null al llegar al final o a un registro incompleto
+     */
+    private static byte[] leerRegistro(DataInputStream in) throws IOException {
+        try {
+            int longitud = in.readInt();
+            int crcEsperado = in.readInt();
+            if (longitud <= 0 || longitud > 1 << 20) {
+                return null;
+            }
+            byte[] datos = new byte[longitud];
+            in.readFully(datos);
+            CRC32 crc = new CRC32();
+            crc.update(datos);
+            return (int) crc.getValue() == crcEsperado ? datos : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reporte en espera junto con el futuro que recibe su ID
+     * Lo decide una sola vez quien llegue primero: el hilo escritor al tomarlo para un lote o el
+     * llamador al cancelarlo por tiempo de espera
+     */
+    private static class Pendiente {
+        private final Reporte reporte;
+        private final CompletableFuture<Integer> resultado = new CompletableFuture<>();
+        private final AtomicBoolean decidido = new AtomicBoolean();
+
+        Pendiente(Reporte reporte) {
+            this.reporte = reporte;
+        }
+
+        /**
+         * @return true si el hilo escritor debe insertarlo; false si el llamador ya lo canceló
+         */
+        boolean tomar() {
+            return decidido.compareAndSet(false, true);
+        }
+
+        /**
+         * @return true si se canceló antes de que el hilo escritor lo tomara
+         */
+        boolean cancelar() {
+            return decidido.compareAndSet(false, true);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,65 @@
+package com.wheely.repository;
+
+import com.wheely.model.Reporte;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Conversión de filas de reporte_estado_ruta a objetos Reporte
+ * Todas las consultas de reportes seleccionan las columnas en el orden de COLUMNAS,
+ * así que cada valor se lee por su índice fijo en lugar de buscar la etiqueta de la
+ * columna en cada celda
+ */
+public class ReporteMapper {
+
+    // Lista de columnas compartida por todas las consultas; el orden define los índices de abajo
+    public static final String COLUMNAS = "idReporte_Estado_Ruta, idRuta, idTipo_Reporte, idUsuario, " +
+            "titulo, descripcion, fecha_reporte";
+
+    // SELECT base sin condiciones ni orden
+    public static final String SELECT = "SELECT " + COLUMNAS + " FROM reporte_estado_ruta ";
+
+    private static final int ID_REPORTE = 1;
+    private static final int ID_RUTA = 2;
+    private static final int ID_TIPO_REPORTE = 3;
+    private static final int ID_USUARIO = 4;
+    private static final int TITULO = 5;
+    private static final int DESCRIPCION = 6;
+    private static final int FECHA_REPORTE = 7;
+
+    /**
+     * Convierte la fila actual del ResultSet en un reporte
+     * La fecha se obtiene directamente como LocalDateTime, sin pasar por java.sql.Timestamp
+     * @param rs ResultSet posicionado en una fila de una consulta que usa COLUMNAS
+     * @return Reporte con los datos de la fila
+     * @throws SQLException Error al leer la fila
+     */
+    public static Reporte map(ResultSet rs) throws SQLException {
+        return new Reporte(
+                rs.getInt(ID_REPORTE),
+                rs.getInt(ID_RUTA),
+                rs.getInt(ID_TIPO_REPORTE),
+                rs.getInt(ID_USUARIO),
+                rs.getString(TITULO),
+                rs.getString(DESCRIPCION),
+                rs.getObject(FECHA_REPORTE, LocalDateTime.class));
+    }
+
+    /**
+     * Convierte todas las filas restantes del ResultSet
+     * @param rs ResultSet de una consulta que usa COLUMNAS
+     * @return Lista de reportes en el orden de la consulta
+     * @throws SQLException Error al leer las filas
+     */
+    public static List<Reporte> mapAll(ResultSet rs) throws SQLException {
+        List<Reporte> reportes = new ArrayList<>();
+        while (rs.next()) {
+            reportes.add(map(rs));
+        }
+        return reportes;
+    }
+}
\ No newline at end of file
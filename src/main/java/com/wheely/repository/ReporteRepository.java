@@ -1,17 +1,27 @@
 package com.wheely.repository;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.wheely.config.DatabaseConfig;
+import com.wheely.model.CacheInfo;
 import com.wheely.model.Reporte;
+import com.wheely.model.ReporteStats;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.io.IOException;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Repositorio para operaciones CRUD de la tabla reporte_estado_ruta
@@ -19,78 +29,189 @@ import java.util.List;
  */
 public class ReporteRepository {
 
+    // Condición de la página siguiente: (fecha, id) < (cursorFecha, cursorId)
+    // Se expresa con un rango sobre fecha_reporte para que MySQL pueda usar el índice
+    private static final String CONDICION_CURSOR =
+            "fecha_reporte <= ? AND (fecha_reporte < ? OR idReporte_Estado_Ruta < ?) ";
+
+    // Caché de reportes por ID: acotada por tamaño y con admisión por frecuencia (W-TinyLFU)
+    private final Cache<Integer, Reporte> cache;
+    private final long cacheMaxSize;
+
+    // Versión de la tabla: se incrementa después de cada escritura confirmada y se usa para
+    // los ETags. Solo refleja las escrituras hechas por esta instancia
+    private final AtomicLong version = new AtomicLong();
+    // Momento (epoch en milisegundos) de la última escritura confirmada por esta instancia
+    private volatile long ultimaEscrituraMs;
+
+    // Si es true, cada escritura ajusta reporte_rollup dentro de su misma transacción
+    private volatile boolean rollups = false;
+
+    // IDs escritos hace menos que la ventana de lectura de las propias escrituras. La caché de
+    // findById es compartida entre clientes, así que esos IDs se cargan desde el primario para
+    // no guardar en ella una versión anterior leída de una réplica atrasada
+    private final Cache<Integer, Boolean> escritosRecientes = Caffeine.newBuilder()
+            .expireAfterWrite(DatabaseConfig.getVentanaEscrituraMs(), TimeUnit.MILLISECONDS)
+            .maximumSize(100_000)
+            .build();
+
+    public ReporteRepository() {
+        this(10_000);
+    }
+
+    /**
+     * @param cacheMaxSize Número máximo de reportes guardados en la caché de findById
+     */
+    public ReporteRepository(long cacheMaxSize) {
+        this(cacheMaxSize, 0);
+    }
+
+    /**
+     * @param cacheMaxSize Número máximo de reportes guardados en la caché de findById
+     * @param cacheTtlMs Tiempo máximo que un reporte permanece en la caché de findById, o 0 para no
+     *                   expirarlo. Con réplicas debe ser mayor que 0: una fila leída de una réplica
+     *                   atrasada solo se corrige al invalidarse, y sin TTL podría quedarse para siempre
+     */
+    public ReporteRepository(long cacheMaxSize, long cacheTtlMs) {
+        this.cacheMaxSize = cacheMaxSize;
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .recordStats();
+        if (cacheTtlMs > 0) {
+            builder.expireAfterWrite(cacheTtlMs, TimeUnit.MILLISECONDS);
+        }
+        this.cache = builder.build();
+    }
+
+    /**
+     * Activa el mantenimiento de reporte_rollup en las escrituras
+     * Solo debe llamarse después de crear la tabla (RollupRepository.crearTabla)
+     */
+    public void habilitarRollups() {
+        this.rollups = true;
+    }
+
     /**
-     * Obtiene todos los reportes de la base de datos
-     * @return Lista de todos los reportes
+     * Recorre todos los reportes sin cargarlos en memoria
+     * El driver entrega las filas en streaming (DatabaseConfig.FETCH_STREAMING), por lo que
+     * solo la fila actual está en memoria sin importar el tamaño de la tabla
+     * @param handler Recibe cada reporte en el orden de la consulta
      * @throws SQLException Error en la consulta
+     * @throws IOException Error del handler al procesar un reporte
      */
-    public List<Reporte> findAll() throws SQLException {
-        List<Reporte> reportes = new ArrayList<>();
-        String query = "SELECT idReporte_Estado_Ruta, idRuta, idTipo_Reporte, idUsuario, " +
-                "titulo, descripcion, fecha_reporte FROM reporte_estado_ruta " +
-                "ORDER BY fecha_reporte DESC";
+    public void streamAll(ReporteHandler handler) throws SQLException, IOException {
+        String query = ReporteMapper.SELECT + "ORDER BY fecha_reporte DESC";
 
-        try (Connection conn = DatabaseConfig.getDataSource().getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query);
-             ResultSet rs = stmt.executeQuery()) {
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
 
-            while (rs.next()) {
-                Reporte reporte = new Reporte();
-                reporte.setIdReporte(rs.getInt("idReporte_Estado_Ruta"));
-                reporte.setIdRuta(rs.getInt("idRuta"));
-                reporte.setIdTipoReporte(rs.getInt("idTipo_Reporte"));
-                reporte.setIdUsuario(rs.getInt("idUsuario"));
-                reporte.setTitulo(rs.getString("titulo"));
-                reporte.setDescripcion(rs.getString("descripcion"));
+            stmt.setFetchSize(DatabaseConfig.FETCH_STREAMING);
 
-                // Convertir Timestamp a LocalDateTime
-                Timestamp timestamp = rs.getTimestamp("fecha_reporte");
-                if (timestamp != null) {
-                    reporte.setFechaReporte(timestamp.toLocalDateTime());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.handle(ReporteMapper.map(rs));
                 }
+            }
+        }
+    }
 
-                reportes.add(reporte);
+    /**
+     * Recorre los reportes creados a partir de una fecha sin cargarlos en memoria
+     * @param desde Fecha mínima (inclusive)
+     * @param handler Recibe cada reporte del más antiguo al más reciente
+     * @throws SQLException Error en la consulta
+     * @throws IOException Error del handler al procesar un reporte
+     */
+    public void streamDesde(LocalDateTime desde, ReporteHandler handler) throws SQLException, IOException {
+        String query = ReporteMapper.SELECT + "WHERE fecha_reporte >= ? ORDER BY fecha_reporte";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            stmt.setFetchSize(DatabaseConfig.FETCH_STREAMING);
+            stmt.setTimestamp(1, Timestamp.valueOf(desde));
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.handle(ReporteMapper.map(rs));
+                }
             }
         }
-        return reportes;
     }
 
     /**
      * Busca un reporte por su ID
+     * Las lecturas se sirven desde la caché; las lecturas concurrentes de un mismo ID
+     * que no está en caché comparten una sola consulta a la base de datos
      * @param idReporte ID del reporte a buscar
      * @return Reporte encontrado o null si no existe
      * @throws SQLException Error en la consulta
      */
     public Reporte findById(int idReporte) throws SQLException {
-        Reporte reporte = null;
-        String query = "SELECT idReporte_Estado_Ruta, idRuta, idTipo_Reporte, idUsuario, " +
-                "titulo, descripcion, fecha_reporte FROM reporte_estado_ruta " +
-                "WHERE idReporte_Estado_Ruta = ?";
+        try {
+            Reporte reporte = cache.get(idReporte, id -> {
+                try {
+                    return findByIdFromDatabase(id);
+                } catch (SQLException e) {
+                    throw new CacheLoadException(e);
+                }
+            });
+            // Se devuelve una copia para que los llamadores no modifiquen la entrada en caché
+            return reporte != null ? copy(reporte) : null;
+        } catch (CacheLoadException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Busca un reporte por su ID directamente en la base de datos
+     * @param idReporte ID del reporte a buscar
+     * @return Reporte encontrado o null si no existe
+     * @throws SQLException Error en la consulta
+     */
+    private Reporte findByIdFromDatabase(int idReporte) throws SQLException {
+        String query = ReporteMapper.SELECT + "WHERE idReporte_Estado_Ruta = ?";
+        boolean reciente = escritosRecientes.getIfPresent(idReporte) != null;
 
-        try (Connection conn = DatabaseConfig.getDataSource().getConnection();
+        try (Connection conn = reciente ? DatabaseConfig.getConnection() : DatabaseConfig.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(query)) {
 
             stmt.setInt(1, idReporte);
 
             try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    reporte = new Reporte();
-                    reporte.setIdReporte(rs.getInt("idReporte_Estado_Ruta"));
-                    reporte.setIdRuta(rs.getInt("idRuta"));
-                    reporte.setIdTipoReporte(rs.getInt("idTipo_Reporte"));
-                    reporte.setIdUsuario(rs.getInt("idUsuario"));
-                    reporte.setTitulo(rs.getString("titulo"));
-                    reporte.setDescripcion(rs.getString("descripcion"));
-
-                    // Convertir Timestamp a LocalDateTime
-                    Timestamp timestamp = rs.getTimestamp("fecha_reporte");
-                    if (timestamp != null) {
-                        reporte.setFechaReporte(timestamp.toLocalDateTime());
-                    }
-                }
+                return rs.next() ? ReporteMapper.map(rs) : null;
             }
         }
-        return reporte;
+    }
+
+    /**
+     * Busca varios reportes por ID con una sola consulta
+     * @param ids IDs de los reportes a buscar
+     * @return Reportes encontrados, sin un orden particular (los IDs inexistentes se omiten)
+     * @throws SQLException Error en la consulta
+     */
+    public List<Reporte> findByIds(List<Integer> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        StringBuilder query = new StringBuilder(ReporteMapper.SELECT).append("WHERE idReporte_Estado_Ruta IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            query.append(i == 0 ? "?" : ", ?");
+        }
+        query.append(")");
+
+        try (Connection conn = DatabaseConfig.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(query.toString())) {
+
+            for (int i = 0; i < ids.size(); i++) {
+                stmt.setInt(i + 1, ids.get(i));
+            }
+
+            return mapReportes(stmt);
+        }
     }
 
     /**
@@ -100,40 +221,104 @@ public class ReporteRepository {
      * @throws SQLException Error en la consulta
      */
     public List<Reporte> findByUsuario(int idUsuario) throws SQLException {
-        List<Reporte> reportes = new ArrayList<>();
-        String query = "SELECT idReporte_Estado_Ruta, idRuta, idTipo_Reporte, idUsuario, " +
-                "titulo, descripcion, fecha_reporte FROM reporte_estado_ruta " +
-                "WHERE idUsuario = ? ORDER BY fecha_reporte DESC";
+        String query = ReporteMapper.SELECT + "WHERE idUsuario = ? ORDER BY fecha_reporte DESC";
 
-        try (Connection conn = DatabaseConfig.getDataSource().getConnection();
+        try (Connection conn = DatabaseConfig.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(query)) {
 
             stmt.setInt(1, idUsuario);
 
             try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    Reporte reporte = new Reporte();
-                    reporte.setIdReporte(rs.getInt("idReporte_Estado_Ruta"));
-                    reporte.setIdRuta(rs.getInt("idRuta"));
-                    reporte.setIdTipoReporte(rs.getInt("idTipo_Reporte"));
-                    reporte.setIdUsuario(rs.getInt("idUsuario"));
-                    reporte.setTitulo(rs.getString("titulo"));
-                    reporte.setDescripcion(rs.getString("descripcion"));
-
-                    Timestamp timestamp = rs.getTimestamp("fecha_reporte");
-                    if (timestamp != null) {
-                        reporte.setFechaReporte(timestamp.toLocalDateTime());
-                    }
+                return ReporteMapper.mapAll(rs);
+            }
+        }
+    }
 
-                    reportes.add(reporte);
-                }
+    /**
+     * Obtiene una página de reportes usando paginación por cursor (keyset)
+     * El orden es (fecha_reporte DESC, idReporte_Estado_Ruta DESC), por lo que el costo
+     * de cada página es constante sin importar qué tan profundo pagine el cliente.
+     * Se apoya en un índice sobre (fecha_reporte, idReporte_Estado_Ruta)
+     * @param cursorFecha Fecha del último reporte de la página anterior, o null para la primera página
+     * @param cursorId ID del último reporte de la página anterior (ignorado si cursorFecha es null)
+     * @param limite Número máximo de reportes a obtener
+     * @return Lista de reportes de la página
+     * @throws SQLException Error en la consulta
+     */
+    public List<Reporte> findPage(LocalDateTime cursorFecha, int cursorId, int limite) throws SQLException {
+        String query = ReporteMapper.SELECT +
+                (cursorFecha != null ? "WHERE " + CONDICION_CURSOR : "") +
+                "ORDER BY fecha_reporte DESC, idReporte_Estado_Ruta DESC LIMIT ?";
+
+        try (Connection conn = DatabaseConfig.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+
+            int index = 1;
+            if (cursorFecha != null) {
+                index = setCursor(stmt, index, cursorFecha, cursorId);
             }
+            stmt.setInt(index, limite);
+
+            return mapReportes(stmt);
+        }
+    }
+
+    /**
+     * Obtiene los reportes más recientes de cada ruta con una sola consulta
+     * Usa ROW_NUMBER() por ruta (MySQL 8), así que cada ruta aporta como máximo 'porRuta' filas
+     * @param porRuta Número máximo de reportes por ruta
+     * @return Reportes agrupados por ruta y, dentro de cada ruta, del más reciente al más antiguo
+     * @throws SQLException Error en la consulta
+     */
+    public List<Reporte> findRecientesPorRuta(int porRuta) throws SQLException {
+        String query = "SELECT " + ReporteMapper.COLUMNAS + " FROM (" +
+                "SELECT " + ReporteMapper.COLUMNAS + ", ROW_NUMBER() OVER (PARTITION BY idRuta " +
+                "ORDER BY fecha_reporte DESC, idReporte_Estado_Ruta DESC) AS posicion " +
+                "FROM reporte_estado_ruta) recientes WHERE posicion <= ? " +
+                "ORDER BY idRuta, fecha_reporte DESC, idReporte_Estado_Ruta DESC";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+
+            stmt.setInt(1, porRuta);
+
+            return mapReportes(stmt);
+        }
+    }
+
+    /**
+     * Obtiene una página de reportes de un usuario usando paginación por cursor (keyset)
+     * Se apoya en un índice sobre (idUsuario, fecha_reporte, idReporte_Estado_Ruta)
+     * @param idUsuario ID del usuario
+     * @param cursorFecha Fecha del último reporte de la página anterior, o null para la primera página
+     * @param cursorId ID del último reporte de la página anterior (ignorado si cursorFecha es null)
+     * @param limite Número máximo de reportes a obtener
+     * @return Lista de reportes de la página
+     * @throws SQLException Error en la consulta
+     */
+    public List<Reporte> findPageByUsuario(int idUsuario, LocalDateTime cursorFecha, int cursorId, int limite) throws SQLException {
+        String query = ReporteMapper.SELECT +
+                "WHERE idUsuario = ? " +
+                (cursorFecha != null ? "AND " + CONDICION_CURSOR : "") +
+                "ORDER BY fecha_reporte DESC, idReporte_Estado_Ruta DESC LIMIT ?";
+
+        try (Connection conn = DatabaseConfig.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+
+            int index = 1;
+            stmt.setInt(index++, idUsuario);
+            if (cursorFecha != null) {
+                index = setCursor(stmt, index, cursorFecha, cursorId);
+            }
+            stmt.setInt(index, limite);
+
+            return mapReportes(stmt);
         }
-        return reportes;
     }
 
     /**
      * Guarda un nuevo reporte en la base de datos
+     * Al terminar, el reporte tiene la fecha_reporte que le asignó la base de datos
      * @param reporte Reporte a guardar
      * @return ID del reporte creado
      * @throws SQLException Error en la inserción
@@ -142,72 +327,256 @@ public class ReporteRepository {
         String query = "INSERT INTO reporte_estado_ruta (idRuta, idTipo_Reporte, idUsuario, titulo, descripcion) " +
                 "VALUES (?, ?, ?, ?, ?)";
 
-        try (Connection conn = DatabaseConfig.getDataSource().getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            boolean transaccion = rollups;
+            conn.setAutoCommit(!transaccion);
+            try (PreparedStatement stmt = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
 
-            stmt.setInt(1, reporte.getIdRuta());
-            stmt.setInt(2, reporte.getIdTipoReporte());
-            stmt.setInt(3, reporte.getIdUsuario());
-            stmt.setString(4, reporte.getTitulo());
-            stmt.setString(5, reporte.getDescripcion());
+                stmt.setInt(1, reporte.getIdRuta());
+                stmt.setInt(2, reporte.getIdTipoReporte());
+                stmt.setInt(3, reporte.getIdUsuario());
+                stmt.setString(4, reporte.getTitulo());
+                stmt.setString(5, reporte.getDescripcion());
+
+                int affectedRows = stmt.executeUpdate();
+
+                if (affectedRows == 0) {
+                    throw new SQLException("Error al crear reporte, no se insertaron filas");
+                }
 
-            int affectedRows = stmt.executeUpdate();
+                // Obtener el ID generado
+                int id;
+                try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                    if (generatedKeys.next()) {
+                        id = generatedKeys.getInt(1);
+                    } else {
+                        throw new SQLException("Error al crear reporte, no se obtuvo el ID");
+                    }
+                }
 
-            if (affectedRows == 0) {
-                throw new SQLException("Error al crear reporte, no se insertaron filas");
+                leerFechas(conn, List.of(reporte), new int[]{id});
+                if (transaccion) {
+                    RollupRepository.ajustar(conn, List.of(id), 1);
+                    conn.commit();
+                }
+                registrarEscritura(id);
+                return id;
+            } catch (SQLException e) {
+                if (transaccion) {
+                    conn.rollback();
+                }
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
+        }
+    }
+
+    /**
+     * Guarda varios reportes en una sola transacción usando un lote JDBC
+     * Con rewriteBatchedStatements el driver envía un INSERT multi-fila en lugar de uno por reporte
+     * Al terminar, cada reporte tiene la fecha_reporte que le asignó la base de datos
+     * @param reportes Reportes a guardar
+     * @return IDs generados, en el mismo orden que los reportes recibidos
+     * @throws SQLException Error en la inserción (ningún reporte queda guardado)
+     */
+    public int[] saveAll(List<Reporte> reportes) throws SQLException {
+        String query = "INSERT INTO reporte_estado_ruta (idRuta, idTipo_Reporte, idUsuario, titulo, descripcion) " +
+                "VALUES (?, ?, ?, ?, ?)";
+        int[] ids = new int[reportes.size()];
+        if (reportes.isEmpty()) {
+            return ids;
+        }
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+                for (Reporte reporte : reportes) {
+                    stmt.setInt(1, reporte.getIdRuta());
+                    stmt.setInt(2, reporte.getIdTipoReporte());
+                    stmt.setInt(3, reporte.getIdUsuario());
+                    stmt.setString(4, reporte.getTitulo());
+                    stmt.setString(5, reporte.getDescripcion());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
 
-            // Obtener el ID generado
-            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    return generatedKeys.getInt(1);
-                } else {
-                    throw new SQLException("Error al crear reporte, no se obtuvo el ID");
+                // Obtener los IDs generados en el orden de inserción
+                try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                    int i = 0;
+                    while (generatedKeys.next() && i < ids.length) {
+                        ids[i++] = generatedKeys.getInt(1);
+                    }
+                    if (i != ids.length) {
+                        throw new SQLException("Error al crear reportes, no se obtuvieron todos los IDs");
+                    }
+                }
+                leerFechas(conn, reportes, ids);
+                if (rollups) {
+                    List<Integer> creados = new ArrayList<>(ids.length);
+                    for (int id : ids) {
+                        creados.add(id);
+                    }
+                    RollupRepository.ajustar(conn, creados, 1);
                 }
+                conn.commit();
+                registrarEscritura(ids);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
         }
+        return ids;
     }
 
     /**
-     * Actualiza un reporte existente
-     * @param reporte Reporte con los datos actualizados
-     * @return true si se actualizó correctamente, false si no se encontró el reporte
-     * @throws SQLException Error en la actualización
+     * Copia en los reportes recién insertados la fecha_reporte que les asignó la base de datos
+     * Se lee con la conexión del INSERT, así que no depende del reloj de la JVM ni de una réplica
+     * @param conn Conexión con la que se insertaron los reportes
+     * @param reportes Reportes insertados
+     * @param ids IDs generados, en el mismo orden que los reportes
+     * @throws SQLException Error en la consulta
      */
-    public boolean update(Reporte reporte) throws SQLException {
-        String query = "UPDATE reporte_estado_ruta SET idRuta = ?, idTipo_Reporte = ?, " +
-                "titulo = ?, descripcion = ? WHERE idReporte_Estado_Ruta = ?";
+    private static void leerFechas(Connection conn, List<Reporte> reportes, int[] ids) throws SQLException {
+        StringBuilder query = new StringBuilder(
+                "SELECT idReporte_Estado_Ruta, fecha_reporte FROM reporte_estado_ruta WHERE idReporte_Estado_Ruta IN (");
+        for (int i = 0; i < ids.length; i++) {
+            query.append(i == 0 ? "?" : ", ?");
+        }
+        query.append(")");
 
-        try (Connection conn = DatabaseConfig.getDataSource().getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query)) {
+        Map<Integer, LocalDateTime> fechas = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(query.toString())) {
+            for (int i = 0; i < ids.length; i++) {
+                stmt.setInt(i + 1, ids[i]);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    fechas.put(rs.getInt(1), rs.getObject(2, LocalDateTime.class));
+                }
+            }
+        }
+        for (int i = 0; i < ids.length; i++) {
+            reportes.get(i).setFechaReporte(fechas.get(ids[i]));
+        }
+    }
 
-            stmt.setInt(1, reporte.getIdRuta());
-            stmt.setInt(2, reporte.getIdTipoReporte());
-            stmt.setString(3, reporte.getTitulo());
-            stmt.setString(4, reporte.getDescripcion());
-            stmt.setInt(5, reporte.getIdReporte());
+    /**
+     * Actualiza un reporte existente solo si pertenece al usuario del reporte recibido
+     * En una transacción del primario se bloquea la fila (SELECT ... FOR UPDATE) para leer el
+     * reporte anterior, y la autoría se verifica en el mismo UPDATE (WHERE ... AND idUsuario = ?):
+     * si no afecta filas, el reporte existe pero es de otro usuario
+     * @param reporte Reporte con los datos actualizados y el ID de su autor
+     * @return Reporte anterior y si se aplicó la actualización
+     * @throws SQLException Error en la actualización
+     */
+    public Modificacion update(Reporte reporte) throws SQLException {
+        String query = "UPDATE reporte_estado_ruta SET idRuta = ?, idTipo_Reporte = ?, " +
+                "titulo = ?, descripcion = ? WHERE idReporte_Estado_Ruta = ? AND idUsuario = ?";
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                Reporte anterior = findForUpdate(conn, reporte.getIdReporte());
+                if (anterior == null) {
+                    conn.rollback();
+                    return Modificacion.NO_ENCONTRADO;
+                }
 
-            int affectedRows = stmt.executeUpdate();
-            return affectedRows > 0;
+                // Si cambian la ruta o el tipo, el reporte se mueve de fila en los resúmenes
+                boolean mover = rollups && RollupRepository.restarSiCambia(conn, reporte.getIdReporte(),
+                        reporte.getIdRuta(), reporte.getIdTipoReporte());
+
+                stmt.setInt(1, reporte.getIdRuta());
+                stmt.setInt(2, reporte.getIdTipoReporte());
+                stmt.setString(3, reporte.getTitulo());
+                stmt.setString(4, reporte.getDescripcion());
+                stmt.setInt(5, reporte.getIdReporte());
+                stmt.setInt(6, reporte.getIdUsuario());
+
+                if (stmt.executeUpdate() == 0) {
+                    // El reporte es de otro usuario: se descarta la resta de los resúmenes
+                    conn.rollback();
+                    return new Modificacion(anterior, false);
+                }
+                if (mover) {
+                    RollupRepository.ajustar(conn, List.of(reporte.getIdReporte()), 1);
+                }
+                conn.commit();
+                cache.invalidate(reporte.getIdReporte());
+                registrarEscritura(reporte.getIdReporte());
+                return new Modificacion(anterior, true);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         }
     }
 
     /**
-     * Elimina un reporte por su ID
+     * Elimina un reporte solo si pertenece al usuario indicado
+     * Igual que update: el reporte eliminado se lee bloqueando la fila en la misma transacción y
+     * la autoría se verifica en el DELETE
      * @param idReporte ID del reporte a eliminar
-     * @return true si se eliminó correctamente, false si no se encontró el reporte
+     * @param idUsuario ID del autor
+     * @return Reporte eliminado y si se aplicó la eliminación
      * @throws SQLException Error en la eliminación
      */
-    public boolean delete(int idReporte) throws SQLException {
-        String query = "DELETE FROM reporte_estado_ruta WHERE idReporte_Estado_Ruta = ?";
+    public Modificacion delete(int idReporte, int idUsuario) throws SQLException {
+        String query = "DELETE FROM reporte_estado_ruta WHERE idReporte_Estado_Ruta = ? AND idUsuario = ?";
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                Reporte anterior = findForUpdate(conn, idReporte);
+                if (anterior == null) {
+                    conn.rollback();
+                    return Modificacion.NO_ENCONTRADO;
+                }
 
-        try (Connection conn = DatabaseConfig.getDataSource().getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query)) {
+                // Se resta mientras la fila todavía existe para conocer su ruta, tipo y fecha
+                if (rollups) {
+                    RollupRepository.ajustar(conn, List.of(idReporte), -1);
+                }
 
-            stmt.setInt(1, idReporte);
+                stmt.setInt(1, idReporte);
+                stmt.setInt(2, idUsuario);
 
-            int affectedRows = stmt.executeUpdate();
-            return affectedRows > 0;
+                if (stmt.executeUpdate() == 0) {
+                    conn.rollback();
+                    return new Modificacion(anterior, false);
+                }
+                conn.commit();
+                cache.invalidate(idReporte);
+                registrarEscritura(idReporte);
+                return new Modificacion(anterior, true);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Lee un reporte bloqueando su fila hasta el final de la transacción de la conexión
+     * @param conn Conexión del primario con una transacción abierta
+     * @param idReporte ID del reporte
+     * @return Reporte encontrado o null si no existe
+     * @throws SQLException Error en la consulta
+     */
+    private static Reporte findForUpdate(Connection conn, int idReporte) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                ReporteMapper.SELECT + "WHERE idReporte_Estado_Ruta = ? FOR UPDATE")) {
+            stmt.setInt(1, idReporte);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? ReporteMapper.map(rs) : null;
+            }
         }
     }
 
@@ -219,7 +588,7 @@ public class ReporteRepository {
     public int count() throws SQLException {
         String query = "SELECT COUNT(*) FROM reporte_estado_ruta";
 
-        try (Connection conn = DatabaseConfig.getDataSource().getConnection();
+        try (Connection conn = DatabaseConfig.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(query);
              ResultSet rs = stmt.executeQuery()) {
 
@@ -229,4 +598,185 @@ public class ReporteRepository {
             return 0;
         }
     }
+
+    /**
+     * Obtiene las estadísticas de reportes en una sola consulta
+     * Usa agregación condicional para contar el total, cada tipo de reporte
+     * y los reportes recientes en un solo recorrido de la tabla
+     * @param desde Fecha a partir de la cual un reporte se considera reciente
+     * @return Estadísticas agregadas
+     * @throws SQLException Error en la consulta
+     */
+    public ReporteStats getStats(LocalDateTime desde) throws SQLException {
+        String query = "SELECT COUNT(*), " +
+                "COALESCE(SUM(idTipo_Reporte = 1), 0), " +
+                "COALESCE(SUM(idTipo_Reporte = 2), 0), " +
+                "COALESCE(SUM(idTipo_Reporte = 3), 0), " +
+                "COALESCE(SUM(fecha_reporte > ?), 0) " +
+                "FROM reporte_estado_ruta";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+
+            stmt.setTimestamp(1, Timestamp.valueOf(desde));
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return new ReporteStats(rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getInt(4), rs.getInt(5));
+                }
+                return new ReporteStats(0, 0, 0, 0, 0);
+            }
+        }
+    }
+
+    /**
+     * Cuenta los reportes a partir de una fecha agrupados por hora
+     * @param desde Fecha inicial (inclusive)
+     * @return Mapa de hora (truncada) a número de reportes
+     * @throws SQLException Error en la consulta
+     */
+    public Map<LocalDateTime, Integer> countByHora(LocalDateTime desde) throws SQLException {
+        Map<LocalDateTime, Integer> conteo = new HashMap<>();
+        String query = "SELECT TIMESTAMP(DATE_FORMAT(fecha_reporte, '%Y-%m-%d %H:00:00')) AS hora, COUNT(*) " +
+                "FROM reporte_estado_ruta WHERE fecha_reporte >= ? GROUP BY hora";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+
+            stmt.setTimestamp(1, Timestamp.valueOf(desde));
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    conteo.put(rs.getObject(1, LocalDateTime.class), rs.getInt(2));
+                }
+            }
+        }
+        return conteo;
+    }
+
+    /**
+     * Registra una escritura confirmada: sube la versión de la tabla y abre la ventana de
+     * lectura del primario para el hilo actual y para los reportes escritos
+     */
+    private void registrarEscritura(int... ids) {
+        version.incrementAndGet();
+        ultimaEscrituraMs = System.currentTimeMillis();
+        for (int id : ids) {
+            escritosRecientes.put(id, Boolean.TRUE);
+        }
+        DatabaseConfig.registrarEscritura();
+    }
+
+    /**
+     * Obtiene la versión actual de la tabla de reportes
+     * Debe leerse antes de consultar los datos: si una escritura ocurre en medio, la respuesta
+     * queda marcada con la versión anterior y el siguiente GET condicional la vuelve a descargar
+     * @return Número de escrituras confirmadas desde el arranque
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Indica si una réplica podría no tener todavía la última escritura de esta instancia
+     * Mientras sea true, una lectura de réplica puede devolver datos anteriores a getVersion()
+     * @return true si hay réplicas y la última escritura es más reciente que la ventana de lectura
+     *         de las propias escrituras
+     */
+    public boolean isReplicaPosiblementeAtrasada() {
+        return DatabaseConfig.tieneReplicas()
+                && System.currentTimeMillis() - ultimaEscrituraMs < DatabaseConfig.getVentanaEscrituraMs();
+    }
+
+    /**
+     * Obtiene las estadísticas de uso de la caché de findById
+     * @return Tamaño, hits, misses y evicciones de la caché
+     */
+    public CacheInfo getCacheInfo() {
+        CacheStats stats = cache.stats();
+        return new CacheInfo(cache.estimatedSize(), cacheMaxSize, stats.hitCount(), stats.missCount(),
+                stats.hitRate(), stats.evictionCount());
+    }
+
+    /**
+     * Crea una copia independiente de un reporte
+     */
+    private static Reporte copy(Reporte reporte) {
+        return new Reporte(reporte.getIdReporte(), reporte.getIdRuta(), reporte.getIdTipoReporte(),
+                reporte.getIdUsuario(), reporte.getTitulo(), reporte.getDescripcion(), reporte.getFechaReporte());
+    }
+
+    /**
+     * Asigna los parámetros de la condición de cursor
+     * @return Siguiente índice de parámetro disponible
+     */
+    private int setCursor(PreparedStatement stmt, int index, LocalDateTime cursorFecha, int cursorId) throws SQLException {
+        Timestamp fecha = Timestamp.valueOf(cursorFecha);
+        stmt.setTimestamp(index++, fecha);
+        stmt.setTimestamp(index++, fecha);
+        stmt.setInt(index++, cursorId);
+        return index;
+    }
+
+    /**
+     * Ejecuta la consulta y convierte cada fila en un reporte
+     */
+    private List<Reporte> mapReportes(PreparedStatement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery()) {
+            return ReporteMapper.mapAll(rs);
+        }
+    }
+
+    /**
+     * Transporta un SQLException fuera de la función de carga de la caché
+     */
+    private static class CacheLoadException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        CacheLoadException(SQLException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized SQLException getCause() {
+            return (SQLException) super.getCause();
+        }
+    }
+
+    /**
+     * Resultado de una actualización o eliminación condicionada a la autoría
+     */
+    public static class Modificacion {
+        static final Modificacion NO_ENCONTRADO = new Modificacion(null, false);
+
+        private final Reporte anterior;
+        private final boolean aplicada;
+
+        Modificacion(Reporte anterior, boolean aplicada) {
+            this.anterior = anterior;
+            this.aplicada = aplicada;
+        }
+
+        /**
+         * @return Reporte tal como estaba antes de la operación, o null si no existe
+         */
+        public Reporte getAnterior() {
+            return anterior;
+        }
+
+        /**
+         * @return true si se aplicó; false si el reporte no existe o es de otro usuario
+         */
+        public boolean isAplicada() {
+            return aplicada;
+        }
+    }
+
+    /**
+     * Procesa reportes uno a uno durante una consulta en streaming
+     */
+    @FunctionalInterface
+    public interface ReporteHandler {
+        void handle(Reporte reporte) throws IOException;
+    }
 }
\ No newline at end of file
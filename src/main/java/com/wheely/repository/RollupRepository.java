@@ -0,0 +1,255 @@
+package com.wheely.repository;
+
+import com.wheely.config.DatabaseConfig;
+import com.wheely.model.Rollup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Repositorio de la tabla reporte_rollup
+ * Guarda el número de reportes por ruta, tipo y periodo (hora 'H' o día 'D'). Las escrituras de
+ * ReporteRepository la ajustan en la misma transacción que modifica reporte_estado_ruta, y las
+ * gráficas la consultan en lugar de agrupar la tabla de reportes
+ */
+public class RollupRepository {
+    public static final String HORA = "H";
+    public static final String DIA = "D";
+
+    private static final String CREAR_TABLA = "CREATE TABLE IF NOT EXISTS reporte_rollup (" +
+            "granularidad CHAR(1) NOT NULL, " +
+            "periodo DATETIME NOT NULL, " +
+            "idRuta INT NOT NULL, " +
+            "idTipo_Reporte INT NOT NULL, " +
+            "total INT NOT NULL, " +
+            "PRIMARY KEY (granularidad, idRuta, periodo, idTipo_Reporte), " +
+            "KEY idx_rollup_periodo (granularidad, periodo))";
+
+    // Avance del cálculo inicial: último día recalculado y si ya se llegó al día en que terminó.
+    // Una sola fila (id = 1) para reanudar un cálculo interrumpido en el siguiente arranque
+    private static final String CREAR_TABLA_BACKFILL = "CREATE TABLE IF NOT EXISTS reporte_rollup_backfill (" +
+            "id TINYINT NOT NULL PRIMARY KEY, " +
+            "ultimo_dia DATE NULL, " +
+            "completo BOOLEAN NOT NULL DEFAULT FALSE)";
+
+    // Filas de hora y día de los reportes que cumplen {condicion}, multiplicadas por el ajuste.
+    // Los periodos se calculan desde fecha_reporte de cada fila, así que coinciden exactamente
+    // con la fecha que asignó MySQL al insertar
+    private static final String SELECT_PERIODOS =
+            "SELECT 'H' AS granularidad, DATE_FORMAT(fecha_reporte, '%Y-%m-%d %H:00:00') AS periodo, " +
+            "idRuta, idTipo_Reporte, COUNT(*) * ? AS cantidad FROM reporte_estado_ruta WHERE {condicion} " +
+            "GROUP BY 2, 3, 4 " +
+            "UNION ALL " +
+            "SELECT 'D', DATE(fecha_reporte), idRuta, idTipo_Reporte, COUNT(*) * ? FROM reporte_estado_ruta " +
+            "WHERE {condicion} GROUP BY 2, 3, 4";
+
+    private static final String AJUSTAR = "INSERT INTO reporte_rollup (granularidad, periodo, idRuta, idTipo_Reporte, total) " +
+            "SELECT * FROM (" + SELECT_PERIODOS + ") AS ajuste " +
+            "ON DUPLICATE KEY UPDATE reporte_rollup.total = reporte_rollup.total + VALUES(total)";
+
+    /**
+     * Crea las tablas de resúmenes y de avance del cálculo inicial si no existen
+     * @throws SQLException Error al crear las tablas
+     */
+    public void crearTabla() throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(CREAR_TABLA);
+            stmt.execute(CREAR_TABLA_BACKFILL);
+            stmt.execute("INSERT IGNORE INTO reporte_rollup_backfill (id, ultimo_dia, completo) VALUES (1, NULL, FALSE)");
+        }
+    }
+
+    /**
+     * @return true si el cálculo inicial de los resúmenes terminó alguna vez
+     * @throws SQLException Error en la consulta
+     */
+    public boolean isBackfillCompleto() throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT completo FROM reporte_rollup_backfill WHERE id = 1");
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    /**
+     * @return Último día recalculado por el cálculo inicial, o null si no ha calculado ninguno
+     * @throws SQLException Error en la consulta
+     */
+    public LocalDate findUltimoDiaCalculado() throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT ultimo_dia FROM reporte_rollup_backfill WHERE id = 1");
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getObject(1, LocalDate.class) : null;
+        }
+    }
+
+    /**
+     * Guarda el avance del cálculo inicial
+     * @param ultimoDia Último día recalculado, o null para empezar desde el primer reporte
+     * @param completo true si el cálculo llegó hasta el día actual
+     * @throws SQLException Error al guardar
+     */
+    public void guardarAvanceBackfill(LocalDate ultimoDia, boolean completo) throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "UPDATE reporte_rollup_backfill SET ultimo_dia = ?, completo = ? WHERE id = 1")) {
+            stmt.setObject(1, ultimoDia);
+            stmt.setBoolean(2, completo);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Suma (o resta) a los resúmenes los reportes indicados, usando la conexión de la transacción en curso
+     * Para restar debe llamarse antes de eliminar o modificar las filas de reporte_estado_ruta
+     * @param conn Conexión con la transacción de la escritura
+     * @param ids IDs de los reportes
+     * @param ajuste 1 para sumar, -1 para restar
+     * @throws SQLException Error al actualizar los resúmenes
+     */
+    static void ajustar(Connection conn, List<Integer> ids, int ajuste) throws SQLException {
+        if (ids.isEmpty()) {
+            return;
+        }
+        StringBuilder condicion = new StringBuilder("idReporte_Estado_Ruta IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            condicion.append(i == 0 ? "?" : ", ?");
+        }
+        condicion.append(")");
+
+        try (PreparedStatement stmt = conn.prepareStatement(AJUSTAR.replace("{condicion}", condicion))) {
+            int index = 1;
+            for (int repeticion = 0; repeticion < 2; repeticion++) {
+                stmt.setInt(index++, ajuste);
+                for (int id : ids) {
+                    stmt.setInt(index++, id);
+                }
+            }
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Resta de los resúmenes un reporte solo si su ruta o tipo van a cambiar
+     * @param conn Conexión con la transacción de la actualización
+     * @param idReporte ID del reporte
+     * @param idRutaNueva Ruta después de la actualización
+     * @param idTipoNuevo Tipo después de la actualización
+     * @return true si se restó (y por lo tanto hay que sumar el reporte después de actualizarlo)
+     * @throws SQLException Error al actualizar los resúmenes
+     */
+    static boolean restarSiCambia(Connection conn, int idReporte, int idRutaNueva, int idTipoNuevo) throws SQLException {
+        String condicion = "idReporte_Estado_Ruta = ? AND (idRuta <> ? OR idTipo_Reporte <> ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(AJUSTAR.replace("{condicion}", condicion))) {
+            int index = 1;
+            for (int repeticion = 0; repeticion < 2; repeticion++) {
+                stmt.setInt(index++, -1);
+                stmt.setInt(index++, idReporte);
+                stmt.setInt(index++, idRutaNueva);
+                stmt.setInt(index++, idTipoNuevo);
+            }
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Recalcula desde reporte_estado_ruta los resúmenes de un día completo
+     * Se ejecuta en una transacción: el DELETE bloquea el rango del día en reporte_rollup y el
+     * INSERT ... SELECT bloquea las filas leídas de reporte_estado_ruta, así que una escritura
+     * concurrente de ese día se aplica antes o después del recálculo, nunca en medio
+     * @param dia Día a recalcular
+     * @throws SQLException Error en la base de datos (el día queda como estaba)
+     */
+    public void recalcularDia(LocalDate dia) throws SQLException {
+        Timestamp inicio = Timestamp.valueOf(dia.atStartOfDay());
+        Timestamp fin = Timestamp.valueOf(dia.plusDays(1).atStartOfDay());
+        String insertar = "INSERT INTO reporte_rollup (granularidad, periodo, idRuta, idTipo_Reporte, total) " +
+                SELECT_PERIODOS.replace("{condicion}", "fecha_reporte >= ? AND fecha_reporte < ?");
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement borrar = conn.prepareStatement(
+                         "DELETE FROM reporte_rollup WHERE granularidad IN ('H', 'D') AND periodo >= ? AND periodo < ?");
+                 PreparedStatement stmt = conn.prepareStatement(insertar)) {
+
+                borrar.setTimestamp(1, inicio);
+                borrar.setTimestamp(2, fin);
+                borrar.executeUpdate();
+
+                int index = 1;
+                for (int repeticion = 0; repeticion < 2; repeticion++) {
+                    stmt.setInt(index++, 1);
+                    stmt.setTimestamp(index++, inicio);
+                    stmt.setTimestamp(index++, fin);
+                }
+                stmt.executeUpdate();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * @return Fecha del reporte más antiguo, o null si no hay reportes
+     * @throws SQLException Error en la consulta
+     */
+    public LocalDateTime findFechaMinima() throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT MIN(fecha_reporte) FROM reporte_estado_ruta");
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getObject(1, LocalDateTime.class) : null;
+        }
+    }
+
+    /**
+     * Obtiene los resúmenes de un rango de periodos
+     * @param idRuta ID de la ruta, o null para sumar todas las rutas
+     * @param granularidad HORA o DIA
+     * @param desde Inicio del rango (inclusive)
+     * @param hasta Fin del rango (exclusivo)
+     * @return Resúmenes ordenados por periodo y tipo de reporte
+     * @throws SQLException Error en la consulta
+     */
+    public List<Rollup> find(Integer idRuta, String granularidad, LocalDateTime desde, LocalDateTime hasta) throws SQLException {
+        String query = idRuta != null
+                ? "SELECT periodo, idTipo_Reporte, total FROM reporte_rollup " +
+                  "WHERE granularidad = ? AND idRuta = ? AND periodo >= ? AND periodo < ? AND total <> 0 " +
+                  "ORDER BY periodo, idTipo_Reporte"
+                : "SELECT periodo, idTipo_Reporte, SUM(total) FROM reporte_rollup " +
+                  "WHERE granularidad = ? AND periodo >= ? AND periodo < ? " +
+                  "GROUP BY periodo, idTipo_Reporte HAVING SUM(total) <> 0 ORDER BY periodo, idTipo_Reporte";
+
+        try (Connection conn = DatabaseConfig.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+
+            int index = 1;
+            stmt.setString(index++, granularidad);
+            if (idRuta != null) {
+                stmt.setInt(index++, idRuta);
+            }
+            stmt.setTimestamp(index++, Timestamp.valueOf(desde));
+            stmt.setTimestamp(index, Timestamp.valueOf(hasta));
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                List<Rollup> rollups = new ArrayList<>();
+                while (rs.next()) {
+                    rollups.add(new Rollup(idRuta, rs.getInt(2), rs.getObject(1, LocalDateTime.class), rs.getLong(3)));
+                }
+                return rollups;
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,68 @@
+package com.wheely.repository;
+
+import java.util.BitSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice en memoria de los IDs de usuario conocidos por esta instancia
+ * Guarda los IDs en un conjunto de bits (los IDs son enteros autoincrementales). Se carga al
+ * iniciar y lo mantiene UsuarioRepository en cada escritura y en cada usuario que encuentra
+ * en la base de datos
+ *
+ * Solo sirve para respuestas positivas: otras instancias o inserciones directas en MySQL
+ * crean usuarios que el índice no conoce, así que un ID ausente se confirma en la base de datos
+ */
+public class UsuarioIndex {
+    private final BitSet ids = new BitSet();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Registra un usuario existente
+     * @param idUser ID del usuario
+     */
+    public void agregar(int idUser) {
+        if (idUser < 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            ids.set(idUser);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Elimina un usuario del índice de IDs
+     * @param idUser ID del usuario eliminado
+     */
+    public void eliminar(int idUser) {
+        if (idUser < 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            ids.clear(idUser);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Verifica si el índice conoce un usuario con el ID indicado
+     * @param idUser ID del usuario
+     * @return true si el usuario existe; false si el índice no lo conoce (puede existir)
+     */
+    public boolean contieneId(int idUser) {
+        if (idUser < 0) {
+            return false;
+        }
+        lock.readLock().lock();
+        try {
+            return ids.get(idUser);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
\ No newline at end of file
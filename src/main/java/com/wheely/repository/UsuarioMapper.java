@@ -0,0 +1,55 @@
+package com.wheely.repository;
+
+import com.wheely.model.Usuario;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Conversión de filas de la tabla usuario a objetos Usuario
+ * Todas las consultas de usuarios seleccionan las columnas en el orden de COLUMNAS,
+ * así que cada valor se lee por su índice fijo
+ */
+public class UsuarioMapper {
+
+    // Lista de columnas compartida por todas las consultas; el orden define los índices de abajo
+    public static final String COLUMNAS = "idUser, nombre, email, password";
+
+    // SELECT base sin condiciones
+    public static final String SELECT = "SELECT " + COLUMNAS + " FROM usuario ";
+
+    private static final int ID_USER = 1;
+    private static final int NOMBRE = 2;
+    private static final int EMAIL = 3;
+    private static final int PASSWORD = 4;
+
+    /**
+     * Convierte la fila actual del ResultSet en un usuario
+     * @param rs ResultSet posicionado en una fila de una consulta que usa COLUMNAS
+     * @return Usuario con los datos de la fila
+     * @throws SQLException Error al leer la fila
+     */
+    public static Usuario map(ResultSet rs) throws SQLException {
+        return new Usuario(
+                rs.getInt(ID_USER),
+                rs.getString(NOMBRE),
+                rs.getString(EMAIL),
+                rs.getString(PASSWORD));
+    }
+
+    /**
+     * Convierte todas las filas restantes del ResultSet
+     * @param rs ResultSet de una consulta que usa COLUMNAS
+     * @return Lista de usuarios en el orden de la consulta
+     * @throws SQLException Error al leer las filas
+     */
+    public static List<Usuario> mapAll(ResultSet rs) throws SQLException {
+        List<Usuario> usuarios = new ArrayList<>();
+        while (rs.next()) {
+            usuarios.add(map(rs));
+        }
+        return usuarios;
+    }
+}
\ No newline at end of file
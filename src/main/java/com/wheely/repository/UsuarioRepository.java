@@ -7,15 +7,110 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
 import java.sql.Statement;
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Repositorio para operaciones CRUD de la tabla usuario
  * Maneja todas las interacciones con la base de datos para usuarios
  */
 public class UsuarioRepository {
+    // Código de error de MySQL para una clave única duplicada
+    private static final int ER_DUP_ENTRY = 1062;
+
+    private final UsuarioIndex index;
+
+    // Versión de la tabla para los ETags; se incrementa después de cada escritura confirmada
+    private final AtomicLong version = new AtomicLong();
+    // Momento (epoch en milisegundos) de la última escritura confirmada por esta instancia
+    private volatile long ultimaEscrituraMs;
+
+    public UsuarioRepository() {
+        this(new UsuarioIndex());
+    }
+
+    /**
+     * @param index Índice de existencia que este repositorio mantiene actualizado
+     */
+    public UsuarioRepository(UsuarioIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Carga el índice de existencia con todos los usuarios de la base de datos
+     * Solo lee la columna idUser, sin los hashes de contraseña
+     * @throws SQLException Error en la consulta
+     */
+    public void cargarIndice() throws SQLException {
+        String query = "SELECT idUser FROM usuario";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            stmt.setFetchSize(DatabaseConfig.FETCH_STREAMING);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    index.agregar(rs.getInt(1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Obtiene la versión actual de la tabla de usuarios
+     * Debe leerse antes de consultar los datos para que un ETag nunca describa datos más nuevos
+     * @return Número de escrituras confirmadas desde el arranque
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Indica si una réplica podría no tener todavía la última escritura de esta instancia
+     * @return true si hay réplicas y la última escritura es más reciente que la ventana de lectura
+     *         de las propias escrituras
+     */
+    public boolean isReplicaPosiblementeAtrasada() {
+        return DatabaseConfig.tieneReplicas()
+                && System.currentTimeMillis() - ultimaEscrituraMs < DatabaseConfig.getVentanaEscrituraMs();
+    }
+
+    /**
+     * Verifica si existe un usuario con el ID indicado
+     * Un ID del índice en memoria se responde sin consultar; uno que el índice no conoce (por
+     * ejemplo, creado por otra instancia) se busca en la base de datos y se agrega si existe
+     * @param idUser ID del usuario
+     * @return true si el usuario existe
+     * @throws SQLException Error en la consulta
+     */
+    public boolean existsById(int idUser) throws SQLException {
+        if (index.contieneId(idUser)) {
+            return true;
+        }
+
+        String query = "SELECT 1 FROM usuario WHERE idUser = ?";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+
+            stmt.setInt(1, idUser);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return false;
+                }
+            }
+        }
+        index.agregar(idUser);
+        return true;
+    }
 
     /**
      * Obtiene todos los usuarios de la base de datos
@@ -23,23 +118,14 @@ public class UsuarioRepository {
      * @throws SQLException Error en la consulta
      */
     public List<Usuario> findAll() throws SQLException {
-        List<Usuario> usuarios = new ArrayList<>();
-        String query = "SELECT idUser, nombre, email, password FROM usuario";
+        String query = UsuarioMapper.SELECT;
 
-        try (Connection conn = DatabaseConfig.getDataSource().getConnection();
+        try (Connection conn = DatabaseConfig.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(query);
              ResultSet rs = stmt.executeQuery()) {
 
-            while (rs.next()) {
-                Usuario usuario = new Usuario();
-                usuario.setIdUser(rs.getInt("idUser"));
-                usuario.setNombre(rs.getString("nombre"));
-                usuario.setEmail(rs.getString("email"));
-                usuario.setPassword(rs.getString("password"));
-                usuarios.add(usuario);
-            }
+            return UsuarioMapper.mapAll(rs);
         }
-        return usuarios;
     }
 
     /**
@@ -49,25 +135,64 @@ public class UsuarioRepository {
      * @throws SQLException Error en la consulta
      */
     public Usuario findById(int idUser) throws SQLException {
-        Usuario usuario = null;
-        String query = "SELECT idUser, nombre, email, password FROM usuario WHERE idUser = ?";
+        String query = UsuarioMapper.SELECT + "WHERE idUser = ?";
 
-        try (Connection conn = DatabaseConfig.getDataSource().getConnection();
+        try (Connection conn = DatabaseConfig.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(query)) {
 
             stmt.setInt(1, idUser);
 
             try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    usuario = new Usuario();
-                    usuario.setIdUser(rs.getInt("idUser"));
-                    usuario.setNombre(rs.getString("nombre"));
-                    usuario.setEmail(rs.getString("email"));
-                    usuario.setPassword(rs.getString("password"));
+                return rs.next() ? UsuarioMapper.map(rs) : null;
+            }
+        }
+    }
+
+    /**
+     * Obtiene cuáles de los IDs indicados corresponden a usuarios existentes
+     * Los IDs del índice en memoria se aceptan sin consultar; el resto se verifica en una sola
+     * consulta y los encontrados se agregan al índice
+     * @param ids IDs de usuario a verificar
+     * @return Conjunto de IDs que existen
+     * @throws SQLException Error en la consulta
+     */
+    public Set<Integer> findExistingIds(Collection<Integer> ids) throws SQLException {
+        Set<Integer> existentes = new HashSet<>();
+        Set<Integer> desconocidos = new HashSet<>();
+        for (int id : ids) {
+            if (index.contieneId(id)) {
+                existentes.add(id);
+            } else {
+                desconocidos.add(id);
+            }
+        }
+        if (desconocidos.isEmpty()) {
+            return existentes;
+        }
+
+        StringBuilder query = new StringBuilder("SELECT idUser FROM usuario WHERE idUser IN (");
+        for (int i = 0; i < desconocidos.size(); i++) {
+            query.append(i == 0 ? "?" : ", ?");
+        }
+        query.append(")");
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query.toString())) {
+
+            int parametro = 1;
+            for (int id : desconocidos) {
+                stmt.setInt(parametro++, id);
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int id = rs.getInt(1);
+                    index.agregar(id);
+                    existentes.add(id);
                 }
             }
         }
-        return usuario;
+        return existentes;
     }
 
     /**
@@ -77,53 +202,63 @@ public class UsuarioRepository {
      * @throws SQLException Error en la consulta
      */
     public Usuario findByEmail(String email) throws SQLException {
-        Usuario usuario = null;
-        String query = "SELECT idUser, nombre, email, password FROM usuario WHERE email = ?";
+        String query = UsuarioMapper.SELECT + "WHERE email = ?";
 
-        try (Connection conn = DatabaseConfig.getDataSource().getConnection();
+        try (Connection conn = DatabaseConfig.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(query)) {
 
             stmt.setString(1, email);
 
             try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    usuario = new Usuario();
-                    usuario.setIdUser(rs.getInt("idUser"));
-                    usuario.setNombre(rs.getString("nombre"));
-                    usuario.setEmail(rs.getString("email"));
-                    usuario.setPassword(rs.getString("password"));
-                }
+                return rs.next() ? UsuarioMapper.map(rs) : null;
             }
         }
-        return usuario;
     }
 
     /**
-     * Guarda un nuevo usuario en la base de datos
+     * Guarda un nuevo usuario si su email no está registrado
+     * La verificación del email va en el mismo INSERT (INSERT ... SELECT ... WHERE NOT EXISTS);
+     * con un índice único en usuario.email la base de datos además lo garantiza ante inserciones
+     * simultáneas, y ese error de clave duplicada se trata igual
      * @param usuario Usuario a guardar
-     * @return ID del usuario creado
+     * @return ID del usuario creado, o 0 si el email ya está registrado
      * @throws SQLException Error en la inserción
      */
     public int save(Usuario usuario) throws SQLException {
-        String query = "INSERT INTO usuario (nombre, email, password) VALUES (?, ?, ?)";
+        String query = "INSERT INTO usuario (nombre, email, password) SELECT ?, ?, ? FROM DUAL " +
+                "WHERE NOT EXISTS (SELECT 1 FROM usuario WHERE email = ?)";
 
-        try (Connection conn = DatabaseConfig.getDataSource().getConnection();
+        try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
 
             stmt.setString(1, usuario.getNombre());
             stmt.setString(2, usuario.getEmail());
             stmt.setString(3, usuario.getPassword());
-
-            int affectedRows = stmt.executeUpdate();
+            stmt.setString(4, usuario.getEmail());
+
+            int affectedRows;
+            try {
+                affectedRows = stmt.executeUpdate();
+            } catch (SQLIntegrityConstraintViolationException e) {
+                if (e.getErrorCode() == ER_DUP_ENTRY) {
+                    return 0;
+                }
+                throw e;
+            }
 
             if (affectedRows == 0) {
-                throw new SQLException("Error al crear usuario, no se insertaron filas");
+                return 0;
             }
 
             // Obtener el ID generado
             try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
                 if (generatedKeys.next()) {
-                    return generatedKeys.getInt(1);
+                    int idUser = generatedKeys.getInt(1);
+                    index.agregar(idUser);
+                    version.incrementAndGet();
+                    ultimaEscrituraMs = System.currentTimeMillis();
+                    DatabaseConfig.registrarEscritura();
+                    return idUser;
                 } else {
                     throw new SQLException("Error al crear usuario, no se obtuvo el ID");
                 }
@@ -132,23 +267,41 @@ public class UsuarioRepository {
     }
 
     /**
-     * Actualiza un usuario existente
-     * @param usuario Usuario con los datos actualizados
-     * @return true si se actualizó correctamente, false si no se encontró el usuario
+     * Actualiza un usuario existente si su nuevo email no pertenece a otro usuario
+     * El email se verifica en el mismo UPDATE con un LEFT JOIN a la propia tabla (MySQL no
+     * permite una subconsulta sobre la tabla que se actualiza)
+     * @param usuario Usuario con los datos actualizados; con password null se conserva la actual
+     * @return true si se actualizó, false si el usuario no existe o el email es de otro usuario
      * @throws SQLException Error en la actualización
      */
     public boolean update(Usuario usuario) throws SQLException {
-        String query = "UPDATE usuario SET nombre = ?, email = ?, password = ? WHERE idUser = ?";
+        String query = "UPDATE usuario u LEFT JOIN usuario otro ON otro.email = ? AND otro.idUser <> u.idUser " +
+                "SET u.nombre = ?, u.email = ?, u.password = COALESCE(?, u.password) " +
+                "WHERE u.idUser = ? AND otro.idUser IS NULL";
 
-        try (Connection conn = DatabaseConfig.getDataSource().getConnection();
+        try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(query)) {
 
-            stmt.setString(1, usuario.getNombre());
-            stmt.setString(2, usuario.getEmail());
-            stmt.setString(3, usuario.getPassword());
-            stmt.setInt(4, usuario.getIdUser());
-
-            int affectedRows = stmt.executeUpdate();
+            stmt.setString(1, usuario.getEmail());
+            stmt.setString(2, usuario.getNombre());
+            stmt.setString(3, usuario.getEmail());
+            stmt.setString(4, usuario.getPassword());
+            stmt.setInt(5, usuario.getIdUser());
+
+            int affectedRows;
+            try {
+                affectedRows = stmt.executeUpdate();
+            } catch (SQLIntegrityConstraintViolationException e) {
+                if (e.getErrorCode() == ER_DUP_ENTRY) {
+                    return false;
+                }
+                throw e;
+            }
+            if (affectedRows > 0) {
+                version.incrementAndGet();
+                ultimaEscrituraMs = System.currentTimeMillis();
+                DatabaseConfig.registrarEscritura();
+            }
             return affectedRows > 0;
         }
     }
@@ -162,12 +315,18 @@ public class UsuarioRepository {
     public boolean delete(int idUser) throws SQLException {
         String query = "DELETE FROM usuario WHERE idUser = ?";
 
-        try (Connection conn = DatabaseConfig.getDataSource().getConnection();
+        try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(query)) {
 
             stmt.setInt(1, idUser);
 
             int affectedRows = stmt.executeUpdate();
+            if (affectedRows > 0) {
+                index.eliminar(idUser);
+                version.incrementAndGet();
+                ultimaEscrituraMs = System.currentTimeMillis();
+                DatabaseConfig.registrarEscritura();
+            }
             return affectedRows > 0;
         }
     }
@@ -181,7 +340,7 @@ public class UsuarioRepository {
     public boolean emailExists(String email) throws SQLException {
         String query = "SELECT 1 FROM usuario WHERE email = ?";
 
-        try (Connection conn = DatabaseConfig.getDataSource().getConnection();
+        try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(query)) {
 
             stmt.setString(1, email);
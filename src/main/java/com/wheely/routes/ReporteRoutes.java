@@ -19,6 +19,19 @@ public class ReporteRoutes {
      * @param app Instancia de Javalin
      */
     public void register(Javalin app) {
+        // Rutas adicionales de reportes
+        // Se registran antes de /reportes/{id} porque Javalin usa la primera ruta que coincide
+        app.get("/reportes/usuario/{usuarioId}", reporteController::getByUsuario);
+        app.get("/reportes/search", reporteController::search);
+        app.get("/reportes/recientes", reporteController::getRecientes);
+        app.get("/reportes/stream", reporteController::stream);
+        app.get("/reportes/trending", reporteController::getTrending);
+        app.get("/reportes/rollups", reporteController::getRollups);
+        app.get("/reportes/stats", reporteController::getStats);
+        app.get("/reportes/tipos", reporteController::getTiposReporte);
+        app.get("/reportes/cache/stats", reporteController::getCacheStats);
+        app.post("/reportes/batch", reporteController::createBatch);
+
         // Rutas CRUD básicas de reportes
         app.get("/reportes", reporteController::getAll);
         app.get("/reportes/{id}", reporteController::getById);
@@ -26,9 +39,7 @@ public class ReporteRoutes {
         app.put("/reportes/{id}", reporteController::update);
         app.delete("/reportes/{id}", reporteController::delete);
 
-        // Rutas adicionales de reportes
-        app.get("/reportes/usuario/{usuarioId}", reporteController::getByUsuario);
-        app.get("/reportes/stats", reporteController::getStats);
-        app.get("/reportes/tipos", reporteController::getTiposReporte);
+        // Reportes recientes por ruta (servidos desde memoria)
+        app.get("/rutas/{idRuta}/reportes", reporteController::getByRuta);
     }
 }
\ No newline at end of file
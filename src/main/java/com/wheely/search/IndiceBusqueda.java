@@ -0,0 +1,395 @@
+package com.wheely.search;
+
+import com.wheely.model.Reporte;
+import com.wheely.repository.ReporteRepository;
+import com.wheely.service.ReporteListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice invertido en memoria sobre el título y la descripción de los reportes
+ * Cada término guarda la lista de documentos que lo contienen y su frecuencia; las
+ * consultas se ordenan con BM25. Se construye al iniciar recorriendo la tabla en streaming
+ * y se mantiene al día como ReporteListener.
+ *
+ * Cada versión indexada de un reporte recibe un número de documento interno nuevo; al
+ * actualizar o eliminar, el documento anterior solo se marca como eliminado y sus entradas
+ * se descartan en la siguiente compactación
+ */
+public class IndiceBusqueda implements ReporteListener {
+    // Parámetros estándar de BM25
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // Las palabras del título cuentan doble frente a las de la descripción
+    private static final int PESO_TITULO = 2;
+
+    // De menor a mayor relevancia: puntaje y, a igual puntaje, ID (los más recientes son más relevantes)
+    private static final Comparator<Coincidencia> ORDEN_RELEVANCIA =
+            Comparator.comparingDouble(Coincidencia::getPuntaje).thenComparingInt(Coincidencia::getIdReporte);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Postings> terminos = new HashMap<>();
+    private final BitSet eliminados = new BitSet();
+    // Documentos marcados en 'eliminados' desde la última compactación
+    private int numEliminados = 0;
+
+    // Número de documento interno + 1 indexado por ID de reporte (0 = no indexado)
+    private int[] documentoPorReporte = new int[1024];
+    private int[] reportePorDocumento = new int[1024];
+    private int[] longitudDocumento = new int[1024];
+    private int siguienteDocumento = 0;
+    private int documentosActivos = 0;
+    private long longitudTotal = 0;
+
+    // Reportes modificados por escrituras mientras se cargaba el índice: la versión leída
+    // por la carga puede ser más antigua, así que se ignora
+    private final Set<Integer> modificadosDuranteCarga = new HashSet<>();
+    private volatile boolean cargado = false;
+
+    /**
+     * Construye el índice en un hilo de fondo recorriendo todos los reportes
+     * Mientras tanto las escrituras se siguen aplicando y las búsquedas responden que
+     * el índice no está listo
+     * @param reporteRepository Repositorio del que se leen los reportes
+     */
+    public void iniciarCarga(ReporteRepository reporteRepository) {
+        Thread carga = new Thread(() -> {
+            long inicio = System.currentTimeMillis();
+            try {
+                reporteRepository.streamAll(this::agregarDesdeCarga);
+                lock.writeLock().lock();
+                try {
+                    modificadosDuranteCarga.clear();
+                    cargado = true;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                System.out.println("Índice de búsqueda cargado: " + documentosActivos + " reportes en " +
+                        (System.currentTimeMillis() - inicio) + " ms");
+            } catch (Exception e) {
+                System.err.println("No se pudo construir el índice de búsqueda: " + e.getMessage());
+            }
+        }, "indice-busqueda-carga");
+        carga.setDaemon(true);
+        carga.start();
+    }
+
+    /**
+     * @return true si el índice ya contiene todos los reportes
+     */
+    public boolean isCargado() {
+        return cargado;
+    }
+
+    @Override
+    public void onCreado(Reporte reporte) {
+        indexar(reporte, true);
+    }
+
+    @Override
+    public void onActualizado(Reporte anterior, Reporte actual) {
+        indexar(actual, true);
+    }
+
+    @Override
+    public void onEliminado(Reporte reporte) {
+        lock.writeLock().lock();
+        try {
+            if (!cargado) {
+                modificadosDuranteCarga.add(reporte.getIdReporte());
+            }
+            quitar(reporte.getIdReporte());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Busca los reportes más relevantes para una consulta
+     * El trabajo es proporcional a las entradas de los términos consultados, no al tamaño del
+     * índice: los puntajes se acumulan solo para los documentos que aparecen en esas listas
+     * @param consulta Texto libre
+     * @param limite Número máximo de resultados
+     * @return Coincidencias ordenadas de mayor a menor puntaje; a igual puntaje, el reporte más reciente primero
+     */
+    public List<Coincidencia> buscar(String consulta, int limite) {
+        Set<String> consultaTerminos = new LinkedHashSet<>(Tokenizador.tokenizar(consulta));
+        List<Coincidencia> resultado = new ArrayList<>();
+        if (consultaTerminos.isEmpty()) {
+            return resultado;
+        }
+
+        lock.readLock().lock();
+        try {
+            if (documentosActivos == 0) {
+                return resultado;
+            }
+            double promedioLongitud = (double) longitudTotal / documentosActivos;
+            List<Postings> listas = new ArrayList<>(consultaTerminos.size());
+            int entradas = 0;
+            for (String termino : consultaTerminos) {
+                Postings postings = terminos.get(termino);
+                if (postings != null) {
+                    listas.add(postings);
+                    entradas += postings.size;
+                }
+            }
+            if (entradas == 0) {
+                return resultado;
+            }
+            Puntajes puntajes = new Puntajes(entradas);
+
+            for (Postings postings : listas) {
+                // La lista puede conservar entradas eliminadas hasta la siguiente compactación
+                int frecuenciaDocumentos = Math.min(postings.size, documentosActivos);
+                double idf = Math.log(1 + (documentosActivos - frecuenciaDocumentos + 0.5) / (frecuenciaDocumentos + 0.5));
+                for (int i = 0; i < postings.size; i++) {
+                    int doc = postings.documentos[i];
+                    if (eliminados.get(doc)) {
+                        continue;
+                    }
+                    int tf = postings.frecuencias[i];
+                    double normalizacion = K1 * (1 - B + B * longitudDocumento[doc] / promedioLongitud);
+                    puntajes.sumar(doc, (float) (idf * tf * (K1 + 1) / (tf + normalizacion)));
+                }
+            }
+
+            // Se conservan solo los mejores resultados con un montículo de tamaño 'limite'; el
+            // peor queda en la cabeza. A igual puntaje se desempata por ID para que el orden no
+            // dependa de la numeración interna (que cambia al compactar)
+            PriorityQueue<Coincidencia> mejores = new PriorityQueue<>(limite + 1, ORDEN_RELEVANCIA);
+            for (int i = 0; i < puntajes.capacidad(); i++) {
+                int doc = puntajes.documento(i);
+                if (doc < 0) {
+                    continue;
+                }
+                Coincidencia coincidencia = new Coincidencia(reportePorDocumento[doc], puntajes.valor(i));
+                if (mejores.size() < limite) {
+                    mejores.add(coincidencia);
+                } else if (ORDEN_RELEVANCIA.compare(coincidencia, mejores.peek()) > 0) {
+                    mejores.poll();
+                    mejores.add(coincidencia);
+                }
+            }
+            while (!mejores.isEmpty()) {
+                resultado.add(mejores.poll());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Collections.reverse(resultado);
+        return resultado;
+    }
+
+    private void agregarDesdeCarga(Reporte reporte) {
+        indexar(reporte, false);
+    }
+
+    /**
+     * Indexa (o reindexa) un reporte
+     * @param desdeEscritura true si viene de una escritura, false si viene de la carga inicial
+     */
+    private void indexar(Reporte reporte, boolean desdeEscritura) {
+        Map<String, Integer> frecuencias = new HashMap<>();
+        int longitud = contar(frecuencias, reporte.getTitulo(), PESO_TITULO)
+                + contar(frecuencias, reporte.getDescripcion(), 1);
+
+        lock.writeLock().lock();
+        try {
+            int idReporte = reporte.getIdReporte();
+            if (!cargado) {
+                if (desdeEscritura) {
+                    modificadosDuranteCarga.add(idReporte);
+                } else if (modificadosDuranteCarga.contains(idReporte)) {
+                    return;
+                }
+            }
+
+            quitar(idReporte);
+            int doc = nuevoDocumento(idReporte, longitud);
+            for (Map.Entry<String, Integer> entry : frecuencias.entrySet()) {
+                terminos.computeIfAbsent(entry.getKey(), k -> new Postings()).agregar(doc, entry.getValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static int contar(Map<String, Integer> frecuencias, String texto, int peso) {
+        List<String> tokens = Tokenizador.tokenizar(texto);
+        for (String token : tokens) {
+            frecuencias.merge(token, peso, Integer::sum);
+        }
+        return tokens.size() * peso;
+    }
+
+    /**
+     * Marca como eliminado el documento actual de un reporte (requiere el bloqueo de escritura)
+     */
+    private void quitar(int idReporte) {
+        if (idReporte < 0 || idReporte >= documentoPorReporte.length || documentoPorReporte[idReporte] == 0) {
+            return;
+        }
+        int doc = documentoPorReporte[idReporte] - 1;
+        documentoPorReporte[idReporte] = 0;
+        eliminados.set(doc);
+        numEliminados++;
+        documentosActivos--;
+        longitudTotal -= longitudDocumento[doc];
+
+        // Cuando la mitad de los documentos están eliminados se reconstruyen las listas
+        if (numEliminados > Math.max(1024, documentosActivos)) {
+            compactar();
+        }
+    }
+
+    private int nuevoDocumento(int idReporte, int longitud) {
+        if (idReporte >= documentoPorReporte.length) {
+            documentoPorReporte = Arrays.copyOf(documentoPorReporte, Math.max(idReporte + 1, documentoPorReporte.length * 2));
+        }
+        if (siguienteDocumento == reportePorDocumento.length) {
+            reportePorDocumento = Arrays.copyOf(reportePorDocumento, siguienteDocumento * 2);
+            longitudDocumento = Arrays.copyOf(longitudDocumento, siguienteDocumento * 2);
+        }
+        int doc = siguienteDocumento++;
+        reportePorDocumento[doc] = idReporte;
+        longitudDocumento[doc] = longitud;
+        documentoPorReporte[idReporte] = doc + 1;
+        documentosActivos++;
+        longitudTotal += longitud;
+        return doc;
+    }
+
+    /**
+     * Renumera los documentos vivos y descarta las entradas de los eliminados
+     */
+    private void compactar() {
+        int[] nuevoNumero = new int[siguienteDocumento];
+        int vivos = 0;
+        for (int doc = 0; doc < siguienteDocumento; doc++) {
+            if (eliminados.get(doc)) {
+                nuevoNumero[doc] = -1;
+            } else {
+                nuevoNumero[doc] = vivos;
+                reportePorDocumento[vivos] = reportePorDocumento[doc];
+                longitudDocumento[vivos] = longitudDocumento[doc];
+                documentoPorReporte[reportePorDocumento[vivos]] = vivos + 1;
+                vivos++;
+            }
+        }
+        terminos.values().removeIf(postings -> postings.renumerar(nuevoNumero) == 0);
+        siguienteDocumento = vivos;
+        eliminados.clear();
+        numEliminados = 0;
+    }
+
+    /**
+     * Resultado de una búsqueda: ID del reporte y su puntaje BM25
+     */
+    public static class Coincidencia {
+        private final int idReporte;
+        private final double puntaje;
+
+        public Coincidencia(int idReporte, double puntaje) {
+            this.idReporte = idReporte;
+            this.puntaje = puntaje;
+        }
+
+        public int getIdReporte() { return idReporte; }
+        public double getPuntaje() { return puntaje; }
+    }
+
+    /**
+     * Puntajes acumulados de una búsqueda: tabla hash de direccionamiento abierto con claves
+     * int y valores float, dimensionada por el número de entradas recorridas para no depender
+     * del número total de documentos ni crear objetos por documento
+     */
+    private static class Puntajes {
+        // Documento + 1 en cada posición (0 = libre)
+        private final int[] claves;
+        private final float[] valores;
+        private final int mascara;
+
+        Puntajes(int maxDocumentos) {
+            int capacidad = Integer.highestOneBit(Math.max(2, maxDocumentos) * 2 - 1) << 1;
+            this.claves = new int[capacidad];
+            this.valores = new float[capacidad];
+            this.mascara = capacidad - 1;
+        }
+
+        void sumar(int doc, float puntaje) {
+            int clave = doc + 1;
+            int i = clave * 0x9E3779B9 & mascara;
+            while (claves[i] != 0 && claves[i] != clave) {
+                i = (i + 1) & mascara;
+            }
+            claves[i] = clave;
+            valores[i] += puntaje;
+        }
+
+        int capacidad() {
+            return claves.length;
+        }
+
+        /**
+         * @return Documento guardado en la posición, o -1 si está libre
+         */
+        int documento(int posicion) {
+            return claves[posicion] - 1;
+        }
+
+        float valor(int posicion) {
+            return valores[posicion];
+        }
+    }
+
+    /**
+     * Lista de documentos de un término con su frecuencia, en orden creciente de documento
+     */
+    private static class Postings {
+        private int[] documentos = new int[4];
+        private int[] frecuencias = new int[4];
+        private int size = 0;
+
+        void agregar(int documento, int frecuencia) {
+            if (size == documentos.length) {
+                documentos = Arrays.copyOf(documentos, size * 2);
+                frecuencias = Arrays.copyOf(frecuencias, size * 2);
+            }
+            documentos[size] = documento;
+            frecuencias[size] = frecuencia;
+            size++;
+        }
+
+        /**
+         * @return Número de entradas que quedan después de renumerar
+         */
+        int renumerar(int[] nuevoNumero) {
+            int j = 0;
+            for (int i = 0; i < size; i++) {
+                int nuevo = nuevoNumero[documentos[i]];
+                if (nuevo >= 0) {
+                    documentos[j] = nuevo;
+                    frecuencias[j] = frecuencias[i];
+                    j++;
+                }
+            }
+            size = j;
+            return size;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,85 @@
+package com.wheely.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Tokenizador para texto en español
+ * Convierte a minúsculas, elimina acentos (inundación -> inundacion), descarta palabras
+ * vacías y aplica una reducción ligera de plural y género (desviadas -> desviad), de modo
+ * que la consulta y los documentos se comparan por la misma raíz
+ */
+public class Tokenizador {
+    private static final int LONGITUD_MINIMA = 2;
+
+    private static final Set<String> PALABRAS_VACIAS = Set.of(
+            "a", "al", "ante", "con", "de", "del", "desde", "el", "en", "entre", "es", "esta", "este",
+            "ha", "hay", "la", "las", "le", "lo", "los", "mas", "me", "mi", "muy", "ni", "no", "o",
+            "para", "pero", "por", "que", "se", "si", "sin", "sobre", "su", "sus", "un", "una", "uno",
+            "unos", "unas", "y", "ya", "yo");
+
+    /**
+     * Divide un texto en términos normalizados
+     * @param texto Texto a procesar (puede ser null)
+     * @return Términos en el orden en que aparecen (con repeticiones)
+     */
+    public static List<String> tokenizar(String texto) {
+        List<String> terminos = new ArrayList<>();
+        if (texto == null || texto.isEmpty()) {
+            return terminos;
+        }
+
+        String normalizado = quitarAcentos(texto).toLowerCase(Locale.ROOT);
+        int inicio = -1;
+        for (int i = 0; i <= normalizado.length(); i++) {
+            boolean letra = i < normalizado.length() && Character.isLetterOrDigit(normalizado.charAt(i));
+            if (letra && inicio < 0) {
+                inicio = i;
+            } else if (!letra && inicio >= 0) {
+                agregar(terminos, normalizado.substring(inicio, i));
+                inicio = -1;
+            }
+        }
+        return terminos;
+    }
+
+    private static void agregar(List<String> terminos, String palabra) {
+        if (palabra.length() < LONGITUD_MINIMA || PALABRAS_VACIAS.contains(palabra)) {
+            return;
+        }
+        terminos.add(raiz(palabra));
+    }
+
+    /**
+     * Reducción ligera: quita la "s" final del plural y la vocal final de género
+     * Solo se aplica a palabras largas para no confundir términos cortos
+     */
+    private static String raiz(String palabra) {
+        String raiz = palabra;
+        if (raiz.length() > 4 && raiz.endsWith("s")) {
+            raiz = raiz.substring(0, raiz.length() - 1);
+        }
+        if (raiz.length() > 4) {
+            char ultima = raiz.charAt(raiz.length() - 1);
+            if (ultima == 'a' || ultima == 'o' || ultima == 'e') {
+                raiz = raiz.substring(0, raiz.length() - 1);
+            }
+        }
+        return raiz;
+    }
+
+    private static String quitarAcentos(String texto) {
+        String descompuesto = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        StringBuilder limpio = new StringBuilder(descompuesto.length());
+        for (int i = 0; i < descompuesto.length(); i++) {
+            char c = descompuesto.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                limpio.append(c);
+            }
+        }
+        return limpio.toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,241 @@
+package com.wheely.service;
+
+import com.wheely.model.Reporte;
+import com.wheely.repository.ReporteRepository;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Líneas de tiempo en memoria con los reportes más recientes
+ * Hay un búfer circular por ruta y uno global, cada uno con capacidad fija; al llegar un
+ * reporte nuevo se descarta el más antiguo. Se cargan al iniciar y después se mantienen
+ * al día como ReporteListener, de modo que las lecturas nunca consultan la base de datos
+ *
+ * Al eliminar un reporte su búfer queda con un elemento menos hasta que llegue otro;
+ * por eso cada búfer guarda más reportes de los que se devuelven por defecto
+ */
+public class LineasDeTiempo implements ReporteListener {
+    // Orden de las líneas de tiempo: más reciente primero y, a igual fecha, mayor ID primero
+    private static final Comparator<Reporte> MAS_RECIENTE_PRIMERO = Comparator
+            .comparing(Reporte::getFechaReporte, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(Reporte::getIdReporte, Comparator.reverseOrder());
+
+    private final int capacidadPorRuta;
+    private final BufferReportes global;
+    private final ConcurrentMap<Integer, BufferReportes> porRuta = new ConcurrentHashMap<>();
+
+    private volatile boolean cargado = false;
+
+    /**
+     * @param capacidadPorRuta Reportes guardados por cada ruta
+     * @param capacidadGlobal Reportes guardados en la línea de tiempo global
+     */
+    public LineasDeTiempo(int capacidadPorRuta, int capacidadGlobal) {
+        this.capacidadPorRuta = capacidadPorRuta;
+        this.global = new BufferReportes(capacidadGlobal);
+    }
+
+    /**
+     * Llena los búferes desde la base de datos con dos consultas acotadas
+     * Debe llamarse al iniciar, antes de que la aplicación reciba escrituras
+     * @param reporteRepository Repositorio del que se leen los reportes
+     * @throws SQLException Error en la consulta
+     */
+    public void cargar(ReporteRepository reporteRepository) throws SQLException {
+        for (Reporte reporte : reporteRepository.findRecientesPorRuta(capacidadPorRuta)) {
+            buffer(reporte.getIdRuta()).insertar(reporte);
+        }
+        for (Reporte reporte : reporteRepository.findPage(null, 0, global.capacidad)) {
+            global.insertar(reporte);
+        }
+        cargado = true;
+    }
+
+    /**
+     * @return true si los búferes ya se cargaron desde la base de datos
+     */
+    public boolean isCargado() {
+        return cargado;
+    }
+
+    /**
+     * @return Número máximo de reportes que se pueden pedir de una ruta
+     */
+    public int getCapacidadPorRuta() {
+        return capacidadPorRuta;
+    }
+
+    /**
+     * @return Número máximo de reportes que se pueden pedir de la línea de tiempo global
+     */
+    public int getCapacidadGlobal() {
+        return global.capacidad;
+    }
+
+    /**
+     * Obtiene los reportes más recientes de una ruta
+     * @param idRuta ID de la ruta
+     * @param limite Número máximo de reportes
+     * @return Reportes del más reciente al más antiguo (vacío si la ruta no tiene reportes)
+     */
+    public List<Reporte> getPorRuta(int idRuta, int limite) {
+        BufferReportes buffer = porRuta.get(idRuta);
+        return buffer != null ? buffer.primeros(limite) : new ArrayList<>();
+    }
+
+    /**
+     * Obtiene los reportes más recientes de todas las rutas
+     * @param limite Número máximo de reportes
+     * @return Reportes del más reciente al más antiguo
+     */
+    public List<Reporte> getGlobal(int limite) {
+        return global.primeros(limite);
+    }
+
+    @Override
+    public void onCreado(Reporte reporte) {
+        global.insertar(reporte);
+        buffer(reporte.getIdRuta()).insertar(reporte);
+    }
+
+    @Override
+    public void onActualizado(Reporte anterior, Reporte actual) {
+        global.reemplazar(actual);
+        if (anterior.getIdRuta() == actual.getIdRuta()) {
+            buffer(actual.getIdRuta()).reemplazar(actual);
+        } else {
+            // El reporte cambió de ruta: sale de la línea anterior y entra en su posición por fecha
+            buffer(anterior.getIdRuta()).quitar(anterior.getIdReporte());
+            buffer(actual.getIdRuta()).insertar(actual);
+        }
+    }
+
+    @Override
+    public void onEliminado(Reporte reporte) {
+        global.quitar(reporte.getIdReporte());
+        BufferReportes buffer = porRuta.get(reporte.getIdRuta());
+        if (buffer != null) {
+            buffer.quitar(reporte.getIdReporte());
+        }
+    }
+
+    private BufferReportes buffer(int idRuta) {
+        return porRuta.computeIfAbsent(idRuta, id -> new BufferReportes(capacidadPorRuta));
+    }
+
+    /**
+     * Búfer circular ordenado del reporte más reciente al más antiguo
+     * Los reportes nuevos casi siempre son los más recientes, así que insertar es O(1):
+     * solo se mueve el inicio hacia atrás y se sobrescribe el más antiguo. Un mapa de ID a
+     * casilla permite encontrar un reporte sin recorrer el búfer; insertar en medio o quitar
+     * (cambios de ruta y eliminaciones) sigue desplazando los elementos siguientes
+     */
+    private static class BufferReportes {
+        private final int capacidad;
+        private final Reporte[] elementos;
+        // Casilla física (índice en 'elementos') de cada reporte del búfer
+        private final Map<Integer, Integer> casillaPorId = new HashMap<>();
+        private int inicio = 0;
+        private int size = 0;
+
+        BufferReportes(int capacidad) {
+            this.capacidad = capacidad;
+            this.elementos = new Reporte[capacidad];
+        }
+
+        synchronized void insertar(Reporte reporte) {
+            // Si el reporte ya está (por ejemplo, una escritura repetida) se reemplaza
+            quitarSinBloqueo(reporte.getIdReporte());
+
+            // Buscar la posición desde el inicio: normalmente es la 0
+            int posicion = 0;
+            while (posicion < size && MAS_RECIENTE_PRIMERO.compare(get(posicion), reporte) < 0) {
+                posicion++;
+            }
+            if (posicion == capacidad) {
+                // Es más antiguo que todos los reportes de un búfer lleno
+                return;
+            }
+
+            if (posicion == 0) {
+                inicio = (inicio - 1 + capacidad) % capacidad;
+                if (size < capacidad) {
+                    size++;
+                }
+            } else {
+                // Desplazar hacia el final los elementos desde 'posicion' (el último se pierde si está lleno)
+                int ultimo = size < capacidad ? size : capacidad - 1;
+                for (int i = ultimo; i > posicion; i--) {
+                    set(i, get(i - 1));
+                }
+                if (size < capacidad) {
+                    size++;
+                }
+            }
+            set(posicion, reporte);
+        }
+
+        synchronized void reemplazar(Reporte reporte) {
+            Integer casilla = casillaPorId.get(reporte.getIdReporte());
+            if (casilla != null) {
+                set(posicion(casilla), reporte);
+            }
+        }
+
+        synchronized void quitar(int idReporte) {
+            quitarSinBloqueo(idReporte);
+        }
+
+        synchronized List<Reporte> primeros(int limite) {
+            int cantidad = Math.min(limite, size);
+            List<Reporte> resultado = new ArrayList<>(cantidad);
+            for (int i = 0; i < cantidad; i++) {
+                resultado.add(get(i));
+            }
+            return resultado;
+        }
+
+        private void quitarSinBloqueo(int idReporte) {
+            Integer casilla = casillaPorId.get(idReporte);
+            if (casilla == null) {
+                return;
+            }
+            for (int j = posicion(casilla); j < size - 1; j++) {
+                set(j, get(j + 1));
+            }
+            set(size - 1, null);
+            size--;
+        }
+
+        private int posicion(int casilla) {
+            return (casilla - inicio + capacidad) % capacidad;
+        }
+
+        private Reporte get(int posicion) {
+            return elementos[(inicio + posicion) % capacidad];
+        }
+
+        /**
+         * Escribe una casilla y mantiene el mapa: el reporte sobrescrito sale del mapa solo si
+         * su entrada todavía apunta a esta casilla (al desplazar ya se copió a la vecina)
+         */
+        private void set(int posicion, Reporte reporte) {
+            int casilla = (inicio + posicion) % capacidad;
+            Reporte anterior = elementos[casilla];
+            if (anterior != null) {
+                casillaPorId.remove(anterior.getIdReporte(), casilla);
+            }
+            elementos[casilla] = reporte;
+            if (reporte != null) {
+                casillaPorId.put(reporte.getIdReporte(), casilla);
+            }
+        }
+    }
+}
\ No newline at end of file
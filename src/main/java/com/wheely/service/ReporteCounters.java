@@ -0,0 +1,229 @@
+package com.wheely.service;
+
+import com.wheely.model.ReporteStats;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores en memoria de las estadísticas de reportes
+ * Se actualizan en cada escritura sin bloqueos (LongAdder) y se reconcilian
+ * periódicamente con la base de datos para corregir cualquier desviación
+ * (escrituras de otras instancias, carreras durante la reconciliación, etc.)
+ *
+ * La ventana de reportes recientes se divide en cubetas de una hora; cada cubeta
+ * recuerda la hora que representa y se reemplaza por una nueva cuando sale de la ventana
+ *
+ * La reconciliación se aplica como diferencia: se toma una instantánea de los contadores antes
+ * de consultar la base de datos y se suma (base de datos - instantánea), de modo que los
+ * incrementos que llegan durante la consulta o después no se pierden
+ */
+public class ReporteCounters {
+    public static final int DIAS_VENTANA = 30;
+    private static final int HORAS_VENTANA = DIAS_VENTANA * 24;
+    private static final int TIPOS = 3;
+
+    private final LongAdder total = new LongAdder();
+    // Índices 1..3 (1=Incidencia, 2=Sugerencia, 3=Queja); el índice 0 no se usa
+    private final LongAdder[] porTipo = new LongAdder[TIPOS + 1];
+    private final AtomicReferenceArray<Cubeta> cubetas = new AtomicReferenceArray<>(HORAS_VENTANA + 1);
+
+    private volatile boolean inicializado = false;
+
+    public ReporteCounters() {
+        for (int i = 0; i < porTipo.length; i++) {
+            porTipo[i] = new LongAdder();
+        }
+        for (int i = 0; i < cubetas.length(); i++) {
+            cubetas.set(i, new Cubeta(-1));
+        }
+    }
+
+    /**
+     * @return true si los contadores ya se cargaron desde la base de datos al menos una vez
+     */
+    public boolean isInicializado() {
+        return inicializado;
+    }
+
+    /**
+     * Registra la creación de un reporte
+     * @param idTipoReporte Tipo del reporte creado
+     * @param fecha Fecha del reporte
+     */
+    public void registrarCreacion(int idTipoReporte, LocalDateTime fecha) {
+        total.increment();
+        tipo(idTipoReporte).increment();
+        Cubeta cubeta = cubetaParaEscribir(toHora(fecha));
+        if (cubeta != null) {
+            cubeta.conteo.increment();
+        }
+    }
+
+    /**
+     * Registra la eliminación de un reporte
+     * @param idTipoReporte Tipo del reporte eliminado
+     * @param fecha Fecha del reporte eliminado
+     */
+    public void registrarEliminacion(int idTipoReporte, LocalDateTime fecha) {
+        total.decrement();
+        tipo(idTipoReporte).decrement();
+        if (fecha != null) {
+            long hora = toHora(fecha);
+            Cubeta cubeta = cubetas.get(indice(hora));
+            // Solo se descuenta si la cubeta todavía representa la hora del reporte
+            if (cubeta.hora == hora) {
+                cubeta.conteo.decrement();
+            }
+        }
+    }
+
+    /**
+     * Registra el cambio de tipo de un reporte existente
+     * @param tipoAnterior Tipo antes de la actualización
+     * @param tipoNuevo Tipo después de la actualización
+     */
+    public void registrarCambioTipo(int tipoAnterior, int tipoNuevo) {
+        if (tipoAnterior != tipoNuevo) {
+            tipo(tipoAnterior).decrement();
+            tipo(tipoNuevo).increment();
+        }
+    }
+
+    /**
+     * Toma una instantánea de los contadores; debe tomarse justo antes de consultar la base de
+     * datos para la reconciliación
+     * @return Valores actuales de los contadores
+     */
+    public Instantanea instantanea() {
+        long[] tipos = new long[TIPOS + 1];
+        for (int i = 1; i <= TIPOS; i++) {
+            tipos[i] = porTipo[i].sum();
+        }
+        Map<Long, Long> porHora = new HashMap<>();
+        for (int i = 0; i < cubetas.length(); i++) {
+            Cubeta cubeta = cubetas.get(i);
+            if (cubeta.hora >= 0) {
+                porHora.put(cubeta.hora, cubeta.conteo.sum());
+            }
+        }
+        return new Instantanea(total.sum(), tipos, porHora);
+    }
+
+    /**
+     * Corrige los contadores con los valores calculados en la base de datos
+     * A cada contador se le suma la diferencia entre la base de datos y la instantánea: lo que
+     * se registró después de la instantánea se conserva
+     * @param antes Instantánea tomada antes de consultar la base de datos
+     * @param stats Totales por tipo
+     * @param reportesPorHora Conteo de reportes recientes agrupados por hora
+     */
+    public void reconciliar(Instantanea antes, ReporteStats stats, Map<LocalDateTime, Integer> reportesPorHora) {
+        total.add(stats.getTotalReportes() - antes.total);
+        porTipo[1].add(stats.getIncidencias() - antes.porTipo[1]);
+        porTipo[2].add(stats.getSugerencias() - antes.porTipo[2]);
+        porTipo[3].add(stats.getQuejas() - antes.porTipo[3]);
+
+        long ahora = toHora(LocalDateTime.now());
+        Map<Long, Long> diferencias = new HashMap<>();
+        for (Map.Entry<Long, Long> entry : antes.porHora.entrySet()) {
+            diferencias.put(entry.getKey(), -entry.getValue());
+        }
+        for (Map.Entry<LocalDateTime, Integer> entry : reportesPorHora.entrySet()) {
+            diferencias.merge(toHora(entry.getKey()), (long) entry.getValue(), Long::sum);
+        }
+        for (Map.Entry<Long, Long> entry : diferencias.entrySet()) {
+            long hora = entry.getKey();
+            if (entry.getValue() != 0 && hora > ahora - HORAS_VENTANA && hora <= ahora) {
+                Cubeta cubeta = cubetaParaEscribir(hora);
+                if (cubeta != null) {
+                    cubeta.conteo.add(entry.getValue());
+                }
+            }
+        }
+        inicializado = true;
+    }
+
+    /**
+     * Obtiene las estadísticas actuales sin consultar la base de datos
+     * @return Estadísticas calculadas desde los contadores
+     */
+    public ReporteStats snapshot() {
+        long ahora = toHora(LocalDateTime.now());
+        long recientes = 0;
+        for (int i = 0; i < cubetas.length(); i++) {
+            Cubeta cubeta = cubetas.get(i);
+            if (cubeta.hora > ahora - HORAS_VENTANA && cubeta.hora <= ahora) {
+                recientes += cubeta.conteo.sum();
+            }
+        }
+        return new ReporteStats((int) total.sum(), (int) porTipo[1].sum(), (int) porTipo[2].sum(),
+                (int) porTipo[3].sum(), (int) recientes);
+    }
+
+    /**
+     * Obtiene la cubeta de la hora indicada, reemplazándola si contenía una hora anterior
+     * La cubeta nueva se publica ya vacía, así que ningún incremento de la hora nueva se pierde
+     * por un reinicio
+     * @return Cubeta a incrementar, o null si la hora ya salió de la ventana
+     */
+    private Cubeta cubetaParaEscribir(long hora) {
+        int indice = indice(hora);
+        while (true) {
+            Cubeta actual = cubetas.get(indice);
+            if (actual.hora == hora) {
+                return actual;
+            }
+            if (actual.hora > hora) {
+                return null;
+            }
+            Cubeta nueva = new Cubeta(hora);
+            if (cubetas.compareAndSet(indice, actual, nueva)) {
+                return nueva;
+            }
+        }
+    }
+
+    private LongAdder tipo(int idTipoReporte) {
+        return idTipoReporte >= 1 && idTipoReporte <= TIPOS ? porTipo[idTipoReporte] : porTipo[0];
+    }
+
+    private static int indice(long hora) {
+        return (int) Math.floorMod(hora, (long) HORAS_VENTANA + 1);
+    }
+
+    private static long toHora(LocalDateTime fecha) {
+        return fecha.toEpochSecond(ZoneOffset.UTC) / 3600;
+    }
+
+    /**
+     * Conteo de reportes de una hora
+     */
+    private static class Cubeta {
+        private final long hora;
+        private final LongAdder conteo = new LongAdder();
+
+        Cubeta(long hora) {
+            this.hora = hora;
+        }
+    }
+
+    /**
+     * Valores de los contadores en un momento dado, base de la reconciliación
+     */
+    public static class Instantanea {
+        private final long total;
+        private final long[] porTipo;
+        private final Map<Long, Long> porHora;
+
+        private Instantanea(long total, long[] porTipo, Map<Long, Long> porHora) {
+            this.total = total;
+            this.porTipo = porTipo;
+            this.porHora = porHora;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.wheely.service;
+
+import com.wheely.model.Reporte;
+
+/**
+ * Recibe los cambios de reportes después de que se confirman en la base de datos
+ * Lo usan las vistas en memoria (búsqueda, líneas de tiempo, suscripciones) para
+ * mantenerse al día sin volver a consultar MySQL. Las implementaciones deben ser
+ * rápidas y seguras entre hilos: se ejecutan en el hilo de la petición que escribió
+ */
+public interface ReporteListener {
+
+    /**
+     * @param reporte Reporte creado, con su ID y fecha asignados
+     */
+    default void onCreado(Reporte reporte) {}
+
+    /**
+     * @param anterior Reporte antes de la actualización
+     * @param actual Reporte después de la actualización
+     */
+    default void onActualizado(Reporte anterior, Reporte actual) {}
+
+    /**
+     * @param reporte Reporte eliminado
+     */
+    default void onEliminado(Reporte reporte) {}
+}
\ No newline at end of file
@@ -1,33 +1,317 @@
 package com.wheely.service;
 
+import com.wheely.config.DatabaseConfig;
+import com.wheely.config.UnidadDeTrabajo;
+import com.wheely.model.CacheInfo;
+import com.wheely.model.Pagina;
 import com.wheely.model.Reporte;
+import com.wheely.model.ReporteStats;
+import com.wheely.model.ResultadoBusqueda;
+import com.wheely.model.Rollup;
+import com.wheely.model.ResultadoLote;
+import com.wheely.model.TendenciaRuta;
+import com.wheely.repository.ReporteGroupWriter;
 import com.wheely.repository.ReporteRepository;
+import com.wheely.repository.RollupRepository;
 import com.wheely.repository.UsuarioRepository;
+import com.wheely.search.IndiceBusqueda;
+import com.wheely.util.CacheSwr;
+import com.wheely.util.CursorUtil;
+import com.wheely.util.SingleFlight;
 
+import java.io.IOException;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Servicio para la lógica de negocio de reportes
  * Contiene validaciones y reglas de negocio para reportes
  */
 public class ReporteService {
+    // Tamaño de página por defecto y máximo permitido para listados paginados
+    public static final int LIMITE_DEFAULT = 50;
+    public static final int LIMITE_MAXIMO = 200;
+
+    // Número máximo de reportes aceptados en una sola petición por lotes
+    public static final int LOTE_MAXIMO = 500;
+
+    // Longitud máxima del texto de búsqueda
+    public static final int CONSULTA_MAXIMA = 200;
+
+    // Rango máximo de una consulta de resúmenes según la granularidad
+    private static final Duration RANGO_MAXIMO_HORAS = Duration.ofDays(92);
+    private static final Duration RANGO_MAXIMO_DIAS = Duration.ofDays(3 * 366);
+
+    // Espera antes de reintentar un cálculo inicial de resúmenes que falló
+    private static final long REINTENTO_BACKFILL_SEGUNDOS = 60;
+
     private final ReporteRepository reporteRepository;
     private final UsuarioRepository usuarioRepository;
+    private final ReporteCounters counters;
+    private final ReporteGroupWriter groupWriter;
+    private final List<ReporteListener> listeners = new CopyOnWriteArrayList<>();
+    private IndiceBusqueda indiceBusqueda;
+    private LineasDeTiempo lineasDeTiempo;
+    private TendenciasRutas tendencias;
+    private RollupRepository rollupRepository;
+    private volatile boolean backfillEnCurso = false;
+
+    // Combinan las consultas idénticas simultáneas (primera página y estadísticas calculadas en
+    // la base de datos). La clave incluye la versión de los datos y el origen de la
+    // lectura, así que nadie recibe un resultado anterior a su propia escritura
+    private final SingleFlight<String, Pagina<Reporte>> primerasPaginasEnCurso = new SingleFlight<>("reportes_primera_pagina", ReporteService::etiquetaDe);
+    private final SingleFlight<String, ReporteStats> statsEnCurso = new SingleFlight<>("reportes_stats", ReporteService::etiquetaDe);
+
+    // Cachés stale-while-revalidate de la primera página (por límite) y de las estadísticas
+    // calculadas en la base de datos; null si están deshabilitadas
+    private CacheSwr<Integer, Pagina<Reporte>> cachePrimerasPaginas;
+    private CacheSwr<String, ReporteStats> cacheStats;
 
     public ReporteService(ReporteRepository reporteRepository, UsuarioRepository usuarioRepository) {
+        this(reporteRepository, usuarioRepository, null, null);
+    }
+
+    /**
+     * @param counters Contadores en memoria para estadísticas, o null para calcularlas siempre en la base de datos
+     * @param groupWriter Escritor agrupado para reportes nuevos, o null para insertar cada reporte directamente
+     */
+    public ReporteService(ReporteRepository reporteRepository, UsuarioRepository usuarioRepository,
+                          ReporteCounters counters, ReporteGroupWriter groupWriter) {
         this.reporteRepository = reporteRepository;
         this.usuarioRepository = usuarioRepository;
+        this.counters = counters;
+        this.groupWriter = groupWriter;
+    }
+
+    /**
+     * Inicia la reconciliación periódica de los contadores con la base de datos
+     * La primera ejecución es inmediata y carga los valores iniciales
+     * @param periodoSegundos Segundos entre reconciliaciones
+     */
+    public void iniciarReconciliacion(long periodoSegundos) {
+        if (counters == null) {
+            return;
+        }
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "reporte-stats-reconciliacion");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::reconciliarContadores, 0, periodoSegundos, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Registra un listener que recibe cada reporte creado, actualizado o eliminado
+     * @param listener Listener a notificar después de cada escritura confirmada
+     */
+    public void agregarListener(ReporteListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Habilita la búsqueda de texto con un índice en memoria
+     * El índice se registra como listener para mantenerse al día con las escrituras
+     * @param indice Índice de búsqueda (su carga inicial la inicia quien lo crea)
+     */
+    public void habilitarBusqueda(IndiceBusqueda indice) {
+        this.indiceBusqueda = indice;
+        agregarListener(indice);
+    }
+
+    /**
+     * Habilita las cachés stale-while-revalidate de la primera página de reportes y de las estadísticas
+     * @param ttlFrescoMs Tiempo durante el que un resultado se devuelve sin recalcular
+     * @param ttlObsoletoMs Tiempo durante el que un resultado se devuelve mientras se recalcula en segundo plano
+     */
+    public void habilitarCacheSwr(long ttlFrescoMs, long ttlObsoletoMs) {
+        this.cachePrimerasPaginas = new CacheSwr<>("reportes_primera_pagina", ttlFrescoMs, ttlObsoletoMs);
+        this.cacheStats = new CacheSwr<>("reportes_stats", ttlFrescoMs, ttlObsoletoMs);
+    }
+
+    /**
+     * @return Cachés stale-while-revalidate habilitadas, para publicar sus métricas
+     */
+    public List<CacheSwr<?, ?>> getCachesSwr() {
+        return cachePrimerasPaginas != null ? List.of(cachePrimerasPaginas, cacheStats) : List.of();
+    }
+
+    /**
+     * Habilita las líneas de tiempo en memoria para los reportes recientes
+     * Se registran como listener para reflejar creaciones, actualizaciones y eliminaciones
+     * @param lineas Líneas de tiempo ya cargadas
+     */
+    public void habilitarLineasDeTiempo(LineasDeTiempo lineas) {
+        this.lineasDeTiempo = lineas;
+        agregarListener(lineas);
+    }
+
+    /**
+     * Habilita el cálculo en memoria de las rutas con más reportes recientes
+     * @param tendencias Estructuras de tendencias (se alimentan con cada reporte creado)
+     */
+    public void habilitarTendencias(TendenciasRutas tendencias) {
+        this.tendencias = tendencias;
+        agregarListener(tendencias);
+    }
+
+    /**
+     * Habilita la consulta de resúmenes por hora y día (las tablas ya deben existir)
+     * @param rollupRepository Repositorio de la tabla reporte_rollup
+     * @param completos true si el cálculo inicial ya terminó; si no, /reportes/rollups responde
+     *                  503 hasta que lo complete iniciarBackfillRollups
+     */
+    public void habilitarRollups(RollupRepository rollupRepository, boolean completos) {
+        this.backfillEnCurso = !completos;
+        this.rollupRepository = rollupRepository;
+    }
+
+    /**
+     * Calcula en segundo plano los resúmenes de todos los reportes existentes, un día a la vez
+     * Las escrituras ya mantienen los resúmenes mientras tanto; cada día se recalcula en su propia
+     * transacción, así que el trabajo se puede interrumpir y repetir sin duplicar conteos. El
+     * último día calculado se guarda en la base de datos: si falla se reintenta desde ahí, y si el
+     * proceso termina antes, el siguiente arranque continúa desde ese día
+     * @param reiniciar true para recalcular desde el primer reporte aunque haya avance guardado
+     */
+    public void iniciarBackfillRollups(boolean reiniciar) {
+        if (rollupRepository == null) {
+            return;
+        }
+        backfillEnCurso = true;
+        Thread backfill = new Thread(() -> {
+            boolean desdeElInicio = reiniciar;
+            while (true) {
+                try {
+                    if (desdeElInicio) {
+                        rollupRepository.guardarAvanceBackfill(null, false);
+                        desdeElInicio = false;
+                    }
+                    calcularRollupsPendientes();
+                    backfillEnCurso = false;
+                    return;
+                } catch (Exception e) {
+                    // Los días ya calculados quedan guardados; se reintenta desde el último
+                    System.err.println("Error al calcular los resúmenes de reportes, se reintentará: " + e.getMessage());
+                }
+                try {
+                    TimeUnit.SECONDS.sleep(REINTENTO_BACKFILL_SEGUNDOS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "reporte-rollup-backfill");
+        backfill.setDaemon(true);
+        backfill.start();
+    }
+
+    /**
+     * Recalcula los días posteriores al último guardado hasta hoy y marca el cálculo como completo
+     */
+    private void calcularRollupsPendientes() throws SQLException {
+        LocalDate ultimo = rollupRepository.findUltimoDiaCalculado();
+        LocalDate desde;
+        if (ultimo != null) {
+            desde = ultimo.plusDays(1);
+        } else {
+            LocalDateTime minima = rollupRepository.findFechaMinima();
+            desde = minima != null ? minima.toLocalDate() : null;
+        }
+
+        LocalDate hoy = LocalDate.now();
+        int dias = 0;
+        if (desde != null) {
+            for (LocalDate dia = desde; !dia.isAfter(hoy); dia = dia.plusDays(1)) {
+                rollupRepository.recalcularDia(dia);
+                rollupRepository.guardarAvanceBackfill(dia, false);
+                dias++;
+            }
+        }
+        rollupRepository.guardarAvanceBackfill(desde != null ? hoy : null, true);
+        System.out.println("Resúmenes de reportes calculados: " + dias + " días");
+    }
+
+    /**
+     * Recalcula los contadores en memoria a partir de la base de datos
+     */
+    void reconciliarContadores() {
+        try {
+            LocalDateTime desde = LocalDateTime.now().minusDays(ReporteCounters.DIAS_VENTANA);
+            ReporteCounters.Instantanea antes = counters.instantanea();
+            ReporteStats stats = reporteRepository.getStats(desde);
+            counters.reconciliar(antes, stats, reporteRepository.countByHora(desde));
+        } catch (Exception e) {
+            // Se conservan los valores actuales y se reintenta en la siguiente ejecución
+            System.err.println("Error al reconciliar estadísticas de reportes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Obtiene la versión actual de los datos de reportes para construir ETags
+     * @return Versión que cambia con cada escritura de reportes
+     */
+    public long getVersion() {
+        return reporteRepository.getVersion();
     }
 
     /**
-     * Obtiene todos los reportes del sistema
-     * @return Lista de reportes ordenados por fecha
+     * Indica si la versión identifica los datos que devuelven las lecturas
+     * Justo después de una escritura una réplica atrasada puede devolver datos anteriores a la
+     * versión actual; un ETag con esa versión haría que el cliente conservara esos datos con 304
+     * hasta la siguiente escritura
+     * @return false mientras una réplica podría no tener la última escritura
+     */
+    public boolean isVersionConfiable() {
+        return !reporteRepository.isReplicaPosiblementeAtrasada();
+    }
+
+    /**
+     * Recorre todos los reportes del sistema sin cargarlos en memoria
+     * @param handler Recibe cada reporte ordenado por fecha
      * @throws SQLException Error en la consulta
+     * @throws IOException Error del handler al procesar un reporte
      */
-    public List<Reporte> getAllReportes() throws SQLException {
-        return reporteRepository.findAll();
+    public void streamAllReportes(ReporteRepository.ReporteHandler handler) throws SQLException, IOException {
+        reporteRepository.streamAll(handler);
+    }
+
+    /**
+     * Obtiene una página de reportes ordenados por fecha
+     * @param cursor Cursor de la página anterior, o null para la primera página
+     * La primera página puede venir de la caché stale-while-revalidate si está habilitada
+     * @param limite Número de reportes por página (entre 1 y LIMITE_MAXIMO)
+     * @return Página de reportes con el cursor de la siguiente página, la versión de los datos y si está obsoleta
+     * @throws SQLException Error en la consulta
+     * @throws IllegalArgumentException Si el cursor o el límite no son válidos
+     */
+    public CacheSwr.Resultado<Pagina<Reporte>> getReportesPage(String cursor, int limite) throws SQLException {
+        validateLimite(limite);
+        CursorUtil.Cursor posicion = cursor != null ? CursorUtil.decode(cursor) : null;
+        long version = reporteRepository.getVersion();
+
+        // Se pide un elemento extra para saber si existe una página siguiente
+        if (posicion != null) {
+            return CacheSwr.Resultado.actual(
+                    toPagina(reporteRepository.findPage(posicion.getFecha(), posicion.getId(), limite + 1), limite),
+                    version);
+        }
+        // La primera página es la que piden todos los clientes al abrir la lista
+        return leerConCache(cachePrimerasPaginas, limite, version, () ->
+                primerasPaginasEnCurso.ejecutar(claveConsulta("limite=" + limite),
+                        () -> toPagina(reporteRepository.findPage(null, 0, limite + 1), limite)));
     }
 
     /**
@@ -48,7 +332,7 @@ public class ReporteService {
      */
     public List<Reporte> getReportesByUsuario(int idUsuario) throws SQLException {
         // Verificar que el usuario existe
-        if (usuarioRepository.findById(idUsuario) == null) {
+        if (!usuarioRepository.existsById(idUsuario)) {
             throw new IllegalArgumentException("Usuario no encontrado");
         }
 
@@ -56,121 +340,393 @@ public class ReporteService {
     }
 
     /**
-     * Crea un nuevo reporte
-     * @param reporte Reporte a crear
-     * @return ID del reporte creado
-     * @throws SQLException Error en la base de datos
-     * @throws IllegalArgumentException Error de validación
+     * Obtiene una página de reportes de un usuario específico
+     * @param idUsuario ID del usuario
+     * @param cursor Cursor de la página anterior, o null para la primera página
+     * @param limite Número de reportes por página (entre 1 y LIMITE_MAXIMO)
+     * @return Página de reportes del usuario con el cursor de la siguiente página
+     * @throws SQLException Error en la consulta
+     * @throws IllegalArgumentException Si el usuario no existe o el cursor/límite no son válidos
      */
-    public int createReporte(Reporte reporte) throws SQLException {
-        // Validar datos del reporte
-        validateReporte(reporte);
+    public Pagina<Reporte> getReportesByUsuarioPage(int idUsuario, String cursor, int limite) throws SQLException {
+        validateLimite(limite);
+        CursorUtil.Cursor posicion = cursor != null ? CursorUtil.decode(cursor) : null;
 
         // Verificar que el usuario existe
-        if (usuarioRepository.findById(reporte.getIdUsuario()) == null) {
+        if (!usuarioRepository.existsById(idUsuario)) {
             throw new IllegalArgumentException("Usuario no encontrado");
         }
 
-        // Validar tipos de reporte válidos (1=Incidencia, 2=Sugerencia, 3=Queja)
-        if (reporte.getIdTipoReporte() < 1 || reporte.getIdTipoReporte() > 3) {
+        List<Reporte> reportes = posicion != null
+                ? reporteRepository.findPageByUsuario(idUsuario, posicion.getFecha(), posicion.getId(), limite + 1)
+                : reporteRepository.findPageByUsuario(idUsuario, null, 0, limite + 1);
+
+        return toPagina(reportes, limite);
+    }
+
+    /**
+     * Obtiene los reportes más recientes de todas las rutas desde memoria
+     * @param limite Número de reportes (entre 1 y la capacidad de la línea de tiempo global)
+     * @return Reportes del más reciente al más antiguo
+     * @throws IllegalArgumentException Si el límite no es válido
+     * @throws IllegalStateException Si las líneas de tiempo no están disponibles
+     */
+    public List<Reporte> getReportesRecientes(int limite) {
+        LineasDeTiempo lineas = getLineasDeTiempo();
+        validateLimite(limite, lineas.getCapacidadGlobal());
+        return lineas.getGlobal(limite);
+    }
+
+    /**
+     * Obtiene los reportes más recientes de una ruta desde memoria
+     * @param idRuta ID de la ruta
+     * @param limite Número de reportes (entre 1 y la capacidad por ruta)
+     * @return Reportes de la ruta del más reciente al más antiguo
+     * @throws IllegalArgumentException Si la ruta o el límite no son válidos
+     * @throws IllegalStateException Si las líneas de tiempo no están disponibles
+     */
+    public List<Reporte> getReportesByRuta(int idRuta, int limite) {
+        if (idRuta <= 0) {
+            throw new IllegalArgumentException("ID de ruta no válido");
+        }
+        LineasDeTiempo lineas = getLineasDeTiempo();
+        validateLimite(limite, lineas.getCapacidadPorRuta());
+        return lineas.getPorRuta(idRuta, limite);
+    }
+
+    /**
+     * Obtiene las rutas con más reportes recientes de un tipo
+     * @param idTipoReporte Tipo de reporte (1=Incidencia, 2=Sugerencia, 3=Queja)
+     * @param ventana Nombre de la ventana de tiempo ("15m", "1h" o "24h")
+     * @param limite Número de rutas (entre 1 y la capacidad configurada)
+     * @return Rutas con su número estimado de reportes, de mayor a menor
+     * @throws IllegalArgumentException Si el tipo, la ventana o el límite no son válidos
+     * @throws IllegalStateException Si las tendencias no están habilitadas
+     */
+    public List<TendenciaRuta> getTendencias(int idTipoReporte, String ventana, int limite) {
+        if (tendencias == null) {
+            throw new IllegalStateException("Las tendencias de rutas no están habilitadas");
+        }
+        if (idTipoReporte < 1 || idTipoReporte > 3) {
             throw new IllegalArgumentException("Tipo de reporte no válido");
         }
+        validateLimite(limite, tendencias.getCapacidadTop());
+        return tendencias.top(idTipoReporte, TendenciasRutas.Ventana.desde(ventana), limite);
+    }
 
-        // Validar que idRuta sea positivo
-        if (reporte.getIdRuta() <= 0) {
+    /**
+     * Obtiene el número de reportes por periodo y tipo desde la tabla de resúmenes
+     * @param idRuta ID de la ruta, o null para todas las rutas
+     * @param desde Inicio del rango (inclusive)
+     * @param hasta Fin del rango (exclusivo)
+     * @param granularidad "hora" o "dia"
+     * @return Resúmenes ordenados por periodo y tipo; los periodos sin reportes se omiten
+     * @throws SQLException Error en la consulta
+     * @throws IllegalArgumentException Si la ruta, el rango o la granularidad no son válidos
+     * @throws IllegalStateException Si los resúmenes no están habilitados o se están calculando
+     */
+    public List<Rollup> getRollups(Integer idRuta, LocalDateTime desde, LocalDateTime hasta, String granularidad)
+            throws SQLException {
+        if (rollupRepository == null) {
+            throw new IllegalStateException("Los resúmenes de reportes no están habilitados");
+        }
+        if (idRuta != null && idRuta <= 0) {
             throw new IllegalArgumentException("ID de ruta no válido");
         }
 
-        return reporteRepository.save(reporte);
+        String codigo;
+        Duration rangoMaximo;
+        if ("hora".equalsIgnoreCase(granularidad)) {
+            codigo = RollupRepository.HORA;
+            rangoMaximo = RANGO_MAXIMO_HORAS;
+        } else if ("dia".equalsIgnoreCase(granularidad)) {
+            codigo = RollupRepository.DIA;
+            rangoMaximo = RANGO_MAXIMO_DIAS;
+        } else {
+            throw new IllegalArgumentException("La granularidad debe ser hora o dia");
+        }
+
+        if (desde == null || hasta == null || !hasta.isAfter(desde)) {
+            throw new IllegalArgumentException("Se requiere un rango con 'desde' anterior a 'hasta'");
+        }
+        if (Duration.between(desde, hasta).compareTo(rangoMaximo) > 0) {
+            throw new IllegalArgumentException("El rango no puede exceder " + rangoMaximo.toDays() +
+                    " días con granularidad " + granularidad.toLowerCase());
+        }
+        if (backfillEnCurso) {
+            throw new IllegalStateException("Los resúmenes de reportes se están calculando");
+        }
+
+        return rollupRepository.find(idRuta, codigo, desde, hasta);
     }
 
     /**
-     * Actualiza un reporte existente
-     * @param reporte Reporte con datos actualizados
-     * @return true si se actualizó correctamente
-     * @throws SQLException Error en la base de datos
-     * @throws IllegalArgumentException Error de validación
+     * Busca reportes por texto en su título y descripción
+     * Los IDs se obtienen del índice en memoria ordenados por relevancia y los reportes
+     * se leen con una sola consulta
+     * @param consulta Texto a buscar
+     * @param limite Número máximo de resultados (entre 1 y LIMITE_MAXIMO)
+     * @return Reportes encontrados con su puntaje, del más al menos relevante
+     * @throws SQLException Error en la consulta
+     * @throws IllegalArgumentException Si la consulta o el límite no son válidos
+     * @throws IllegalStateException Si la búsqueda no está habilitada o el índice se está construyendo
      */
-    public boolean updateReporte(Reporte reporte) throws SQLException {
-        // Verificar que el reporte existe
-        Reporte reporteExistente = reporteRepository.findById(reporte.getIdReporte());
-        if (reporteExistente == null) {
-            throw new IllegalArgumentException("Reporte no encontrado");
+    public List<ResultadoBusqueda> buscarReportes(String consulta, int limite) throws SQLException {
+        validateLimite(limite);
+        if (consulta == null || consulta.trim().isEmpty()) {
+            throw new IllegalArgumentException("El texto de búsqueda es requerido");
+        }
+        if (consulta.length() > CONSULTA_MAXIMA) {
+            throw new IllegalArgumentException("El texto de búsqueda no puede exceder " + CONSULTA_MAXIMA + " caracteres");
+        }
+        if (indiceBusqueda == null) {
+            throw new IllegalStateException("La búsqueda de reportes no está habilitada");
+        }
+        if (!indiceBusqueda.isCargado()) {
+            throw new IllegalStateException("El índice de búsqueda se está construyendo");
         }
 
+        List<IndiceBusqueda.Coincidencia> coincidencias = indiceBusqueda.buscar(consulta, limite);
+        List<Integer> ids = new ArrayList<>(coincidencias.size());
+        for (IndiceBusqueda.Coincidencia coincidencia : coincidencias) {
+            ids.add(coincidencia.getIdReporte());
+        }
+
+        Map<Integer, Reporte> porId = new HashMap<>();
+        for (Reporte reporte : reporteRepository.findByIds(ids)) {
+            porId.put(reporte.getIdReporte(), reporte);
+        }
+
+        // Se conserva el orden por relevancia; un reporte eliminado entre ambas lecturas se omite
+        List<ResultadoBusqueda> resultados = new ArrayList<>(coincidencias.size());
+        for (IndiceBusqueda.Coincidencia coincidencia : coincidencias) {
+            Reporte reporte = porId.get(coincidencia.getIdReporte());
+            if (reporte != null) {
+                resultados.add(new ResultadoBusqueda(reporte, coincidencia.getPuntaje()));
+            }
+        }
+        return resultados;
+    }
+
+    /**
+     * Crea un nuevo reporte
+     * @param reporte Reporte a crear
+     * @return ID del reporte creado
+     * @throws SQLException Error en la base de datos
+     * @throws IllegalArgumentException Error de validación
+     */
+    public int createReporte(Reporte reporte) throws SQLException {
         // Validar datos del reporte
         validateReporte(reporte);
 
         // Verificar que el usuario existe
-        if (usuarioRepository.findById(reporte.getIdUsuario()) == null) {
+        if (!usuarioRepository.existsById(reporte.getIdUsuario())) {
             throw new IllegalArgumentException("Usuario no encontrado");
         }
 
-        // Validar tipos de reporte válidos
-        if (reporte.getIdTipoReporte() < 1 || reporte.getIdTipoReporte() > 3) {
-            throw new IllegalArgumentException("Tipo de reporte no válido");
+        validateTipoYRuta(reporte);
+
+        // En modo agrupado el reporte se confirma junto con otros en una sola transacción
+        int idCreado = groupWriter != null ? groupWriter.submit(reporte) : reporteRepository.save(reporte);
+        // Fecha asignada por la base de datos, la misma que verán las consultas
+        LocalDateTime fecha = reporte.getFechaReporte();
+        if (counters != null) {
+            counters.registrarCreacion(reporte.getIdTipoReporte(), fecha);
         }
+        notificarCreado(reporte, idCreado, fecha);
+        return idCreado;
+    }
 
-        // Validar que idRuta sea positivo
-        if (reporte.getIdRuta() <= 0) {
-            throw new IllegalArgumentException("ID de ruta no válido");
+    /**
+     * Crea varios reportes en una sola transacción
+     * Cada reporte se valida por separado; los que no pasan la validación se reportan con su error
+     * y el resto se inserta con un lote JDBC. Los usuarios se verifican todos con una sola consulta
+     * @param reportes Reportes a crear
+     * @return Resultado de cada reporte en el orden recibido (ID generado o error)
+     * @throws SQLException Error en la base de datos (ningún reporte queda guardado)
+     * @throws IllegalArgumentException Si el lote está vacío o excede LOTE_MAXIMO
+     */
+    public List<ResultadoLote> createReportesBatch(List<Reporte> reportes) throws SQLException {
+        if (reportes == null || reportes.isEmpty()) {
+            throw new IllegalArgumentException("Se requiere al menos un reporte");
+        }
+        if (reportes.size() > LOTE_MAXIMO) {
+            throw new IllegalArgumentException("El lote no puede exceder " + LOTE_MAXIMO + " reportes");
+        }
+
+        // Validar cada reporte de forma independiente
+        ResultadoLote[] resultados = new ResultadoLote[reportes.size()];
+        Set<Integer> idsUsuario = new HashSet<>();
+        for (int i = 0; i < reportes.size(); i++) {
+            try {
+                Reporte reporte = reportes.get(i);
+                validateReporte(reporte);
+                validateTipoYRuta(reporte);
+                idsUsuario.add(reporte.getIdUsuario());
+            } catch (IllegalArgumentException e) {
+                resultados[i] = ResultadoLote.error(i, e.getMessage());
+            }
+        }
+
+        // Verificar todos los usuarios referenciados de una sola vez
+        Set<Integer> usuariosExistentes = usuarioRepository.findExistingIds(idsUsuario);
+        List<Reporte> validos = new ArrayList<>();
+        List<Integer> indicesValidos = new ArrayList<>();
+        for (int i = 0; i < reportes.size(); i++) {
+            if (resultados[i] != null) {
+                continue;
+            }
+            if (!usuariosExistentes.contains(reportes.get(i).getIdUsuario())) {
+                resultados[i] = ResultadoLote.error(i, "Usuario no encontrado");
+            } else {
+                validos.add(reportes.get(i));
+                indicesValidos.add(i);
+            }
+        }
+
+        int[] ids = reporteRepository.saveAll(validos);
+        for (int j = 0; j < ids.length; j++) {
+            Reporte creado = validos.get(j);
+            resultados[indicesValidos.get(j)] = ResultadoLote.creado(indicesValidos.get(j), ids[j]);
+            if (counters != null) {
+                counters.registrarCreacion(creado.getIdTipoReporte(), creado.getFechaReporte());
+            }
+            notificarCreado(creado, ids[j], creado.getFechaReporte());
         }
 
-        // Verificar que solo el autor puede modificar el reporte
-        if (reporteExistente.getIdUsuario() != reporte.getIdUsuario()) {
+        return List.of(resultados);
+    }
+
+    /**
+     * Actualiza un reporte existente
+     * El reporte anterior (para los contadores y los listeners) se lee del primario bloqueando
+     * la fila en la misma transacción del UPDATE, y la autoría se verifica en el propio UPDATE
+     * @param reporte Reporte con datos actualizados
+     * @return Reporte tal como quedó guardado
+     * @throws SQLException Error en la base de datos
+     * @throws IllegalArgumentException Error de validación, reporte inexistente o de otro usuario
+     */
+    public Reporte updateReporte(Reporte reporte) throws SQLException {
+        // Validar datos del reporte
+        validateReporte(reporte);
+        validateTipoYRuta(reporte);
+
+        ReporteRepository.Modificacion modificacion;
+        UnidadDeTrabajo unidad = UnidadDeTrabajo.iniciar();
+        try {
+            modificacion = reporteRepository.update(reporte);
+        } finally {
+            unidad.close();
+        }
+        Reporte reporteExistente = modificacion.getAnterior();
+        if (reporteExistente == null) {
+            throw new IllegalArgumentException("Reporte no encontrado");
+        }
+        // El UPDATE no afectó filas: solo el autor puede modificar el reporte
+        if (!modificacion.isAplicada()) {
             throw new IllegalArgumentException("Solo el autor puede modificar este reporte");
         }
 
         // Mantener la fecha original del reporte
         reporte.setFechaReporte(reporteExistente.getFechaReporte());
-
-        return reporteRepository.update(reporte);
+        if (counters != null) {
+            counters.registrarCambioTipo(reporteExistente.getIdTipoReporte(), reporte.getIdTipoReporte());
+        }
+        Reporte actual = copiar(reporte);
+        notificar(listener -> listener.onActualizado(reporteExistente, actual));
+        return copiar(reporte);
     }
 
     /**
      * Elimina un reporte por su ID
+     * Igual que updateReporte: el reporte eliminado se lee del primario en la transacción del
+     * DELETE y la autoría se verifica en el propio DELETE
      * @param idReporte ID del reporte a eliminar
      * @param idUsuarioSolicitante ID del usuario que solicita la eliminación
      * @return true si se eliminó correctamente
      * @throws SQLException Error en la base de datos
-     * @throws IllegalArgumentException Error de validación
+     * @throws IllegalArgumentException Reporte inexistente o de otro usuario
      */
     public boolean deleteReporte(int idReporte, int idUsuarioSolicitante) throws SQLException {
-        // Verificar que el reporte existe
-        Reporte reporte = reporteRepository.findById(idReporte);
+        ReporteRepository.Modificacion modificacion;
+        UnidadDeTrabajo unidad = UnidadDeTrabajo.iniciar();
+        try {
+            modificacion = reporteRepository.delete(idReporte, idUsuarioSolicitante);
+        } finally {
+            unidad.close();
+        }
+        Reporte reporte = modificacion.getAnterior();
         if (reporte == null) {
             throw new IllegalArgumentException("Reporte no encontrado");
         }
-
-        // Verificar que solo el autor puede eliminar el reporte
-        if (reporte.getIdUsuario() != idUsuarioSolicitante) {
+        // El DELETE no afectó filas: solo el autor puede eliminar el reporte
+        if (!modificacion.isAplicada()) {
             throw new IllegalArgumentException("Solo el autor puede eliminar este reporte");
         }
 
-        return reporteRepository.delete(idReporte);
+        if (counters != null) {
+            counters.registrarEliminacion(reporte.getIdTipoReporte(), reporte.getFechaReporte());
+        }
+        notificar(listener -> listener.onEliminado(reporte));
+        return true;
     }
 
     /**
      * Obtiene estadísticas básicas de reportes
-     * @return Información estadística
+     * Se responden desde los contadores en memoria cuando ya están cargados;
+     * en caso contrario se calculan en la base de datos con una sola consulta (a través de la
+     * caché stale-while-revalidate si está habilitada)
+     * @return Información estadística con la versión de los datos y si está obsoleta
      * @throws SQLException Error en la consulta
      */
-    public ReporteStats getReporteStats() throws SQLException {
-        int totalReportes = reporteRepository.count();
-        List<Reporte> todosReportes = reporteRepository.findAll();
+    public CacheSwr.Resultado<ReporteStats> getReporteStats() throws SQLException {
+        long version = reporteRepository.getVersion();
+        if (counters != null && counters.isInicializado()) {
+            return CacheSwr.Resultado.actual(counters.snapshot(), version);
+        }
 
-        // Contar reportes por tipo
-        long incidencias = todosReportes.stream().filter(r -> r.getIdTipoReporte() == 1).count();
-        long sugerencias = todosReportes.stream().filter(r -> r.getIdTipoReporte() == 2).count();
-        long quejas = todosReportes.stream().filter(r -> r.getIdTipoReporte() == 3).count();
+        return leerConCache(cacheStats, "stats", version, () ->
+                statsEnCurso.ejecutar(claveConsulta("stats"), () ->
+                        reporteRepository.getStats(LocalDateTime.now().minusDays(ReporteCounters.DIAS_VENTANA))));
+    }
 
-        // Contar reportes del último mes
-        LocalDateTime unMesAtras = LocalDateTime.now().minusMonths(1);
-        long reportesUltimoMes = todosReportes.stream()
-                .filter(r -> r.getFechaReporte() != null && r.getFechaReporte().isAfter(unMesAtras))
-                .count();
+    /**
+     * Obtiene un resultado a través de una caché stale-while-revalidate, o directamente si no hay caché
+     * Si el hilo escribió hace poco se recalcula sin consultar la caché para que vea su propia
+     * escritura; el resultado se guarda y los demás clientes también lo aprovechan
+     */
+    private <K, V> CacheSwr.Resultado<V> leerConCache(CacheSwr<K, V> cache, K clave, long version,
+                                                        SingleFlight.Llamada<V> calculo) throws SQLException {
+        if (cache == null) {
+            return CacheSwr.Resultado.actual(calculo.ejecutar(), version);
+        }
+        if (DatabaseConfig.leerDelPrimario()) {
+            return cache.recalcular(clave, version, calculo);
+        }
+        return cache.obtener(clave, version, calculo);
+    }
 
-        return new ReporteStats(totalReportes, (int)incidencias, (int)sugerencias, (int)quejas, (int)reportesUltimoMes);
+    /**
+     * Obtiene los combinadores de consultas simultáneas para publicar sus métricas
+     * @return Lista de combinadores (uno por tipo de consulta)
+     */
+    public List<SingleFlight<?, ?>> getConsultasCombinadas() {
+        return List.of(primerasPaginasEnCurso, statsEnCurso);
+    }
+
+    /**
+     * Construye la clave con la que se combinan consultas idénticas simultáneas
+     * Incluye la versión de los datos (una consulta iniciada antes de una escritura no se
+     * comparte con quien llega después) y si el hilo lee del primario por su ventana de escritura
+     * @param etiqueta Identifica la consulta y sus parámetros (es la etiqueta de las métricas)
+     */
+    private String claveConsulta(String etiqueta) {
+        String origen = DatabaseConfig.leerDelPrimario() ? "primario" : "replica";
+        return etiqueta + "|" + reporteRepository.getVersion() + "|" + origen;
+    }
+
+    private static String etiquetaDe(String clave) {
+        return clave.substring(0, clave.indexOf('|'));
     }
 
     /**
@@ -208,28 +764,109 @@ public class ReporteService {
     }
 
     /**
-     * Clase interna para estadísticas de reportes
+     * Obtiene las estadísticas de la caché de reportes por ID
+     * @return Información de uso de la caché
+     */
+    public CacheInfo getCacheInfo() {
+        return reporteRepository.getCacheInfo();
+    }
+
+    /**
+     * Valida el tipo de reporte y la ruta
+     * @param reporte Reporte a validar
+     * @throws IllegalArgumentException Si el tipo o la ruta no son válidos
+     */
+    private void validateTipoYRuta(Reporte reporte) {
+        // Validar tipos de reporte válidos (1=Incidencia, 2=Sugerencia, 3=Queja)
+        if (reporte.getIdTipoReporte() < 1 || reporte.getIdTipoReporte() > 3) {
+            throw new IllegalArgumentException("Tipo de reporte no válido");
+        }
+
+        // Validar que idRuta sea positivo
+        if (reporte.getIdRuta() <= 0) {
+            throw new IllegalArgumentException("ID de ruta no válido");
+        }
+    }
+
+    /**
+     * Notifica a los listeners un reporte recién creado
+     * Se entrega una copia con el ID y la fecha asignados para que los listeners no
+     * compartan el objeto que el controlador devuelve al cliente
      */
-    public static class ReporteStats {
-        private int totalReportes;
-        private int incidencias;
-        private int sugerencias;
-        private int quejas;
-        private int reportesUltimoMes;
+    private void notificarCreado(Reporte reporte, int idCreado, LocalDateTime fecha) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        Reporte creado = new Reporte(idCreado, reporte.getIdRuta(), reporte.getIdTipoReporte(),
+                reporte.getIdUsuario(), reporte.getTitulo(), reporte.getDescripcion(), fecha);
+        notificar(listener -> listener.onCreado(creado));
+    }
 
-        public ReporteStats(int totalReportes, int incidencias, int sugerencias, int quejas, int reportesUltimoMes) {
-            this.totalReportes = totalReportes;
-            this.incidencias = incidencias;
-            this.sugerencias = sugerencias;
-            this.quejas = quejas;
-            this.reportesUltimoMes = reportesUltimoMes;
+    /**
+     * Entrega un evento a cada listener registrado
+     */
+    private void notificar(Consumer<ReporteListener> evento) {
+        for (ReporteListener listener : listeners) {
+            try {
+                evento.accept(listener);
+            } catch (RuntimeException e) {
+                // La escritura ya está confirmada: un listener con error no debe hacerla fallar
+                System.err.println("Error en listener de reportes: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Crea una copia independiente de un reporte
+     */
+    private static Reporte copiar(Reporte reporte) {
+        return new Reporte(reporte.getIdReporte(), reporte.getIdRuta(), reporte.getIdTipoReporte(),
+                reporte.getIdUsuario(), reporte.getTitulo(), reporte.getDescripcion(), reporte.getFechaReporte());
+    }
+
+    /**
+     * Valida el tamaño de página solicitado
+     * @param limite Número de reportes por página
+     * @throws IllegalArgumentException Si el límite está fuera de rango
+     */
+    private void validateLimite(int limite) {
+        validateLimite(limite, LIMITE_MAXIMO);
+    }
+
+    /**
+     * Valida el número de reportes solicitado contra un máximo
+     * @throws IllegalArgumentException Si el límite está fuera de rango
+     */
+    private void validateLimite(int limite, int maximo) {
+        if (limite < 1 || limite > maximo) {
+            throw new IllegalArgumentException("El límite debe estar entre 1 y " + maximo);
+        }
+    }
+
+    /**
+     * @return Líneas de tiempo cargadas
+     * @throws IllegalStateException Si no están habilitadas o no se pudieron cargar
+     */
+    private LineasDeTiempo getLineasDeTiempo() {
+        if (lineasDeTiempo == null || !lineasDeTiempo.isCargado()) {
+            throw new IllegalStateException("Los reportes recientes no están disponibles");
+        }
+        return lineasDeTiempo;
+    }
+
+    /**
+     * Recorta el elemento extra consultado y genera el cursor de la siguiente página
+     * @param reportes Reportes consultados (hasta limite + 1)
+     * @param limite Número de reportes por página
+     * @return Página con cursor siguiente si hay más resultados
+     */
+    private Pagina<Reporte> toPagina(List<Reporte> reportes, int limite) {
+        if (reportes.size() <= limite) {
+            return new Pagina<>(reportes, null);
         }
 
-        // Getters
-        public int getTotalReportes() { return totalReportes; }
-        public int getIncidencias() { return incidencias; }
-        public int getSugerencias() { return sugerencias; }
-        public int getQuejas() { return quejas; }
-        public int getReportesUltimoMes() { return reportesUltimoMes; }
+        List<Reporte> items = reportes.subList(0, limite);
+        Reporte ultimo = items.get(limite - 1);
+        return new Pagina<>(items, CursorUtil.encode(ultimo.getFechaReporte(), ultimo.getIdReporte()));
     }
 }
\ No newline at end of file
@@ -0,0 +1,193 @@
+package com.wheely.service;
+
+import com.wheely.model.Reporte;
+import com.wheely.model.TendenciaRuta;
+import com.wheely.repository.ReporteRepository;
+import com.wheely.util.CountMinSketch;
+import com.wheely.util.SpaceSaving;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Rutas con más reportes recientes por tipo de reporte, calculadas en memoria
+ *
+ * El tiempo se divide en cubetas de un minuto (última hora) y de una hora (último día).
+ * Cada cubeta tiene, por tipo de reporte, un Count-Min Sketch con el conteo aproximado de
+ * cada ruta y un Space-Saving con las rutas candidatas a más frecuentes. Una ventana se
+ * responde uniendo las candidatas de sus cubetas y sumando sus estimaciones. La memoria
+ * es fija sin importar el número de rutas; como en ReporteCounters, cada cubeta recuerda
+ * su periodo y se reutiliza cuando sale de la ventana
+ *
+ * Solo se cuentan reportes nuevos: las tendencias miden la llegada de reportes, así que
+ * editar o eliminar uno después no las modifica
+ */
+public class TendenciasRutas implements ReporteListener {
+    private static final int TIPOS = 3;
+    private static final int MINUTOS = 60;
+    private static final int HORAS = 24;
+
+    // Con 512 columnas y 4 filas la sobreestimación por cubeta es menor a 0.6% de sus reportes
+    // con probabilidad de 98% (e / ancho y 1 - e^-profundidad)
+    private static final int ANCHO_SKETCH = 512;
+    private static final int PROFUNDIDAD_SKETCH = 4;
+
+    /**
+     * Ventanas de tiempo disponibles
+     */
+    public enum Ventana {
+        QUINCE_MINUTOS("15m", 15, false),
+        HORA("1h", 60, false),
+        DIA("24h", 24, true);
+
+        private final String nombre;
+        private final int cubetas;
+        private final boolean porHora;
+
+        Ventana(String nombre, int cubetas, boolean porHora) {
+            this.nombre = nombre;
+            this.cubetas = cubetas;
+            this.porHora = porHora;
+        }
+
+        public String getNombre() {
+            return nombre;
+        }
+
+        /**
+         * @param nombre Nombre de la ventana ("15m", "1h" o "24h")
+         * @return Ventana correspondiente
+         * @throws IllegalArgumentException Si el nombre no corresponde a ninguna ventana
+         */
+        public static Ventana desde(String nombre) {
+            for (Ventana ventana : values()) {
+                if (ventana.nombre.equalsIgnoreCase(nombre)) {
+                    return ventana;
+                }
+            }
+            throw new IllegalArgumentException("La ventana debe ser 15m, 1h o 24h");
+        }
+    }
+
+    private final int capacidadTop;
+    // Índices 1..3 por tipo de reporte; el índice 0 no se usa
+    private final Cubeta[][] porMinuto = new Cubeta[TIPOS + 1][MINUTOS];
+    private final Cubeta[][] porHora = new Cubeta[TIPOS + 1][HORAS];
+
+    /**
+     * @param capacidadTop Rutas candidatas guardadas por cubeta; limita cuántas rutas se pueden pedir
+     */
+    public TendenciasRutas(int capacidadTop) {
+        this.capacidadTop = capacidadTop;
+        for (int tipo = 1; tipo <= TIPOS; tipo++) {
+            for (int i = 0; i < MINUTOS; i++) {
+                porMinuto[tipo][i] = new Cubeta(capacidadTop);
+            }
+            for (int i = 0; i < HORAS; i++) {
+                porHora[tipo][i] = new Cubeta(capacidadTop);
+            }
+        }
+    }
+
+    /**
+     * Carga los reportes del último día para no empezar con las ventanas vacías
+     * Debe llamarse al iniciar, antes de que la aplicación reciba escrituras
+     * @param reporteRepository Repositorio del que se leen los reportes
+     * @throws SQLException Error en la consulta
+     * @throws IOException Error al procesar un reporte
+     */
+    public void cargar(ReporteRepository reporteRepository) throws SQLException, IOException {
+        LocalDateTime desde = LocalDateTime.now().minusHours(HORAS);
+        reporteRepository.streamDesde(desde, this::onCreado);
+    }
+
+    /**
+     * @return Número máximo de rutas que se pueden pedir
+     */
+    public int getCapacidadTop() {
+        return capacidadTop;
+    }
+
+    @Override
+    public synchronized void onCreado(Reporte reporte) {
+        int tipo = reporte.getIdTipoReporte();
+        if (tipo < 1 || tipo > TIPOS || reporte.getFechaReporte() == null) {
+            return;
+        }
+        long segundos = reporte.getFechaReporte().toEpochSecond(ZoneOffset.UTC);
+        registrar(porMinuto[tipo], segundos / 60, reporte.getIdRuta());
+        registrar(porHora[tipo], segundos / 3600, reporte.getIdRuta());
+    }
+
+    /**
+     * Obtiene las rutas con más reportes de un tipo en una ventana de tiempo
+     * @param idTipoReporte Tipo de reporte (1=Incidencia, 2=Sugerencia, 3=Queja)
+     * @param ventana Ventana de tiempo
+     * @param limite Número máximo de rutas
+     * @return Rutas ordenadas de mayor a menor número estimado de reportes
+     */
+    public synchronized List<TendenciaRuta> top(int idTipoReporte, Ventana ventana, int limite) {
+        long segundos = LocalDateTime.now().toEpochSecond(ZoneOffset.UTC);
+        long actual = ventana.porHora ? segundos / 3600 : segundos / 60;
+        Cubeta[] cubetas = ventana.porHora ? porHora[idTipoReporte] : porMinuto[idTipoReporte];
+
+        List<Cubeta> enVentana = new ArrayList<>();
+        Set<Integer> candidatas = new HashSet<>();
+        for (Cubeta cubeta : cubetas) {
+            if (cubeta.periodo > actual - ventana.cubetas && cubeta.periodo <= actual) {
+                enVentana.add(cubeta);
+                for (int idRuta : cubeta.top.claves()) {
+                    candidatas.add(idRuta);
+                }
+            }
+        }
+
+        List<TendenciaRuta> tendencias = new ArrayList<>(candidatas.size());
+        for (int idRuta : candidatas) {
+            long reportes = 0;
+            for (Cubeta cubeta : enVentana) {
+                reportes += cubeta.sketch.estimate(idRuta);
+            }
+            tendencias.add(new TendenciaRuta(idRuta, reportes));
+        }
+        tendencias.sort((a, b) -> Long.compare(b.getReportes(), a.getReportes()));
+        return tendencias.size() > limite ? new ArrayList<>(tendencias.subList(0, limite)) : tendencias;
+    }
+
+    /**
+     * Suma el reporte a la cubeta de su periodo, reciclándola si contenía un periodo anterior
+     */
+    private void registrar(Cubeta[] cubetas, long periodo, int idRuta) {
+        Cubeta cubeta = cubetas[(int) Math.floorMod(periodo, (long) cubetas.length)];
+        if (cubeta.periodo > periodo) {
+            // El periodo ya salió de la ventana
+            return;
+        }
+        if (cubeta.periodo < periodo) {
+            cubeta.periodo = periodo;
+            cubeta.sketch.clear();
+            cubeta.top.clear();
+        }
+        cubeta.sketch.add(idRuta, 1);
+        cubeta.top.add(idRuta);
+    }
+
+    /**
+     * Conteos de un tipo de reporte durante un minuto o una hora
+     */
+    private static class Cubeta {
+        private long periodo = -1;
+        private final CountMinSketch sketch = new CountMinSketch(ANCHO_SKETCH, PROFUNDIDAD_SKETCH);
+        private final SpaceSaving top;
+
+        Cubeta(int capacidadTop) {
+            this.top = new SpaceSaving(capacidadTop);
+        }
+    }
+}
\ No newline at end of file
@@ -1,21 +1,74 @@
 package com.wheely.service;
 
+import com.wheely.config.AppConfig;
+import com.wheely.config.DatabaseConfig;
 import com.wheely.model.Usuario;
 import com.wheely.repository.UsuarioRepository;
 import com.wheely.util.PasswordUtil;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Servicio para la lógica de negocio de usuarios
  * Contiene validaciones y manejo de contraseñas
+ * Las operaciones que usan BCrypt son asíncronas: las validaciones y lecturas se hacen
+ * en el hilo de la petición, el hashing se ejecuta en el pool dedicado de PasswordUtil y la
+ * escritura posterior en un pool propio para la base de datos, de modo que una base de datos
+ * lenta no ocupa los hilos de BCrypt
  */
 public class UsuarioService {
     private final UsuarioRepository usuarioRepository;
 
+    // Hilos para las consultas que siguen a BCrypt, con una cola acotada: igual que el pool de
+    // BCrypt, cuando la cola está llena la tarea se rechaza (RejectedExecutionException) y el
+    // controlador responde 503 en lugar de acumular escrituras. Cada tarea limpia al terminar la ventana de lectura que sus escrituras abren en el hilo,
+    // para que no pase a la siguiente tarea del pool: la ventana del cliente la registra el
+    // controlador en su Context
+    private final Executor dbExecutor;
+
     public UsuarioService(UsuarioRepository usuarioRepository) {
         this.usuarioRepository = usuarioRepository;
+        AtomicInteger contador = new AtomicInteger();
+        int threads = AppConfig.getInt("USUARIO_DB_THREADS", AppConfig.getInt("DB_POOL_SIZE", 20));
+        ThreadPoolExecutor hilos = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(AppConfig.getInt("USUARIO_DB_QUEUE_SIZE", 64)),
+                r -> {
+                    Thread thread = new Thread(r, "usuario-db-" + contador.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.dbExecutor = tarea -> hilos.execute(() -> {
+            try {
+                tarea.run();
+            } finally {
+                DatabaseConfig.terminarPeticion();
+            }
+        });
+    }
+
+    /**
+     * Obtiene la versión actual de los datos de usuarios para construir ETags
+     * @return Versión que cambia con cada escritura de usuarios
+     */
+    public long getVersion() {
+        return usuarioRepository.getVersion();
+    }
+
+    /**
+     * Indica si la versión identifica los datos que devuelven las lecturas
+     * @return false mientras una réplica podría no tener la última escritura de usuarios
+     */
+    public boolean isVersionConfiable() {
+        return !usuarioRepository.isReplicaPosiblementeAtrasada();
     }
 
     /**
@@ -47,111 +100,125 @@ public class UsuarioService {
 
     /**
      * Crea un nuevo usuario con contraseña hasheada
+     * La unicidad del email se verifica en el mismo INSERT, así que la operación es una sola consulta
      * @param usuario Usuario a crear
-     * @return ID del usuario creado
+     * @return Futuro con el ID del usuario creado
      * @throws SQLException Error en la base de datos
-     * @throws IllegalArgumentException Error de validación
+     * @throws IllegalArgumentException Error de validación (el futuro falla igual si el email ya está registrado)
+     * @throws java.util.concurrent.RejectedExecutionException Si el pool de BCrypt está saturado
      */
-    public int createUsuario(Usuario usuario) throws SQLException {
+    public CompletableFuture<Integer> createUsuario(Usuario usuario) throws SQLException {
         // Validar datos del usuario
         validateUsuario(usuario);
 
-        // Verificar si el email ya existe
-        if (usuarioRepository.emailExists(usuario.getEmail())) {
-            throw new IllegalArgumentException("El email ya está registrado");
-        }
-
         // Validar contraseña
         if (!PasswordUtil.isValidPassword(usuario.getPassword())) {
             throw new IllegalArgumentException("La contraseña debe tener al menos 6 caracteres");
         }
 
         // Hashear la contraseña antes de guardar
-        String hashedPassword = PasswordUtil.hashPassword(usuario.getPassword());
-        usuario.setPassword(hashedPassword);
-
-        return usuarioRepository.save(usuario);
+        return PasswordUtil.hashPasswordAsync(usuario.getPassword()).thenApplyAsync(hashedPassword -> {
+            usuario.setPassword(hashedPassword);
+            int idCreado;
+            try {
+                idCreado = usuarioRepository.save(usuario);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+            if (idCreado == 0) {
+                throw new IllegalArgumentException("El email ya está registrado");
+            }
+            return idCreado;
+        }, dbExecutor);
     }
 
     /**
      * Actualiza un usuario existente
+     * Existencia y unicidad del email se verifican en el mismo UPDATE; la respuesta se arma con
+     * los datos enviados, sin volver a leer el usuario. Solo si no se actualizó nada se verifica
+     * si el usuario existe para elegir el mensaje de error
      * @param usuario Usuario con datos actualizados
-     * @return true si se actualizó correctamente
+     * @return Futuro con el usuario actualizado sin contraseña
      * @throws SQLException Error en la base de datos
-     * @throws IllegalArgumentException Error de validación
+     * @throws IllegalArgumentException Error de validación (el futuro falla igual si el usuario no existe
+     *                                  o el email es de otro usuario)
+     * @throws java.util.concurrent.RejectedExecutionException Si el pool de BCrypt está saturado
      */
-    public boolean updateUsuario(Usuario usuario) throws SQLException {
-        // Validar que el usuario existe
-        Usuario usuarioExistente = usuarioRepository.findById(usuario.getIdUser());
-        if (usuarioExistente == null) {
-            throw new IllegalArgumentException("Usuario no encontrado");
-        }
-
+    public CompletableFuture<Usuario> updateUsuario(Usuario usuario) throws SQLException {
         // Validar datos del usuario
         validateUsuario(usuario);
 
-        // Verificar si el email ya existe en otro usuario
-        Usuario usuarioConEmail = usuarioRepository.findByEmail(usuario.getEmail());
-        if (usuarioConEmail != null && usuarioConEmail.getIdUser() != usuario.getIdUser()) {
-            throw new IllegalArgumentException("El email ya está registrado en otro usuario");
-        }
-
-        // Si se proporciona una nueva contraseña, validar y hashear
+        // Si se proporciona una nueva contraseña, validar y hashear; si no, el UPDATE conserva la actual
+        CompletableFuture<String> password;
         if (usuario.getPassword() != null && !usuario.getPassword().trim().isEmpty()) {
             if (!PasswordUtil.isValidPassword(usuario.getPassword())) {
                 throw new IllegalArgumentException("La contraseña debe tener al menos 6 caracteres");
             }
-            String hashedPassword = PasswordUtil.hashPassword(usuario.getPassword());
-            usuario.setPassword(hashedPassword);
+            password = PasswordUtil.hashPasswordAsync(usuario.getPassword());
         } else {
-            // Mantener la contraseña existente
-            usuario.setPassword(usuarioExistente.getPassword());
+            password = CompletableFuture.completedFuture(null);
         }
 
-        return usuarioRepository.update(usuario);
+        return password.thenApplyAsync(hashedPassword -> {
+            usuario.setPassword(hashedPassword);
+            try {
+                if (!usuarioRepository.update(usuario)) {
+                    if (!usuarioRepository.existsById(usuario.getIdUser())) {
+                        throw new IllegalArgumentException("Usuario no encontrado");
+                    }
+                    throw new IllegalArgumentException("El email ya está registrado en otro usuario");
+                }
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+            // Retornar el usuario actualizado sin contraseña
+            usuario.setPassword("");
+            return usuario;
+        }, dbExecutor);
     }
 
     /**
      * Elimina un usuario por su ID
+     * La existencia se conoce por las filas afectadas del DELETE, sin una lectura previa
      * @param idUser ID del usuario a eliminar
      * @return true si se eliminó correctamente
      * @throws SQLException Error en la base de datos
+     * @throws IllegalArgumentException Si el usuario no existe
      */
     public boolean deleteUsuario(int idUser) throws SQLException {
-        // Verificar que el usuario existe
-        Usuario usuario = usuarioRepository.findById(idUser);
-        if (usuario == null) {
+        if (!usuarioRepository.delete(idUser)) {
             throw new IllegalArgumentException("Usuario no encontrado");
         }
-
-        return usuarioRepository.delete(idUser);
+        return true;
     }
 
     /**
      * Autentica un usuario con email y contraseña
      * @param email Email del usuario
      * @param password Contraseña en texto plano
-     * @return Usuario autenticado sin contraseña, o null si las credenciales son incorrectas
+     * @return Futuro con el usuario autenticado sin contraseña, o null si las credenciales son incorrectas
      * @throws SQLException Error en la base de datos
+     * @throws java.util.concurrent.RejectedExecutionException Si el pool de BCrypt está saturado
      */
-    public Usuario authenticateUsuario(String email, String password) throws SQLException {
+    public CompletableFuture<Usuario> authenticateUsuario(String email, String password) throws SQLException {
         if (email == null || email.trim().isEmpty() || password == null) {
-            return null;
+            return CompletableFuture.completedFuture(null);
         }
 
         Usuario usuario = usuarioRepository.findByEmail(email.trim());
         if (usuario == null) {
-            return null;
+            return CompletableFuture.completedFuture(null);
         }
 
         // Verificar contraseña
-        if (PasswordUtil.verifyPassword(password, usuario.getPassword())) {
-            // Limpiar contraseña antes de retornar
-            usuario.setPassword("");
-            return usuario;
-        }
-
-        return null;
+        return PasswordUtil.verifyPasswordAsync(password, usuario.getPassword()).thenApply(valida -> {
+            if (valida) {
+                // Limpiar contraseña antes de retornar
+                usuario.setPassword("");
+                return usuario;
+            }
+            return null;
+        });
     }
 
     /**
@@ -159,31 +226,38 @@ public class UsuarioService {
      * @param idUser ID del usuario
      * @param currentPassword Contraseña actual
      * @param newPassword Nueva contraseña
-     * @return true si se cambió correctamente
+     * @return Futuro con true si se cambió correctamente
      * @throws SQLException Error en la base de datos
      * @throws IllegalArgumentException Error de validación
+     * @throws java.util.concurrent.RejectedExecutionException Si el pool de BCrypt está saturado
      */
-    public boolean changePassword(int idUser, String currentPassword, String newPassword) throws SQLException {
+    public CompletableFuture<Boolean> changePassword(int idUser, String currentPassword, String newPassword) throws SQLException {
         Usuario usuario = usuarioRepository.findById(idUser);
         if (usuario == null) {
             throw new IllegalArgumentException("Usuario no encontrado");
         }
 
-        // Verificar contraseña actual
-        if (!PasswordUtil.verifyPassword(currentPassword, usuario.getPassword())) {
-            throw new IllegalArgumentException("Contraseña actual incorrecta");
-        }
-
         // Validar nueva contraseña
         if (!PasswordUtil.isValidPassword(newPassword)) {
             throw new IllegalArgumentException("La nueva contraseña debe tener al menos 6 caracteres");
         }
 
-        // Hashear y actualizar nueva contraseña
-        String hashedPassword = PasswordUtil.hashPassword(newPassword);
-        usuario.setPassword(hashedPassword);
-
-        return usuarioRepository.update(usuario);
+        // Verificar contraseña actual y luego hashear la nueva
+        return PasswordUtil.verifyPasswordAsync(currentPassword, usuario.getPassword())
+                .thenCompose(valida -> {
+                    if (!valida) {
+                        throw new IllegalArgumentException("Contraseña actual incorrecta");
+                    }
+                    return PasswordUtil.hashPasswordAsync(newPassword);
+                })
+                .thenApplyAsync(hashedPassword -> {
+                    usuario.setPassword(hashedPassword);
+                    try {
+                        return usuarioRepository.update(usuario);
+                    } catch (SQLException e) {
+                        throw new CompletionException(e);
+                    }
+                }, dbExecutor);
     }
 
     /**
@@ -222,10 +296,11 @@ public class UsuarioService {
 
     /**
      * Valida el formato básico de un email
+     * Estático y visible en el paquete para medirlo desde los benchmarks sin crear el servicio
      * @param email Email a validar
      * @return true si el formato es válido
      */
-    private boolean isValidEmail(String email) {
+    static boolean isValidEmail(String email) {
         if (email == null || email.trim().isEmpty()) {
             return false;
         }
@@ -0,0 +1,429 @@
+package com.wheely.sse;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.wheely.metrics.MetricsCollector;
+import com.wheely.metrics.PrometheusWriter;
+import com.wheely.model.Reporte;
+import com.wheely.service.ReporteListener;
+import com.wheely.util.JsonUtil;
+import io.javalin.http.sse.SseClient;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribuye los cambios de reportes a los clientes suscritos por Server-Sent Events
+ *
+ * Las escrituras solo encolan el evento (serializado y con formato SSE una sola vez) en el
+ * hilo de difusión, que lo copia a la cola acotada de cada suscriptor interesado. Un grupo
+ * pequeño de hilos vacía esas colas con escrituras no bloqueantes (WriteListener de Servlet):
+ * si la conexión de un cliente no admite más datos, el hilo pasa al siguiente y la cola se
+ * reanuda cuando Jetty avisa que se puede escribir. Así un cliente lento nunca retiene un
+ * hilo de envío, no retrasa una escritura ni a los demás clientes: si su cola se llena se le
+ * desconecta, y al reconectar con Last-Event-ID recibe lo que se perdió desde el historial reciente.
+ *
+ * Las conexiones inactivas no ocupan hilos (la petición queda en modo asíncrono); solo
+ * cuestan su cola vacía y un latido periódico que evita que proxies y clientes las cierren
+ */
+public class ReporteHub implements ReporteListener, MetricsCollector {
+    public static final String EVENTO_CREADO = "creado";
+    public static final String EVENTO_ACTUALIZADO = "actualizado";
+    public static final String EVENTO_ELIMINADO = "eliminado";
+    // Se envía al reconectar cuando los eventos perdidos ya no están en el historial:
+    // el cliente debe volver a consultar los reportes por REST
+    public static final String EVENTO_REINICIO = "reinicio";
+
+    // Identificador del arranque: los IDs de evento de una ejecución anterior no son válidos
+    private static final String ARRANQUE = Long.toString(System.currentTimeMillis(), 36);
+    private static final Evento LATIDO = new Evento(0, null, null, null, null);
+    private static final Evento REINICIO = new Evento(0, null, EVENTO_REINICIO, "{}", null);
+
+    private final int capacidadCola;
+    private final int capacidadHistorial;
+    private final int maxSuscriptores;
+
+    // Estado protegido por 'this': suscripciones e historial cambian juntos para que una
+    // reconexión reciba el historial y los eventos nuevos sin huecos ni duplicados
+    private final Set<Suscriptor> todasLasRutas = new HashSet<>();
+    private final Map<Integer, Set<Suscriptor>> porRuta = new HashMap<>();
+    private final ArrayDeque<Evento> historial = new ArrayDeque<>();
+    private long secuencia = 0;
+
+    private final AtomicInteger suscriptores = new AtomicInteger();
+    private final LongAdder eventosPublicados = new LongAdder();
+    private final LongAdder desconexionesPorLentitud = new LongAdder();
+
+    private final ScheduledExecutorService difusion;
+    private final ExecutorService envio;
+
+    /**
+     * @param capacidadCola Eventos pendientes por suscriptor antes de desconectarlo
+     * @param capacidadHistorial Eventos recientes guardados para reanudar con Last-Event-ID
+     * @param maxSuscriptores Número máximo de conexiones simultáneas
+     * @param hilosEnvio Hilos que escriben en las conexiones
+     * @param latidoSegundos Segundos entre latidos en conexiones sin actividad
+     */
+    public ReporteHub(int capacidadCola, int capacidadHistorial, int maxSuscriptores, int hilosEnvio,
+                      long latidoSegundos) {
+        this.capacidadCola = capacidadCola;
+        this.capacidadHistorial = capacidadHistorial;
+        this.maxSuscriptores = maxSuscriptores;
+        this.difusion = Executors.newSingleThreadScheduledExecutor(r -> hilo(r, "sse-difusion"));
+        this.envio = Executors.newFixedThreadPool(hilosEnvio, r -> hilo(r, "sse-envio"));
+        difusion.scheduleAtFixedRate(this::latir, latidoSegundos, latidoSegundos, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Reserva el lugar de una conexión nueva
+     * Si se reserva, debe seguir una llamada a suscribir o a liberarLugar
+     * @return true si había lugar, false si se alcanzó el máximo de conexiones
+     */
+    public boolean reservarLugar() {
+        while (true) {
+            int actuales = suscriptores.get();
+            if (actuales >= maxSuscriptores) {
+                return false;
+            }
+            if (suscriptores.compareAndSet(actuales, actuales + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Libera un lugar reservado que no llegó a suscribirse
+     */
+    public void liberarLugar() {
+        suscriptores.decrementAndGet();
+    }
+
+    /**
+     * Registra una conexión SSE que ya tiene su lugar reservado (reservarLugar)
+     * Debe llamarse desde el manejador de Javalin; la conexión queda abierta hasta que el
+     * cliente se desconecta o el hub la cierra
+     * @param cliente Conexión SSE
+     * @param idRuta Ruta a la que se suscribe el cliente, o null para todas
+     * @param ultimoEvento Valor de Last-Event-ID enviado por el cliente, o null
+     */
+    public void suscribir(SseClient cliente, Integer idRuta, String ultimoEvento) {
+        Suscriptor suscriptor;
+        try {
+            suscriptor = new Suscriptor(cliente, idRuta);
+        } catch (IOException | RuntimeException e) {
+            liberarLugar();
+            cliente.close();
+            return;
+        }
+        cliente.keepAlive();
+        cliente.onClose(() -> quitar(suscriptor));
+
+        synchronized (this) {
+            (idRuta == null ? todasLasRutas : porRuta.computeIfAbsent(idRuta, id -> new HashSet<>())).add(suscriptor);
+            if (ultimoEvento != null) {
+                reanudar(suscriptor, ultimoEvento);
+            }
+        }
+        suscriptor.programar();
+    }
+
+    @Override
+    public void onCreado(Reporte reporte) {
+        publicar(EVENTO_CREADO, reporte, reporte.getIdRuta(), reporte.getIdRuta());
+    }
+
+    @Override
+    public void onActualizado(Reporte anterior, Reporte actual) {
+        // Si el reporte cambió de ruta se avisa a los suscriptores de ambas rutas
+        publicar(EVENTO_ACTUALIZADO, actual, anterior.getIdRuta(), actual.getIdRuta());
+    }
+
+    @Override
+    public void onEliminado(Reporte reporte) {
+        publicar(EVENTO_ELIMINADO, reporte, reporte.getIdRuta(), reporte.getIdRuta());
+    }
+
+    @Override
+    public void collect(PrometheusWriter out) {
+        out.declare("wheely_sse_subscribers", "gauge", "Conexiones SSE abiertas");
+        out.sample("wheely_sse_subscribers", suscriptores.get());
+        out.declare("wheely_sse_events_total", "counter", "Eventos de reportes publicados");
+        out.sample("wheely_sse_events_total", eventosPublicados.sum());
+        out.declare("wheely_sse_slow_disconnects_total", "counter", "Suscriptores desconectados por cola llena");
+        out.sample("wheely_sse_slow_disconnects_total", desconexionesPorLentitud.sum());
+    }
+
+    /**
+     * Serializa el reporte en el hilo de la escritura y delega la distribución
+     */
+    private void publicar(String tipo, Reporte reporte, int rutaAnterior, int rutaActual) {
+        String datos;
+        try {
+            datos = JsonUtil.getMapper().writeValueAsString(reporte);
+        } catch (JsonProcessingException e) {
+            System.err.println("No se pudo serializar el evento de reporte: " + e.getMessage());
+            return;
+        }
+        difusion.execute(() -> difundir(tipo, datos, rutaAnterior, rutaActual));
+    }
+
+    /**
+     * Asigna el ID al evento, lo guarda en el historial y lo encola en cada suscriptor interesado
+     * Se ejecuta siempre en el hilo de difusión
+     */
+    private void difundir(String tipo, String datos, int rutaAnterior, int rutaActual) {
+        List<Suscriptor> lentos = new ArrayList<>();
+        synchronized (this) {
+            long id = ++secuencia;
+            Evento evento = new Evento(id, ARRANQUE + "-" + id, tipo, datos, new int[]{rutaAnterior, rutaActual});
+            historial.addLast(evento);
+            if (historial.size() > capacidadHistorial) {
+                historial.removeFirst();
+            }
+
+            encolar(todasLasRutas, evento, lentos);
+            encolar(porRuta.get(rutaAnterior), evento, lentos);
+            if (rutaActual != rutaAnterior) {
+                encolar(porRuta.get(rutaActual), evento, lentos);
+            }
+        }
+        eventosPublicados.increment();
+
+        for (Suscriptor suscriptor : lentos) {
+            desconexionesPorLentitud.increment();
+            suscriptor.cerrar();
+        }
+    }
+
+    private void encolar(Set<Suscriptor> destino, Evento evento, List<Suscriptor> lentos) {
+        if (destino == null) {
+            return;
+        }
+        for (Suscriptor suscriptor : destino) {
+            if (suscriptor.cola.offer(evento)) {
+                suscriptor.programar();
+            } else {
+                lentos.add(suscriptor);
+            }
+        }
+    }
+
+    /**
+     * Encola los eventos posteriores a Last-Event-ID (requiere el bloqueo del hub)
+     * Si el ID es de otro arranque o ya salió del historial se envía un evento de reinicio
+     */
+    private void reanudar(Suscriptor suscriptor, String ultimoEvento) {
+        long ultimo = -1;
+        String prefijo = ARRANQUE + "-";
+        if (ultimoEvento.startsWith(prefijo)) {
+            try {
+                ultimo = Long.parseLong(ultimoEvento.substring(prefijo.length()));
+            } catch (NumberFormatException e) {
+                ultimo = -1;
+            }
+        }
+
+        Evento primero = historial.peekFirst();
+        long primeroDisponible = primero != null ? primero.secuencia : secuencia + 1;
+        if (ultimo < 0 || ultimo > secuencia || ultimo + 1 < primeroDisponible) {
+            suscriptor.cola.offer(REINICIO);
+            return;
+        }
+
+        List<Evento> pendientes = new ArrayList<>();
+        for (Evento evento : historial) {
+            if (evento.secuencia > ultimo && suscriptor.interesa(evento)) {
+                pendientes.add(evento);
+            }
+        }
+        if (pendientes.size() > capacidadCola) {
+            suscriptor.cola.offer(REINICIO);
+            return;
+        }
+        suscriptor.cola.addAll(pendientes);
+    }
+
+    /**
+     * Envía un comentario a los suscriptores sin eventos pendientes
+     */
+    private void latir() {
+        List<Suscriptor> activos;
+        synchronized (this) {
+            activos = new ArrayList<>(todasLasRutas);
+            for (Set<Suscriptor> suscritos : porRuta.values()) {
+                activos.addAll(suscritos);
+            }
+        }
+        for (Suscriptor suscriptor : activos) {
+            if (suscriptor.cola.isEmpty() && suscriptor.cola.offer(LATIDO)) {
+                suscriptor.programar();
+            }
+        }
+    }
+
+    private void quitar(Suscriptor suscriptor) {
+        if (!suscriptor.cerrado.compareAndSet(false, true)) {
+            return;
+        }
+        synchronized (this) {
+            if (suscriptor.idRuta == null) {
+                todasLasRutas.remove(suscriptor);
+            } else {
+                Set<Suscriptor> suscritos = porRuta.get(suscriptor.idRuta);
+                if (suscritos != null) {
+                    suscritos.remove(suscriptor);
+                    if (suscritos.isEmpty()) {
+                        porRuta.remove(suscriptor.idRuta);
+                    }
+                }
+            }
+        }
+        suscriptores.decrementAndGet();
+    }
+
+    private static Thread hilo(Runnable r, String nombre) {
+        Thread thread = new Thread(r, nombre);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Evento ya serializado, compartido por todas las colas
+     * Guarda los bytes con el formato de Server-Sent Events listos para escribir en cada conexión
+     */
+    private static class Evento {
+        private final long secuencia;
+        private final int[] rutas;
+        private final byte[] bytes;
+
+        /**
+         * @param tipo Nombre del evento, o null para un comentario de latido
+         */
+        Evento(long secuencia, String id, String tipo, String datos, int[] rutas) {
+            this.secuencia = secuencia;
+            this.rutas = rutas;
+            this.bytes = formatear(id, tipo, datos).getBytes(StandardCharsets.UTF_8);
+        }
+
+        private static String formatear(String id, String tipo, String datos) {
+            if (tipo == null) {
+                return ": latido\n\n";
+            }
+            StringBuilder texto = new StringBuilder(datos.length() + 64);
+            if (id != null) {
+                texto.append("id: ").append(id).append('\n');
+            }
+            texto.append("event: ").append(tipo).append('\n');
+            for (String linea : datos.split("\n", -1)) {
+                texto.append("data: ").append(linea).append('\n');
+            }
+            return texto.append('\n').toString();
+        }
+    }
+
+    /**
+     * Conexión de un cliente con su cola acotada de eventos pendientes
+     * La cola la vacía como máximo un hilo de envío a la vez, sin bloquearse nunca en la escritura
+     */
+    private class Suscriptor {
+        private final SseClient cliente;
+        private final Integer idRuta;
+        private final ServletOutputStream salida;
+        private final Queue<Evento> cola = new ArrayBlockingQueue<>(capacidadCola);
+        private final AtomicBoolean programado = new AtomicBoolean();
+        private final AtomicBoolean cerrado = new AtomicBoolean();
+        // Hay bytes escritos que todavía no se enviaron con flush (solo lo usa el hilo que vacía la cola)
+        private volatile boolean sinEnviar = false;
+
+        /**
+         * Pasa la salida de la conexión a modo no bloqueante
+         * @throws IOException Error al obtener la salida (la conexión ya se cerró)
+         */
+        Suscriptor(SseClient cliente, Integer idRuta) throws IOException {
+            this.cliente = cliente;
+            this.idRuta = idRuta;
+            this.salida = cliente.ctx().res().getOutputStream();
+            salida.setWriteListener(new WriteListener() {
+                @Override
+                public void onWritePossible() {
+                    programar();
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    cerrar();
+                }
+            });
+        }
+
+        boolean interesa(Evento evento) {
+            return idRuta == null || evento.rutas[0] == idRuta || evento.rutas[1] == idRuta;
+        }
+
+        /**
+         * Programa el vaciado de la cola si no hay uno en curso
+         */
+        void programar() {
+            if (!cerrado.get() && (!cola.isEmpty() || sinEnviar) && programado.compareAndSet(false, true)) {
+                envio.execute(this::vaciar);
+            }
+        }
+
+        /**
+         * Escribe mientras la conexión admita datos sin bloquear
+         * Cuando isReady() devuelve false, Jetty llama a onWritePossible al vaciarse el búfer
+         * de la conexión y el envío continúa desde ahí
+         */
+        private void vaciar() {
+            boolean lista = false;
+            try {
+                Evento evento;
+                while (!cerrado.get() && salida.isReady() && (evento = cola.poll()) != null) {
+                    salida.write(evento.bytes);
+                    sinEnviar = true;
+                }
+                if (sinEnviar && !cerrado.get() && salida.isReady()) {
+                    sinEnviar = false;
+                    salida.flush();
+                }
+                lista = !cerrado.get() && salida.isReady();
+            } catch (IOException | RuntimeException e) {
+                cerrar();
+            } finally {
+                programado.set(false);
+            }
+            // Un evento pudo llegar entre el último poll y liberar la marca; si la conexión no
+            // estaba lista, el aviso de onWritePossible vuelve a programar el envío
+            if (lista) {
+                programar();
+            }
+        }
+
+        void cerrar() {
+            quitar(this);
+            cola.clear();
+            try {
+                cliente.close();
+            } catch (RuntimeException e) {
+                // La conexión ya estaba cerrada
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.wheely.util;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 /**
  * Clase para estandarizar las respuestas de la API
  * Proporciona un formato consistente para respuestas exitosas y de error
@@ -9,6 +11,10 @@ public class ApiResponse {
     private String message;
     private Object data;
 
+    // Cursor de la siguiente página (solo se incluye en respuestas paginadas)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String next;
+
     // Constructor vacío
     public ApiResponse() {}
 
@@ -38,6 +44,12 @@ public class ApiResponse {
         return new ApiResponse(true, message, data);
     }
 
+    public static ApiResponse success(String message, Object data, String next) {
+        ApiResponse response = new ApiResponse(true, message, data);
+        response.next = next;
+        return response;
+    }
+
     public static ApiResponse success(String message) {
         return new ApiResponse(true, message, null);
     }
@@ -75,12 +87,21 @@ public class ApiResponse {
         this.data = data;
     }
 
+    public String getNext() {
+        return next;
+    }
+
+    public void setNext(String next) {
+        this.next = next;
+    }
+
     @Override
     public String toString() {
         return "ApiResponse{" +
                 "success=" + success +
                 ", message='" + message + '\'' +
                 ", data=" + data +
+                ", next='" + next + '\'' +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,245 @@
+package com.wheely.util;
+
+import com.wheely.metrics.MetricsCollector;
+import com.wheely.metrics.PrometheusWriter;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché con stale-while-revalidate para resultados de consultas costosas
+ *
+ * Cada entrada guarda el valor, la versión de los datos con la que se calculó y cuándo:
+ * - Fresca (menos de ttlFresco y de la versión actual): se devuelve tal cual
+ * - Obsoleta (menos de ttlObsoleto, o de una versión anterior): se devuelve de inmediato y se
+ *   recalcula en segundo plano; solo hay un recálculo en curso por clave
+ * - Expirada o inexistente: se calcula en el hilo de la petición
+ *
+ * Si el cálculo falla con SQLException (por ejemplo, MySQL no responde) se devuelve el último
+ * valor bueno aunque haya expirado, marcado como obsoleto. Solo se propaga el error si nunca
+ * hubo un valor para la clave
+ *
+ * Los valores se comparten entre peticiones, por lo que no deben modificarse
+ */
+public class CacheSwr<K, V> implements MetricsCollector {
+    private final String nombre;
+    private final long ttlFrescoNanos;
+    private final long ttlObsoletoNanos;
+    private final Map<K, Entrada<V>> entradas = new ConcurrentHashMap<>();
+    private final Set<K> refrescando = ConcurrentHashMap.newKeySet();
+    private final ExecutorService refrescos;
+
+    private final LongAdder frescas = new LongAdder();
+    private final LongAdder obsoletas = new LongAdder();
+    private final LongAdder calculadas = new LongAdder();
+    private final LongAdder respaldos = new LongAdder();
+    private final LongAdder fallosRefresco = new LongAdder();
+
+    /**
+     * @param nombre Nombre de la caché (etiqueta de las métricas y del hilo de recálculo)
+     * @param ttlFrescoMs Tiempo durante el que una entrada se devuelve sin recalcular
+     * @param ttlObsoletoMs Tiempo durante el que una entrada se devuelve mientras se recalcula en segundo plano
+     */
+    public CacheSwr(String nombre, long ttlFrescoMs, long ttlObsoletoMs) {
+        if (ttlFrescoMs < 0 || ttlObsoletoMs < ttlFrescoMs) {
+            throw new IllegalArgumentException("TTL no válidos para " + nombre + ": " + ttlFrescoMs + "/" + ttlObsoletoMs);
+        }
+        this.nombre = nombre;
+        this.ttlFrescoNanos = TimeUnit.MILLISECONDS.toNanos(ttlFrescoMs);
+        this.ttlObsoletoNanos = TimeUnit.MILLISECONDS.toNanos(ttlObsoletoMs);
+        this.refrescos = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "cache-swr-" + nombre);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Obtiene el valor de una clave según su vigencia
+     * @param clave Clave del valor
+     * @param version Versión actual de los datos (leerla antes de calcular)
+     * @param calculo Consulta que calcula el valor
+     * @return Valor con la versión con la que se calculó y si está obsoleto
+     * @throws SQLException Error del cálculo cuando no hay ningún valor anterior que devolver
+     */
+    public Resultado<V> obtener(K clave, long version, SingleFlight.Llamada<V> calculo) throws SQLException {
+        Entrada<V> entrada = entradas.get(clave);
+        if (entrada != null) {
+            long edad = System.nanoTime() - entrada.calculadaEn;
+            if (entrada.version == version && edad < ttlFrescoNanos) {
+                frescas.increment();
+                return entrada.resultado(false);
+            }
+            if (edad < ttlObsoletoNanos) {
+                obsoletas.increment();
+                refrescarEnSegundoPlano(clave, version, calculo);
+                return entrada.resultado(true);
+            }
+        }
+
+        try {
+            return recalcular(clave, version, calculo);
+        } catch (SQLException e) {
+            if (entrada == null) {
+                throw e;
+            }
+            respaldos.increment();
+            System.err.println("Error al recalcular la caché " + nombre + ", se devuelve el último valor: " + e.getMessage());
+            return entrada.respaldo();
+        }
+    }
+
+    /**
+     * Calcula el valor en el hilo actual sin consultar la caché y lo guarda
+     * Se usa cuando el llamador necesita datos actuales (por ejemplo, justo después de escribir)
+     * @param clave Clave del valor
+     * @param version Versión actual de los datos (leerla antes de calcular)
+     * @param calculo Consulta que calcula el valor
+     * @return Valor recién calculado
+     * @throws SQLException Error del cálculo
+     */
+    public Resultado<V> recalcular(K clave, long version, SingleFlight.Llamada<V> calculo) throws SQLException {
+        calculadas.increment();
+        Entrada<V> nueva = new Entrada<>(calculo.ejecutar(), version, System.nanoTime());
+        guardar(clave, nueva);
+        return nueva.resultado(false);
+    }
+
+    private void refrescarEnSegundoPlano(K clave, long version, SingleFlight.Llamada<V> calculo) {
+        if (!refrescando.add(clave)) {
+            return;
+        }
+        try {
+            refrescos.execute(() -> {
+                try {
+                    recalcular(clave, version, calculo);
+                } catch (Exception e) {
+                    fallosRefresco.increment();
+                    System.err.println("Error al recalcular la caché " + nombre + " en segundo plano: " + e.getMessage());
+                } finally {
+                    refrescando.remove(clave);
+                }
+            });
+        } catch (RuntimeException e) {
+            refrescando.remove(clave);
+            throw e;
+        }
+    }
+
+    /**
+     * Guarda la entrada salvo que ya haya una calculada después (un recálculo lento no
+     * reemplaza a uno más reciente)
+     */
+    private void guardar(K clave, Entrada<V> nueva) {
+        entradas.merge(clave, nueva, (actual, candidata) ->
+                candidata.version >= actual.version && candidata.calculadaEn - actual.calculadaEn >= 0 ? candidata : actual);
+    }
+
+    @Override
+    public void collect(PrometheusWriter out) {
+        out.declare("wheely_swr_requests_total", "counter",
+                "Lecturas de la caché stale-while-revalidate por resultado");
+        out.declare("wheely_swr_refresh_failures_total", "counter",
+                "Recálculos en segundo plano que fallaron");
+        out.declare("wheely_swr_entries", "gauge", "Entradas en la caché stale-while-revalidate");
+        out.sample("wheely_swr_requests_total", new String[]{"cache", nombre, "result", "fresh"}, frescas.sum());
+        out.sample("wheely_swr_requests_total", new String[]{"cache", nombre, "result", "stale"}, obsoletas.sum());
+        out.sample("wheely_swr_requests_total", new String[]{"cache", nombre, "result", "computed"}, calculadas.sum());
+        out.sample("wheely_swr_requests_total", new String[]{"cache", nombre, "result", "fallback"}, respaldos.sum());
+        out.sample("wheely_swr_refresh_failures_total", new String[]{"cache", nombre}, fallosRefresco.sum());
+        out.sample("wheely_swr_entries", new String[]{"cache", nombre}, entradas.size());
+    }
+
+    /**
+     * Valor devuelto por la caché
+     */
+    public static class Resultado<V> {
+        private final V valor;
+        private final long version;
+        private final boolean obsoleto;
+        private final boolean respaldo;
+        private final long edadMs;
+
+        private Resultado(V valor, long version, boolean obsoleto, boolean respaldo, long edadMs) {
+            this.valor = valor;
+            this.version = version;
+            this.obsoleto = obsoleto;
+            this.respaldo = respaldo;
+            this.edadMs = edadMs;
+        }
+
+        /**
+         * Crea un resultado actual que no proviene de la caché
+         * @param valor Valor recién obtenido
+         * @param version Versión de los datos leída antes de obtenerlo
+         */
+        public static <V> Resultado<V> actual(V valor, long version) {
+            return new Resultado<>(valor, version, false, false, 0);
+        }
+
+        public V getValor() {
+            return valor;
+        }
+
+        /**
+         * @return Versión de los datos con la que se calculó el valor (para el ETag)
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * @return true si el valor ya no es fresco (se está recalculando o la base de datos falló)
+         */
+        public boolean isObsoleto() {
+            return obsoleto;
+        }
+
+        /**
+         * @return true si el valor es obsoleto porque la base de datos falló al recalcularlo
+         */
+        public boolean isRespaldo() {
+            return respaldo;
+        }
+
+        /**
+         * @return Milisegundos desde que se calculó el valor
+         */
+        public long getEdadMs() {
+            return edadMs;
+        }
+    }
+
+    private static class Entrada<V> {
+        private final V valor;
+        private final long version;
+        private final long calculadaEn;
+
+        Entrada(V valor, long version, long calculadaEn) {
+            this.valor = valor;
+            this.version = version;
+            this.calculadaEn = calculadaEn;
+        }
+
+        Resultado<V> resultado(boolean obsoleto) {
+            return new Resultado<>(valor, version, obsoleto, false, edadMs());
+        }
+
+        /**
+         * Resultado devuelto en lugar de un error al recalcular
+         */
+        Resultado<V> respaldo() {
+            return new Resultado<>(valor, version, true, true, edadMs());
+        }
+
+        private long edadMs() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - calculadaEn);
+        }
+    }
+}
\ No newline at end of file
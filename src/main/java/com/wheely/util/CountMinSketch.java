@@ -0,0 +1,69 @@
+package com.wheely.util;
+
+import java.util.Arrays;
+
+/**
+ * Count-Min Sketch para contar frecuencias de claves enteras con memoria fija
+ * La estimación nunca es menor que el conteo real y lo excede como máximo en
+ * (total de eventos / ancho) con alta probabilidad, sin importar cuántas claves distintas haya.
+ * No es seguro entre hilos: quien lo usa debe sincronizar el acceso
+ */
+public class CountMinSketch {
+    private final int ancho;
+    private final int profundidad;
+    private final int[] tabla;
+
+    /**
+     * @param ancho Contadores por fila (a mayor ancho, menor error)
+     * @param profundidad Número de filas con funciones hash independientes (a mayor profundidad, mayor confianza)
+     */
+    public CountMinSketch(int ancho, int profundidad) {
+        this.ancho = ancho;
+        this.profundidad = profundidad;
+        this.tabla = new int[ancho * profundidad];
+    }
+
+    /**
+     * Suma una cantidad al conteo de una clave
+     * @param clave Clave a contar
+     * @param cantidad Cantidad a sumar
+     */
+    public void add(int clave, int cantidad) {
+        for (int fila = 0; fila < profundidad; fila++) {
+            tabla[fila * ancho + columna(clave, fila)] += cantidad;
+        }
+    }
+
+    /**
+     * Estima el conteo de una clave
+     * @param clave Clave a consultar
+     * @return Conteo estimado (mayor o igual al real)
+     */
+    public int estimate(int clave) {
+        int minimo = Integer.MAX_VALUE;
+        for (int fila = 0; fila < profundidad; fila++) {
+            minimo = Math.min(minimo, tabla[fila * ancho + columna(clave, fila)]);
+        }
+        return minimo;
+    }
+
+    /**
+     * Reinicia todos los contadores para reutilizar la estructura
+     */
+    public void clear() {
+        Arrays.fill(tabla, 0);
+    }
+
+    /**
+     * Columna de la clave en una fila: mezcla final de MurmurHash3 con una semilla distinta por fila
+     */
+    private int columna(int clave, int fila) {
+        int h = clave ^ (0x9e3779b9 * (fila + 1));
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return (h & Integer.MAX_VALUE) % ancho;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.wheely.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Utilidad para codificar y decodificar cursores de paginación
+ * El cursor es opaco para el cliente: codifica la posición (fecha_reporte, idReporte)
+ * del último elemento de la página en Base64 URL-safe
+ */
+public class CursorUtil {
+
+    private static final String SEPARADOR = "|";
+
+    /**
+     * Codifica la posición de un reporte como cursor opaco
+     * @param fecha Fecha del último reporte de la página
+     * @param id ID del último reporte de la página
+     * @return Cursor codificado
+     */
+    public static String encode(LocalDateTime fecha, int id) {
+        String raw = fecha.toString() + SEPARADOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica un cursor recibido del cliente
+     * @param token Cursor codificado
+     * @return Posición decodificada
+     * @throws IllegalArgumentException Si el cursor no es válido
+     */
+    public static Cursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separador = raw.lastIndexOf(SEPARADOR);
+            if (separador <= 0) {
+                throw new IllegalArgumentException("Cursor no válido");
+            }
+            LocalDateTime fecha = LocalDateTime.parse(raw.substring(0, separador));
+            int id = Integer.parseInt(raw.substring(separador + 1));
+            return new Cursor(fecha, id);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Cursor no válido");
+        }
+    }
+
+    /**
+     * Posición decodificada de un cursor
+     */
+    public static class Cursor {
+        private final LocalDateTime fecha;
+        private final int id;
+
+        public Cursor(LocalDateTime fecha, int id) {
+            this.fecha = fecha;
+            this.id = id;
+        }
+
+        public LocalDateTime getFecha() { return fecha; }
+        public int getId() { return id; }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,81 @@
+package com.wheely.util;
+
+import io.javalin.http.Context;
+import io.javalin.http.Header;
+import io.javalin.http.HttpStatus;
+
+/**
+ * Utilidad para ETags fuertes y peticiones GET condicionales
+ * Los ETags se derivan de contadores de versión que los repositorios incrementan en cada
+ * escritura, por lo que se pueden comparar antes de consultar la base de datos o serializar
+ */
+public class ETagUtil {
+
+    // Identificador del arranque: los contadores de versión reinician en 0 con cada proceso,
+    // así que un ETag de una ejecución anterior nunca coincide con uno de la actual
+    private static final String ARRANQUE = Long.toString(System.currentTimeMillis(), 36);
+
+    /**
+     * Construye un ETag fuerte
+     * @param recurso Nombre del recurso (por ejemplo "reportes")
+     * @param partes Versiones u otros valores de los que depende la representación
+     * @return ETag entre comillas, listo para la cabecera
+     */
+    public static String crear(String recurso, long... partes) {
+        StringBuilder etag = new StringBuilder(32).append('"').append(recurso).append('-').append(ARRANQUE);
+        for (long parte : partes) {
+            etag.append('-').append(Long.toString(parte, 36));
+        }
+        return etag.append('"').toString();
+    }
+
+    /**
+     * Si el cliente ya tiene la versión actual responde 304 sin cuerpo
+     * En caso contrario el controlador continúa y asigna el ETag solo a la respuesta 200
+     * @param ctx Contexto de la petición
+     * @param etag ETag de la representación actual, o null si la respuesta no debe llevar ETag
+     * @return true si se respondió 304 y el controlador no debe hacer nada más
+     */
+    public static boolean responderSiNoModificado(Context ctx, String etag) {
+        if (etag != null && coincide(ctx.header(Header.IF_NONE_MATCH), etag)) {
+            ctx.header(Header.ETAG, etag).status(HttpStatus.NOT_MODIFIED);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Asigna el ETag a una respuesta 200
+     * Sin ETag (por ejemplo, cuando la versión no identifica con certeza los datos) la respuesta
+     * se marca como no almacenable para que el cliente no la reutilice
+     * @param ctx Contexto de la petición
+     * @param etag ETag de la representación, o null
+     * @return El mismo contexto, para encadenar
+     */
+    public static Context asignar(Context ctx, String etag) {
+        if (etag == null) {
+            return ctx.header(Header.CACHE_CONTROL, "no-store");
+        }
+        return ctx.header(Header.ETAG, etag);
+    }
+
+    /**
+     * Compara la cabecera If-None-Match (puede traer varios ETags separados por comas)
+     * Según RFC 9110 la comparación para If-None-Match es débil: se ignora el prefijo W/
+     */
+    private static boolean coincide(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isEmpty()) {
+            return false;
+        }
+        for (String candidato : ifNoneMatch.split(",")) {
+            String valor = candidato.trim();
+            if (valor.startsWith("W/")) {
+                valor = valor.substring(2);
+            }
+            if (valor.equals("*") || valor.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,22 @@
+package com.wheely.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.json.JavalinJackson;
+
+/**
+ * Utilidad para compartir una única configuración de Jackson
+ * Javalin y las respuestas escritas manualmente (streaming) usan el mismo ObjectMapper,
+ * por lo que el formato JSON es idéntico en ambos casos
+ */
+public class JsonUtil {
+
+    private static final ObjectMapper MAPPER = JavalinJackson.defaultMapper();
+
+    /**
+     * Obtiene el ObjectMapper compartido de la aplicación
+     * @return ObjectMapper configurado
+     */
+    public static ObjectMapper getMapper() {
+        return MAPPER;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,63 @@
+package com.wheely.util;
+
+import com.wheely.config.DatabaseConfig;
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+
+/**
+ * Lectura de las propias escrituras cuando hay réplicas
+ *
+ * Una petición que escribe recibe una cookie con el fin de su ventana; mientras no expire,
+ * las lecturas de ese cliente se hacen en el primario aunque la réplica todavía no tenga el cambio
+ *
+ * Las escrituras hechas en el hilo de la petición se detectan con DatabaseConfig.registrarEscritura.
+ * Las que terminan en otro hilo (por ejemplo, después de BCrypt) no pueden dejar la ventana en el
+ * hilo de la petición: el controlador la registra en el Context con registrarEscritura(ctx)
+ */
+public class LecturaPropia {
+    // Cookie con el fin (epoch en milisegundos) de la ventana de lectura de las propias escrituras
+    private static final String COOKIE_ESCRITURA = "wheely_escritura";
+    private static final String ATRIBUTO_ESCRITURA = "wheely.escrituraHasta";
+
+    private LecturaPropia() {
+    }
+
+    /**
+     * Registra los filtros que leen la cookie al inicio de cada petición y la emiten al final
+     * @param app Aplicación Javalin
+     */
+    public static void install(Javalin app) {
+        app.before(ctx -> {
+            // En las respuestas asíncronas el filtro after puede ejecutarse en otro hilo y no
+            // limpiar este: se descarta lo que haya quedado de una petición anterior
+            DatabaseConfig.terminarPeticion();
+            String ventana = ctx.cookie(COOKIE_ESCRITURA);
+            if (ventana != null) {
+                try {
+                    DatabaseConfig.leerDelPrimarioHasta(Long.parseLong(ventana));
+                } catch (NumberFormatException ignored) {
+                    // Cookie alterada: se lee de las réplicas
+                }
+            }
+        });
+        app.after(ctx -> {
+            long hasta = DatabaseConfig.terminarPeticion();
+            Long registrada = ctx.attribute(ATRIBUTO_ESCRITURA);
+            if (registrada != null) {
+                hasta = Math.max(hasta, registrada);
+            }
+            if (hasta > 0) {
+                int segundos = (int) Math.ceil(DatabaseConfig.getVentanaEscrituraMs() / 1000.0);
+                ctx.cookie(COOKIE_ESCRITURA, Long.toString(hasta), segundos);
+            }
+        });
+    }
+
+    /**
+     * Abre la ventana de lectura del cliente de una petición cuya escritura se confirmó en otro hilo
+     * @param ctx Contexto de la petición
+     */
+    public static void registrarEscritura(Context ctx) {
+        ctx.attribute(ATRIBUTO_ESCRITURA, System.currentTimeMillis() + DatabaseConfig.getVentanaEscrituraMs());
+    }
+}
\ No newline at end of file
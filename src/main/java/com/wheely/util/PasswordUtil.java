@@ -1,7 +1,14 @@
 package com.wheely.util;
 
+import com.wheely.config.AppConfig;
 import org.mindrot.jbcrypt.BCrypt;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Utilidad para el manejo seguro de contraseñas
  * Utiliza BCrypt para el hashing y verificación de contraseñas
@@ -11,16 +18,33 @@ public class PasswordUtil {
     // Nivel de complejidad para el hashing (10 es un buen balance entre seguridad y rendimiento)
     private static final int SALT_ROUNDS = 10;
 
+    // Pool dedicado para BCrypt: un hilo por núcleo y una cola acotada.
+    // Cuando la cola está llena se rechaza la tarea (RejectedExecutionException)
+    // para que el servidor responda 503 de inmediato en lugar de acumular trabajo
+    private static final ThreadPoolExecutor EXECUTOR = createExecutor(
+            AppConfig.getInt("BCRYPT_THREADS", Runtime.getRuntime().availableProcessors()),
+            AppConfig.getInt("BCRYPT_QUEUE_SIZE", 64));
+
     /**
      * Genera un hash seguro de una contraseña en texto plano
      * @param plainPassword Contraseña en texto plano
      * @return Hash de la contraseña
      */
     public static String hashPassword(String plainPassword) {
+        return hashPassword(plainPassword, SALT_ROUNDS);
+    }
+
+    /**
+     * Genera un hash con un factor de costo específico
+     * @param plainPassword Contraseña en texto plano
+     * @param saltRounds Factor de costo de BCrypt (cada unidad duplica el tiempo)
+     * @return Hash de la contraseña
+     */
+    public static String hashPassword(String plainPassword, int saltRounds) {
         if (plainPassword == null || plainPassword.trim().isEmpty()) {
             throw new IllegalArgumentException("La contraseña no puede estar vacía");
         }
-        return BCrypt.hashpw(plainPassword, BCrypt.gensalt(SALT_ROUNDS));
+        return BCrypt.hashpw(plainPassword, BCrypt.gensalt(saltRounds));
     }
 
     /**
@@ -41,6 +65,27 @@ public class PasswordUtil {
         }
     }
 
+    /**
+     * Genera el hash de una contraseña en el pool dedicado de BCrypt
+     * @param plainPassword Contraseña en texto plano
+     * @return Futuro con el hash de la contraseña
+     * @throws java.util.concurrent.RejectedExecutionException Si el pool está saturado
+     */
+    public static CompletableFuture<String> hashPasswordAsync(String plainPassword) {
+        return CompletableFuture.supplyAsync(() -> hashPassword(plainPassword), EXECUTOR);
+    }
+
+    /**
+     * Verifica una contraseña contra su hash en el pool dedicado de BCrypt
+     * @param plainPassword Contraseña en texto plano a verificar
+     * @param hashedPassword Hash almacenado en base de datos
+     * @return Futuro con true si la contraseña coincide
+     * @throws java.util.concurrent.RejectedExecutionException Si el pool está saturado
+     */
+    public static CompletableFuture<Boolean> verifyPasswordAsync(String plainPassword, String hashedPassword) {
+        return CompletableFuture.supplyAsync(() -> verifyPassword(plainPassword, hashedPassword), EXECUTOR);
+    }
+
     /**
      * Valida si una contraseña cumple con criterios mínimos de seguridad
      * @param password Contraseña a validar
@@ -55,4 +100,21 @@ public class PasswordUtil {
         // Puedes agregar más validaciones según tus necesidades
         return password.length() >= 6;
     }
+
+    /**
+     * Crea el pool de hilos para BCrypt
+     * @param threads Número de hilos (normalmente uno por núcleo)
+     * @param queueSize Tareas que pueden esperar antes de rechazar nuevas
+     */
+    private static ThreadPoolExecutor createExecutor(int threads, int queueSize) {
+        AtomicInteger contador = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                r -> {
+                    Thread thread = new Thread(r, "bcrypt-" + contador.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
 }
\ No newline at end of file
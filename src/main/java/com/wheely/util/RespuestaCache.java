@@ -0,0 +1,201 @@
+package com.wheely.util;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import io.javalin.http.Context;
+import io.javalin.http.Header;
+import io.javalin.http.HttpStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Caché de una respuesta JSON ya serializada y comprimida
+ * El contenido se serializa una sola vez y se guarda como arreglos de bytes inmutables en
+ * las codificaciones identity, gzip y br. Cada petición solo elige la codificación según
+ * Accept-Encoding y copia los bytes. El contenido se regenera únicamente cuando cambia la
+ * versión de los datos de los que depende
+ */
+public class RespuestaCache {
+    private static final boolean BROTLI_DISPONIBLE = cargarBrotli();
+
+    private final LongSupplier version;
+    private final Supplier<Object> contenido;
+    private volatile Entrada entrada;
+
+    /**
+     * Crea la caché para contenido que no cambia mientras la aplicación está en ejecución
+     * @param contenido Genera el objeto a serializar (normalmente un ApiResponse)
+     */
+    public RespuestaCache(Supplier<Object> contenido) {
+        this(() -> 0L, contenido);
+    }
+
+    /**
+     * Crea la caché para contenido que cambia con los datos
+     * @param version Versión actual de los datos; al cambiar se regenera el contenido
+     * @param contenido Genera el objeto a serializar (normalmente un ApiResponse)
+     */
+    public RespuestaCache(LongSupplier version, Supplier<Object> contenido) {
+        this.version = version;
+        this.contenido = contenido;
+    }
+
+    /**
+     * Escribe la respuesta en la codificación preferida por el cliente
+     * Responde 304 si el cliente ya tiene el contenido actual
+     * @param ctx Contexto de la petición
+     */
+    public void servir(Context ctx) {
+        Entrada actual = obtener();
+        ctx.header(Header.VARY, Header.ACCEPT_ENCODING);
+
+        // Cada codificación es una representación distinta y lleva su propio ETag
+        String aceptadas = ctx.header(Header.ACCEPT_ENCODING);
+        String codificacion = null;
+        byte[] cuerpo = actual.identidad;
+        String etag = actual.etagIdentidad;
+        if (actual.brotli != null && acepta(aceptadas, "br")) {
+            codificacion = "br";
+            cuerpo = actual.brotli;
+            etag = actual.etagBrotli;
+        } else if (actual.gzip != null && acepta(aceptadas, "gzip")) {
+            codificacion = "gzip";
+            cuerpo = actual.gzip;
+            etag = actual.etagGzip;
+        }
+
+        if (ETagUtil.responderSiNoModificado(ctx, etag)) {
+            return;
+        }
+        if (codificacion != null) {
+            ctx.header(Header.CONTENT_ENCODING, codificacion);
+        }
+        ctx.header(Header.ETAG, etag)
+                .status(HttpStatus.OK)
+                .contentType("application/json")
+                .result(cuerpo);
+    }
+
+    /**
+     * Devuelve la entrada vigente, regenerándola si la versión de los datos cambió
+     */
+    private Entrada obtener() {
+        long versionActual = version.getAsLong();
+        Entrada actual = entrada;
+        if (actual != null && actual.version == versionActual) {
+            return actual;
+        }
+        synchronized (this) {
+            actual = entrada;
+            if (actual == null || actual.version != versionActual) {
+                actual = new Entrada(versionActual, contenido.get());
+                entrada = actual;
+            }
+            return actual;
+        }
+    }
+
+    /**
+     * Verifica si el cliente acepta una codificación (considera q=0 como rechazo)
+     * Una mención explícita de la codificación tiene prioridad sobre "*" sin importar el orden
+     * (RFC 9110, sección 12.5.3): con "*;q=0, br" se acepta br
+     */
+    private static boolean acepta(String aceptadas, String codificacion) {
+        if (aceptadas == null) {
+            return false;
+        }
+        Double comodin = null;
+        for (String parte : aceptadas.toLowerCase(Locale.ROOT).split(",")) {
+            String[] valores = parte.split(";");
+            String nombre = valores[0].trim();
+            if (nombre.equals(codificacion)) {
+                return calidad(valores) > 0;
+            }
+            if (nombre.equals("*") && comodin == null) {
+                comodin = calidad(valores);
+            }
+        }
+        return comodin != null && comodin > 0;
+    }
+
+    /**
+     * Obtiene el parámetro q de una codificación de Accept-Encoding (1 si no lo tiene, 0 si es inválido)
+     */
+    private static double calidad(String[] valores) {
+        for (int i = 1; i < valores.length; i++) {
+            String parametro = valores[i].trim();
+            if (parametro.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parametro.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private static boolean cargarBrotli() {
+        try {
+            return Brotli4jLoader.isAvailable();
+        } catch (Throwable e) {
+            // Sin la biblioteca nativa de la plataforma se sirven solo identity y gzip
+            return false;
+        }
+    }
+
+    /**
+     * Contenido serializado en todas las codificaciones para una versión de los datos
+     */
+    private static class Entrada {
+        private final long version;
+        private final byte[] identidad;
+        private final byte[] gzip;
+        private final byte[] brotli;
+        private final String etagIdentidad;
+        private final String etagGzip;
+        private final String etagBrotli;
+
+        Entrada(long version, Object contenido) {
+            this.version = version;
+            try {
+                this.identidad = JsonUtil.getMapper().writeValueAsBytes(contenido);
+                // Una versión comprimida solo se guarda si realmente es más pequeña
+                this.gzip = menor(gzip(identidad), identidad);
+                this.brotli = BROTLI_DISPONIBLE ? menor(Encoder.compress(identidad,
+                        new Encoder.Parameters().setQuality(11)), identidad) : null;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error al serializar la respuesta en caché", e);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(identidad);
+            this.etagIdentidad = ETagUtil.crear("contenido", version, crc.getValue());
+            this.etagGzip = ETagUtil.crear("contenido-gzip", version, crc.getValue());
+            this.etagBrotli = ETagUtil.crear("contenido-br", version, crc.getValue());
+        }
+
+        private static byte[] gzip(byte[] datos) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(datos.length);
+            try (GZIPOutputStream out = new GZIPOutputStream(bytes) {
+                {
+                    def.setLevel(Deflater.BEST_COMPRESSION);
+                }
+            }) {
+                out.write(datos);
+            }
+            return bytes.toByteArray();
+        }
+
+        private static byte[] menor(byte[] comprimido, byte[] original) {
+            return comprimido.length < original.length ? comprimido : null;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,140 @@
+package com.wheely.util;
+
+import com.wheely.metrics.MetricsCollector;
+import com.wheely.metrics.PrometheusWriter;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Combina llamadas idénticas simultáneas en una sola ejecución (single-flight)
+ *
+ * La primera llamada con una clave ejecuta la consulta; las que llegan con la misma clave
+ * mientras está en curso esperan y reciben el mismo resultado (o la misma excepción). En
+ * cuanto termina, la clave se libera antes de publicar el resultado, así que una llamada que
+ * llega después siempre inicia una ejecución nueva: no es una caché
+ *
+ * El resultado se comparte entre todos los que esperaban, por lo que no debe modificarse
+ *
+ * Publica en /metrics cuántas llamadas se ejecutaron y cuántas se combinaron por clave. La
+ * etiqueta de cada clave la define el llamador (por ejemplo, sin la versión de la tabla) y
+ * solo se guardan MAX_ETIQUETAS distintas; el resto se acumula en "otras"
+ */
+public class SingleFlight<K, V> implements MetricsCollector {
+    private static final int MAX_ETIQUETAS = 256;
+    private static final String OTRAS = "otras";
+
+    private final String nombre;
+    private final Function<K, String> etiqueta;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> enCurso = new ConcurrentHashMap<>();
+    private final Map<String, Contadores> contadores = new ConcurrentHashMap<>();
+
+    /**
+     * Consulta que se ejecuta una sola vez por grupo de llamadas simultáneas
+     */
+    @FunctionalInterface
+    public interface Llamada<V> {
+        V ejecutar() throws SQLException;
+    }
+
+    /**
+     * @param nombre Nombre de la operación (etiqueta "flight" de las métricas)
+     * @param etiqueta Convierte una clave en su etiqueta de métricas
+     */
+    public SingleFlight(String nombre, Function<K, String> etiqueta) {
+        this.nombre = nombre;
+        this.etiqueta = etiqueta;
+    }
+
+    /**
+     * Ejecuta la llamada, o se une a la ejecución en curso con la misma clave
+     * @param clave Identifica las llamadas equivalentes
+     * @param llamada Consulta a ejecutar si no hay una en curso
+     * @return Resultado de la ejecución (compartido con las demás llamadas combinadas)
+     * @throws SQLException Error de la consulta, propagado a todas las llamadas combinadas
+     */
+    public V ejecutar(K clave, Llamada<V> llamada) throws SQLException {
+        CompletableFuture<V> propio = new CompletableFuture<>();
+        CompletableFuture<V> existente = enCurso.putIfAbsent(clave, propio);
+        Contadores contador = contadores(clave);
+
+        if (existente != null) {
+            contador.combinadas.increment();
+            return esperar(existente);
+        }
+
+        contador.ejecutadas.increment();
+        V resultado;
+        try {
+            resultado = llamada.ejecutar();
+        } catch (Throwable e) {
+            enCurso.remove(clave, propio);
+            propio.completeExceptionally(e);
+            throw e;
+        }
+        // Liberar la clave antes de publicar: quien llegue a partir de aquí inicia otra ejecución
+        enCurso.remove(clave, propio);
+        propio.complete(resultado);
+        return resultado;
+    }
+
+    @Override
+    public void collect(PrometheusWriter out) {
+        out.declare("wheely_singleflight_calls_total", "counter",
+                "Llamadas por operación y clave: ejecutadas o combinadas con una ejecución en curso");
+        for (Map.Entry<String, Contadores> entry : contadores.entrySet()) {
+            out.sample("wheely_singleflight_calls_total",
+                    new String[]{"flight", nombre, "key", entry.getKey(), "result", "executed"},
+                    entry.getValue().ejecutadas.sum());
+            out.sample("wheely_singleflight_calls_total",
+                    new String[]{"flight", nombre, "key", entry.getKey(), "result", "merged"},
+                    entry.getValue().combinadas.sum());
+        }
+    }
+
+    private Contadores contadores(K clave) {
+        String nombreEtiqueta = etiqueta.apply(clave);
+        Contadores contador = contadores.get(nombreEtiqueta);
+        if (contador != null) {
+            return contador;
+        }
+        if (contadores.size() >= MAX_ETIQUETAS) {
+            nombreEtiqueta = OTRAS;
+        }
+        return contadores.computeIfAbsent(nombreEtiqueta, k -> new Contadores());
+    }
+
+    /**
+     * Espera el resultado de la ejecución de otra llamada y propaga su excepción sin envolverla
+     */
+    private static <V> V esperar(CompletableFuture<V> futuro) throws SQLException {
+        try {
+            return futuro.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido mientras se esperaba una consulta en curso", e);
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof SQLException) {
+                throw (SQLException) causa;
+            }
+            if (causa instanceof RuntimeException) {
+                throw (RuntimeException) causa;
+            }
+            if (causa instanceof Error) {
+                throw (Error) causa;
+            }
+            throw new SQLException("Error en la consulta en curso", causa);
+        }
+    }
+
+    private static class Contadores {
+        private final LongAdder ejecutadas = new LongAdder();
+        private final LongAdder combinadas = new LongAdder();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,67 @@
+package com.wheely.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Algoritmo Space-Saving para encontrar las claves más frecuentes con memoria fija
+ * Guarda como máximo 'capacidad' claves; cuando llega una clave nueva y no hay espacio
+ * reemplaza a la de menor conteo y hereda ese conteo como error máximo. Cualquier clave
+ * con frecuencia mayor a (total / capacidad) está garantizada en el resultado.
+ * No es seguro entre hilos: quien lo usa debe sincronizar el acceso
+ */
+public class SpaceSaving {
+    private final int capacidad;
+    // Clave -> {conteo, error}
+    private final Map<Integer, long[]> contadores;
+
+    /**
+     * @param capacidad Número máximo de claves monitoreadas
+     */
+    public SpaceSaving(int capacidad) {
+        this.capacidad = capacidad;
+        this.contadores = new HashMap<>(capacidad * 2);
+    }
+
+    /**
+     * Registra una ocurrencia de una clave
+     * @param clave Clave observada
+     */
+    public void add(int clave) {
+        long[] contador = contadores.get(clave);
+        if (contador != null) {
+            contador[0]++;
+            return;
+        }
+        if (contadores.size() < capacidad) {
+            contadores.put(clave, new long[]{1, 0});
+            return;
+        }
+
+        // Reemplazar la clave con menor conteo (capacidad es pequeña, el recorrido es barato)
+        int claveMinima = 0;
+        long minimo = Long.MAX_VALUE;
+        for (Map.Entry<Integer, long[]> entry : contadores.entrySet()) {
+            if (entry.getValue()[0] < minimo) {
+                minimo = entry.getValue()[0];
+                claveMinima = entry.getKey();
+            }
+        }
+        contadores.remove(claveMinima);
+        contadores.put(clave, new long[]{minimo + 1, minimo});
+    }
+
+    /**
+     * @return Claves monitoreadas actualmente (candidatas a más frecuentes)
+     */
+    public Iterable<Integer> claves() {
+        return contadores.keySet();
+    }
+
+    /**
+     * Reinicia la estructura para reutilizarla
+     */
+    public void clear() {
+        contadores.clear();
+    }
+}
\ No newline at end of file